@@ -0,0 +1,40 @@
+package com.chat.chat_microservice.cache;
+
+import com.chat.chat_microservice.dto.SessionResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+// Local stand-in for a shared second tier, so the two-tier path can be exercised without external services
+@Component
+@ConditionalOnProperty(name = "app.cache.session-list.second-tier", havingValue = "in-memory")
+public class InMemorySessionListCacheTier implements SessionListCacheTier {
+
+    private final BoundedCache<String, List<SessionResponse>> entries;
+
+    public InMemorySessionListCacheTier(@Value("${app.cache.session-list.second-tier-max-size:100000}") int maxSize,
+                                        @Value("${app.cache.session-list.second-tier-ttl:PT30M}") Duration ttl,
+                                        MeterRegistry meterRegistry) {
+        this.entries = new BoundedCache<>("session-list-l2", maxSize, ttl);
+        this.entries.bindTo(meterRegistry);
+    }
+
+    @Override
+    public List<SessionResponse> get(String key) {
+        return entries.get(key);
+    }
+
+    @Override
+    public void put(String key, List<SessionResponse> sessions) {
+        entries.put(key, sessions);
+    }
+
+    @Override
+    public void evict(String key) {
+        entries.invalidate(key);
+    }
+}
@@ -0,0 +1,144 @@
+package com.chat.chat_microservice.cache;
+
+import com.chat.chat_microservice.dto.MessageResponse;
+import com.chat.chat_microservice.event.MessagesAddedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// sessionId -> the session's last messages (plus its stored summary) for context windows. Committed messages
+// are appended as they arrive, so a conversation in progress is served without reading chat_messages.
+// Only commits on this instance are appended; the TTL bounds how stale another instance's tail can get.
+@Component
+public class RecentMessagesCache {
+
+    private static final int EPOCH_STRIPES = 1024;
+    private static final Comparator<MessageResponse> CHRONOLOGICAL =
+            Comparator.comparing(MessageResponse::getSeq);
+
+    private final BoundedCache<Long, Tail> tails;
+    private final int messagesPerSession;
+    // Appends and puts are serialized, so an append never races a copy of the tail it extends
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // Bumped by every append and invalidation; a load only populates the cache if its session's stripe
+    // did not move meanwhile, so a tail read before a commit cannot hide that commit's messages
+    private final AtomicLongArray epochs = new AtomicLongArray(EPOCH_STRIPES);
+
+    public RecentMessagesCache(@Value("${app.cache.recent-messages.max-sessions:2000}") int maxSessions,
+                               @Value("${app.cache.recent-messages.messages-per-session:100}") int messagesPerSession,
+                               @Value("${app.cache.recent-messages.ttl:PT10M}") Duration ttl,
+                               MeterRegistry meterRegistry) {
+        this.tails = new BoundedCache<>("recent-messages", maxSessions, ttl);
+        this.tails.bindTo(meterRegistry);
+        this.messagesPerSession = messagesPerSession;
+    }
+
+    public int getMessagesPerSession() {
+        return messagesPerSession;
+    }
+
+    public Tail get(Long sessionId, Supplier<Tail> loader) {
+        Tail tail = tails.get(sessionId);
+        if (tail != null) {
+            return tail;
+        }
+        long epoch = epochs.get(stripe(sessionId));
+        tail = loader.get();
+        writeLock.lock();
+        try {
+            if (epochs.get(stripe(sessionId)) == epoch) {
+                tails.put(sessionId, tail);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return tail;
+    }
+
+    public void invalidate(Long sessionId) {
+        evict(sessionId);
+        // Evict again after commit, a concurrent read may have re-cached the old state meanwhile
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(sessionId);
+                }
+            });
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMessagesAdded(MessagesAddedEvent event) {
+        writeLock.lock();
+        try {
+            epochs.incrementAndGet(stripe(event.sessionId()));
+            Tail tail = tails.peek(event.sessionId());
+            if (tail != null) {
+                tails.put(event.sessionId(), tail.append(event.messages(), messagesPerSession));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void evict(Long sessionId) {
+        writeLock.lock();
+        try {
+            epochs.incrementAndGet(stripe(sessionId));
+            tails.invalidate(sessionId);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static int stripe(Long sessionId) {
+        return (Long.hashCode(sessionId) & 0x7fffffff) % EPOCH_STRIPES;
+    }
+
+    // Immutable, oldest message first; 'complete' means nothing older exists in the session
+    public record Tail(List<MessageResponse> messages, boolean complete, String summary,
+                       Long summaryThroughMessageId) {
+
+        public static Tail of(List<MessageResponse> messages, boolean complete, String summary,
+                              Long summaryThroughMessageId) {
+            return new Tail(messages.stream().map(Tail::withoutContext).toList(), complete, summary,
+                    summaryThroughMessageId);
+        }
+
+        // Keeps the last 'capacity' messages; after-commit events of concurrent appends can arrive out of order
+        Tail append(List<MessageResponse> added, int capacity) {
+            Set<Long> ids = new HashSet<>();
+            List<MessageResponse> merged = new ArrayList<>(messages.size() + added.size());
+            messages.forEach(message -> {
+                ids.add(message.getId());
+                merged.add(message);
+            });
+            added.stream().filter(message -> ids.add(message.getId())).map(Tail::withoutContext).forEach(merged::add);
+            merged.sort(CHRONOLOGICAL);
+            int dropped = Math.max(0, merged.size() - capacity);
+            return new Tail(List.copyOf(merged.subList(dropped, merged.size())), complete && dropped == 0,
+                    summary, summaryThroughMessageId);
+        }
+
+        // Context windows carry no context previews, and the copy keeps cached entries independent of callers
+        private static MessageResponse withoutContext(MessageResponse message) {
+            return new MessageResponse(message.getId(), message.getSeq(), message.getSender(), message.getContent(),
+                    message.getCreatedAt(), message.isHasContext());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.chat.chat_microservice.cache;
+
+import com.chat.chat_microservice.dto.SessionResponse;
+import com.chat.chat_microservice.event.SessionsChangedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+// Per-user List<SessionResponse> for the sidebar, evicted by SessionsChangedEvent once the change commits
+@Component
+public class SessionListCache {
+
+    private static final int EPOCH_STRIPES = 1024;
+
+    private final BoundedCache<String, List<SessionResponse>> lists;
+    private final SessionListCacheTier secondTier;
+    // Bumped on every eviction; a load only populates the cache if its user's stripe did not move
+    // meanwhile, so a read that raced a commit cannot re-cache the pre-commit list
+    private final AtomicLongArray epochs = new AtomicLongArray(EPOCH_STRIPES);
+
+    public SessionListCache(@Value("${app.cache.session-list.max-size:10000}") int maxSize,
+                            @Value("${app.cache.session-list.ttl:PT5M}") Duration ttl,
+                            ObjectProvider<SessionListCacheTier> secondTier,
+                            MeterRegistry meterRegistry) {
+        this.lists = new BoundedCache<>("session-list", maxSize, ttl);
+        this.lists.bindTo(meterRegistry);
+        this.secondTier = secondTier.getIfAvailable();
+    }
+
+    public List<SessionResponse> get(String userId, boolean favoritesOnly, Supplier<List<SessionResponse>> loader) {
+        String key = key(userId, favoritesOnly);
+        List<SessionResponse> sessions = lists.get(key);
+        if (sessions != null) {
+            return sessions;
+        }
+
+        long epoch = epochs.get(stripe(userId));
+        if (secondTier != null) {
+            sessions = secondTier.get(key);
+            if (sessions != null) {
+                putIfUnchanged(userId, key, sessions, epoch, false);
+                return sessions;
+            }
+        }
+
+        sessions = List.copyOf(loader.get());
+        putIfUnchanged(userId, key, sessions, epoch, true);
+        return sessions;
+    }
+
+    public void evict(String userId) {
+        epochs.incrementAndGet(stripe(userId));
+        for (boolean favoritesOnly : new boolean[]{false, true}) {
+            String key = key(userId, favoritesOnly);
+            lists.invalidate(key);
+            if (secondTier != null) {
+                secondTier.evict(key);
+            }
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onSessionsChanged(SessionsChangedEvent event) {
+        evict(event.userId());
+    }
+
+    private void putIfUnchanged(String userId, String key, List<SessionResponse> sessions, long epoch,
+                                boolean includeSecondTier) {
+        if (epochs.get(stripe(userId)) != epoch) {
+            return;
+        }
+        lists.put(key, sessions);
+        if (includeSecondTier && secondTier != null) {
+            secondTier.put(key, sessions);
+        }
+        // An eviction that slipped in between the check and the put is undone here
+        if (epochs.get(stripe(userId)) != epoch) {
+            lists.invalidate(key);
+            if (includeSecondTier && secondTier != null) {
+                secondTier.evict(key);
+            }
+        }
+    }
+
+    private static String key(String userId, boolean favoritesOnly) {
+        return (favoritesOnly ? "favorites:" : "all:") + userId;
+    }
+
+    private static int stripe(String userId) {
+        return (userId.hashCode() & 0x7fffffff) % EPOCH_STRIPES;
+    }
+}
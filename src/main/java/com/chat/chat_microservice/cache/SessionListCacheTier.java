@@ -0,0 +1,16 @@
+package com.chat.chat_microservice.cache;
+
+import com.chat.chat_microservice.dto.SessionResponse;
+
+import java.util.List;
+
+// Optional shared second tier behind the per-instance session list cache (e.g. Redis).
+// Implementations must be safe to call concurrently and may drop entries at any time.
+public interface SessionListCacheTier {
+
+    List<SessionResponse> get(String key);
+
+    void put(String key, List<SessionResponse> sessions);
+
+    void evict(String key);
+}
@@ -0,0 +1,46 @@
+package com.chat.chat_microservice.cache;
+
+import com.chat.chat_microservice.repository.SessionOwner;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+// sessionId -> owning userId and creation time. A session never changes owner, so only deletion can make an entry wrong;
+// the TTL bounds how long another instance may keep trusting a session deleted elsewhere.
+@Component
+public class SessionOwnershipCache {
+
+    private final BoundedCache<Long, SessionOwner> owners;
+
+    public SessionOwnershipCache(@Value("${app.cache.session-ownership.max-size:100000}") int maxSize,
+                                 @Value("${app.cache.session-ownership.ttl:PT10M}") Duration ttl,
+                                 MeterRegistry meterRegistry) {
+        this.owners = new BoundedCache<>("session-ownership", maxSize, ttl);
+        this.owners.bindTo(meterRegistry);
+    }
+
+    public SessionOwner getOwner(Long sessionId) {
+        return owners.get(sessionId);
+    }
+
+    public void put(Long sessionId, SessionOwner owner) {
+        owners.put(sessionId, owner);
+    }
+
+    public void invalidate(Long sessionId) {
+        owners.invalidate(sessionId);
+        // Evict again after commit, a concurrent read may have re-cached the row before the delete was visible
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    owners.invalidate(sessionId);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.chat.chat_microservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.rate-limit")
+public class RateLimitProperties {
+
+    // Upper bound on buckets for keys that are not configured, i.e. the memory ceiling of the store
+    private int maxBuckets = 10_000;
+
+    private Duration idleTimeout = Duration.ofMinutes(10);
+
+    private String defaultTier = "standard";
+
+    private Map<String, Tier> tiers = new LinkedHashMap<>();
+
+    // API key -> tier name; configured keys get a dedicated bucket that is never evicted
+    private Map<String, String> keyTiers = new HashMap<>();
+
+    private User user = new User();
+
+    public Tier tierFor(String apiKey) {
+        Tier tier = tiers.get(keyTiers.getOrDefault(apiKey, defaultTier));
+        return tier != null ? tier : tiers.getOrDefault(defaultTier, Tier.DEFAULT);
+    }
+
+    // Limits applied per userId (after the API key limit), split by endpoint class
+    @Data
+    public static class User {
+
+        private Tier read = new Tier();
+
+        private Tier write = new Tier();
+
+        private int maxBuckets = 100_000;
+
+        // Requests of one user that may be in progress at the same time
+        private int maxConcurrentRequests = 4;
+    }
+
+    @Data
+    public static class Tier {
+
+        static final Tier DEFAULT = new Tier();
+
+        private long capacity = 100;
+
+        private Duration refillPeriod = Duration.ofMinutes(1);
+    }
+}
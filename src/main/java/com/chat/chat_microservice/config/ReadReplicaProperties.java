@@ -0,0 +1,39 @@
+package com.chat.chat_microservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.read-replicas")
+public class ReadReplicaProperties {
+
+    private boolean enabled = false;
+
+    // JDBC urls of the replicas; credentials default to spring.datasource.*
+    private List<String> urls = new ArrayList<>();
+
+    private String username;
+
+    private String password;
+
+    private int maximumPoolSize = 10;
+
+    // Kept short so a dead replica falls back to the primary quickly
+    private Duration connectionTimeout = Duration.ofSeconds(2);
+
+    // A replica further behind than this is skipped until it catches up
+    private Duration maxLag = Duration.ofSeconds(5);
+
+    private Duration healthCheckInterval = Duration.ofSeconds(5);
+
+    // After a write, that user's reads stay on the primary for this long; zero disables stickiness
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+
+    private int maxStickyUsers = 100_000;
+}
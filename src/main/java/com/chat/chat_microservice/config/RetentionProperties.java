@@ -0,0 +1,34 @@
+package com.chat.chat_microservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.retention")
+public class RetentionProperties {
+
+    private boolean enabled = false;
+
+    // Sessions without activity for longer than this are purged; null keeps sessions forever
+    private Duration maxAge;
+
+    // userId -> max age, overriding maxAge for that user (shorter or longer)
+    private Map<String, Duration> userMaxAge = new HashMap<>();
+
+    // Newest sessions kept per user; 0 disables the rule
+    private int maxSessionsPerUser = 0;
+
+    // Favorite sessions are exempt from both rules and do not count towards maxSessionsPerUser
+    private boolean keepFavorites = true;
+
+    // Sessions marked and purged per chunk, and the pause between chunks
+    private int chunkSize = 100;
+
+    private Duration throttle = Duration.ofMillis(200);
+}
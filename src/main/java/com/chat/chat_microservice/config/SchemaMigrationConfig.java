@@ -0,0 +1,26 @@
+package com.chat.chat_microservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jpa.autoconfigure.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+@Configuration
+@ConditionalOnProperty(name = "app.schema-migration.enabled", havingValue = "true", matchIfMissing = true)
+public class SchemaMigrationConfig {
+
+    @Bean
+    public SchemaMigrator schemaMigrator(DataSource dataSource,
+                                         @Value("${app.schema-migration.location:classpath:db/migration}") String location) {
+        return new SchemaMigrator(dataSource, location);
+    }
+
+    // Hibernate validates the schema at startup, so migrations have to run first
+    @Bean
+    public static EntityManagerFactoryDependsOnPostProcessor schemaMigratorDependsOn() {
+        return new EntityManagerFactoryDependsOnPostProcessor("schemaMigrator");
+    }
+}
@@ -0,0 +1,249 @@
+package com.chat.chat_microservice.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+// Minimal versioned migrations: applies classpath db/migration/V<n>__<description>.sql files in order,
+// each in its own transaction, and records them in schema_version. Applied scripts must never change;
+// a checksum mismatch fails startup instead of silently diverging from the recorded history.
+@Slf4j
+public class SchemaMigrator implements InitializingBean {
+
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    // First line of a script that must not hold locks for its whole run, e.g. for CREATE INDEX CONCURRENTLY.
+    // Its statements commit one by one and the version is recorded after the last, so a script interrupted
+    // half way runs again from the top: every statement in it has to be safe to repeat.
+    private static final String NO_TRANSACTION = "-- no-transaction";
+    // Precedes a statement of a no-transaction script that runs again, committing each time, until it changes
+    // no rows. Backfills bound each run (e.g. with a LIMIT), so no run locks many rows for long.
+    private static final String REPEAT = "-- repeat until no rows";
+    // Serializes instances starting at the same time; arbitrary but fixed
+    private static final long ADVISORY_LOCK_KEY = 7_305_412_098_113L;
+
+    private final DataSource dataSource;
+    private final String location;
+
+    public SchemaMigrator(DataSource dataSource, String location) {
+        this.dataSource = dataSource;
+        this.location = location;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        migrate();
+    }
+
+    public int migrate() throws SQLException, IOException {
+        List<Migration> migrations = loadMigrations();
+        try (Connection connection = dataSource.getConnection()) {
+            execute(connection, "SELECT pg_advisory_lock(" + ADVISORY_LOCK_KEY + ")");
+            try {
+                execute(connection, "CREATE TABLE IF NOT EXISTS schema_version (" +
+                        "version INTEGER PRIMARY KEY, " +
+                        "description VARCHAR(200) NOT NULL, " +
+                        "checksum BIGINT NOT NULL, " +
+                        "installed_at TIMESTAMP NOT NULL DEFAULT now())");
+                Map<Integer, Long> applied = appliedChecksums(connection);
+                int count = 0;
+                for (Migration migration : migrations) {
+                    Long checksum = applied.get(migration.version());
+                    if (checksum == null) {
+                        apply(connection, migration);
+                        count++;
+                    } else if (checksum != migration.checksum()) {
+                        throw new IllegalStateException("Migration V" + migration.version() +
+                                " was modified after it was applied; add a new migration instead");
+                    }
+                }
+                log.info("Schema is up to date at version {} ({} migrations applied now)",
+                        migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).version(), count);
+                return count;
+            } finally {
+                execute(connection, "SELECT pg_advisory_unlock(" + ADVISORY_LOCK_KEY + ")");
+            }
+        }
+    }
+
+    private void apply(Connection connection, Migration migration) throws SQLException {
+        log.info("Applying migration V{}__{}", migration.version(), migration.description());
+        if (!migration.transactional()) {
+            applyWithoutTransaction(connection, migration);
+            return;
+        }
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            ScriptUtils.executeSqlScript(connection, new EncodedResource(migration.resource(), StandardCharsets.UTF_8));
+            record(connection, migration);
+            connection.commit();
+        } catch (RuntimeException | SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void applyWithoutTransaction(Connection connection, Migration migration) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(true);
+        try {
+            dropInvalidIndexes(connection, migration);
+            StringBuilder statements = new StringBuilder();
+            StringBuilder repeated = null;
+            for (String line : migration.script().lines().toList()) {
+                if (repeated != null) {
+                    repeated.append(line).append('\n');
+                    if (line.stripTrailing().endsWith(";")) {
+                        repeatUntilNoRows(connection, repeated.toString());
+                        repeated = null;
+                    }
+                } else if (line.strip().equals(REPEAT)) {
+                    executeScript(connection, migration, statements.toString());
+                    statements.setLength(0);
+                    repeated = new StringBuilder();
+                } else {
+                    statements.append(line).append('\n');
+                }
+            }
+            if (repeated != null) {
+                throw new IllegalStateException("Migration V" + migration.version() +
+                        " ends in a repeated statement without a closing ';'");
+            }
+            executeScript(connection, migration, statements.toString());
+            record(connection, migration);
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    // An interrupted CREATE INDEX CONCURRENTLY leaves an invalid index behind, which IF NOT EXISTS would then
+    // keep. Invalid indexes the script names are dropped, so the rerun builds them again.
+    private void dropInvalidIndexes(Connection connection, Migration migration) throws SQLException {
+        List<String> invalid = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT c.relname FROM pg_index i " +
+                     "JOIN pg_class c ON c.oid = i.indexrelid " +
+                     "WHERE NOT i.indisvalid AND c.relnamespace = current_schema()::regnamespace")) {
+            while (rows.next()) {
+                invalid.add(rows.getString(1));
+            }
+        }
+        for (String index : invalid) {
+            if (Pattern.compile("\\b" + Pattern.quote(index) + "\\b").matcher(migration.script()).find()) {
+                log.warn("Dropping invalid index {} left by an interrupted run of V{}", index, migration.version());
+                execute(connection, "DROP INDEX CONCURRENTLY IF EXISTS " + index);
+            }
+        }
+    }
+
+    private static void executeScript(Connection connection, Migration migration, String statements) {
+        ScriptUtils.executeSqlScript(connection, new EncodedResource(new ByteArrayResource(
+                statements.getBytes(StandardCharsets.UTF_8), migration.resource().getDescription()), StandardCharsets.UTF_8));
+    }
+
+    private static void repeatUntilNoRows(Connection connection, String sql) throws SQLException {
+        String statement = sql.strip();
+        statement = statement.substring(0, statement.length() - 1);
+        long total = 0;
+        int runs = 0;
+        int rows;
+        try (Statement batch = connection.createStatement()) {
+            do {
+                rows = batch.executeUpdate(statement);
+                total += rows;
+                runs++;
+            } while (rows > 0);
+        }
+        log.info("Repeated statement changed {} rows in {} runs", total, runs);
+    }
+
+    private static void record(Connection connection, Migration migration) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO schema_version (version, description, checksum) VALUES (?, ?, ?)")) {
+            insert.setInt(1, migration.version());
+            insert.setString(2, migration.description());
+            insert.setLong(3, migration.checksum());
+            insert.executeUpdate();
+        }
+    }
+
+    private Map<Integer, Long> appliedChecksums(Connection connection) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rows.next()) {
+                applied.put(rows.getInt(1), rows.getLong(2));
+            }
+        }
+        return applied;
+    }
+
+    private List<Migration> loadMigrations() throws IOException {
+        List<Migration> migrations = new ArrayList<>();
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources(location + "/V*__*.sql")) {
+            Matcher matcher = FILE_NAME.matcher(resource.getFilename());
+            if (!matcher.matches()) {
+                throw new IllegalStateException("Invalid migration file name: " + resource.getFilename());
+            }
+            byte[] bytes;
+            try (InputStream in = resource.getInputStream()) {
+                bytes = in.readAllBytes();
+            }
+            String script = new String(bytes, StandardCharsets.UTF_8);
+            boolean transactional = !script.lines().findFirst().map(String::strip).orElse("").equals(NO_TRANSACTION);
+            if (transactional && script.lines().anyMatch(line -> line.strip().equals(REPEAT))) {
+                throw new IllegalStateException("Migration " + resource.getFilename() +
+                        " repeats a statement but is not marked " + NO_TRANSACTION);
+            }
+            migrations.add(new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2), resource,
+                    checksum(bytes), script, transactional));
+        }
+        migrations.sort(Comparator.comparingInt(Migration::version));
+        for (int i = 1; i < migrations.size(); i++) {
+            if (migrations.get(i).version() == migrations.get(i - 1).version()) {
+                throw new IllegalStateException("Duplicate migration version V" + migrations.get(i).version());
+            }
+        }
+        return migrations;
+    }
+
+    private static long checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    record Migration(int version, String description, Resource resource, long checksum, String script,
+                     boolean transactional) {
+    }
+}
@@ -2,7 +2,9 @@ package com.chat.chat_microservice.config;
 
 import com.chat.chat_microservice.exception.FilterChainExceptionHandler;
 import com.chat.chat_microservice.filter.ApiKeyAuthenticationFilter;
+import com.chat.chat_microservice.filter.DbConcurrencyLimitFilter;
 import com.chat.chat_microservice.filter.RateLimitingFilter;
+import com.chat.chat_microservice.filter.UserRateLimitingFilter;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -19,6 +21,8 @@ public class SecurityConfig {
 
     private final ApiKeyAuthenticationFilter apiKeyAuthenticationFilter;
     private final RateLimitingFilter rateLimitingFilter;
+    private final UserRateLimitingFilter userRateLimitingFilter;
+    private final DbConcurrencyLimitFilter dbConcurrencyLimitFilter;
 
     private final FilterChainExceptionHandler filterChainExceptionHandler;
 
@@ -47,6 +51,8 @@ public class SecurityConfig {
                 )
                 .addFilterBefore(rateLimitingFilter, UsernamePasswordAuthenticationFilter.class)
                 .addFilterAfter(apiKeyAuthenticationFilter, RateLimitingFilter.class)
+                .addFilterAfter(userRateLimitingFilter, ApiKeyAuthenticationFilter.class)
+                .addFilterAfter(dbConcurrencyLimitFilter, UserRateLimitingFilter.class)
                 .addFilterBefore(filterChainExceptionHandler, RateLimitingFilter.class);
 
         return http.build();
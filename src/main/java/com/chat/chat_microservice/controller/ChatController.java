@@ -1,7 +1,16 @@
 package com.chat.chat_microservice.controller;
 
 import com.chat.chat_microservice.dto.*;
+import com.chat.chat_microservice.filter.DbConcurrencyLimitFilter;
+import com.chat.chat_microservice.repository.SessionVersion;
 import com.chat.chat_microservice.service.ChatService;
+import com.chat.chat_microservice.service.MessagePushService;
+import com.chat.chat_microservice.service.SearchService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -12,10 +21,22 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
 import java.util.List;
 
 @RestController
@@ -26,7 +47,15 @@ import java.util.List;
 @SecurityRequirement(name = "apiKey")
 public class ChatController {
 
+    private static final int STREAM_FLUSH_INTERVAL = 500;
+    // Per-user data: clients may keep it but must revalidate with If-None-Match before reusing it
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
     private final ChatService chatService;
+    private final MessagePushService messagePushService;
+    private final SearchService searchService;
+    private final ObjectMapper objectMapper;
+    private final DbConcurrencyLimitFilter dbConcurrencyLimit;
 
     @PostMapping("/sessions")
     @Operation(summary = "Create a new chat session")
@@ -41,20 +70,29 @@ public class ChatController {
     @GetMapping("/sessions")
     @Operation(summary = "Get all sessions for a user")
     public ResponseEntity<ApiResponse<List<SessionResponse>>> getSessions(
-            @Parameter(description = "User ID") @RequestParam String userId) {
+            @Parameter(description = "User ID") @RequestParam String userId,
+            WebRequest webRequest) {
 
+        // The list usually comes from the session list cache, so a 304 costs no query at all
         List<SessionResponse> sessions = chatService.getSessions(userId);
-        return ResponseEntity.ok(ApiResponse.success(sessions));
+        if (webRequest.checkNotModified(sessionsETag(sessions))) {
+            return null;
+        }
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(ApiResponse.success(sessions));
     }
 
     @GetMapping("/sessions/{sessionId}")
     @Operation(summary = "Get a specific session")
     public ResponseEntity<ApiResponse<SessionResponse>> getSession(
             @PathVariable Long sessionId,
-            @Parameter(description = "User ID") @RequestParam String userId) {
+            @Parameter(description = "User ID") @RequestParam String userId,
+            WebRequest webRequest) {
 
         SessionResponse session = chatService.getSession(sessionId, userId);
-        return ResponseEntity.ok(ApiResponse.success(session));
+        if (webRequest.checkNotModified(sessionETag(session))) {
+            return null;
+        }
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(ApiResponse.success(session));
     }
 
     @PatchMapping("/sessions/{sessionId}")
@@ -74,10 +112,26 @@ public class ChatController {
             @PathVariable Long sessionId,
             @Parameter(description = "User ID") @RequestParam String userId) {
 
-        chatService.deleteSession(sessionId, userId);
+        if (!chatService.deleteSession(sessionId, userId)) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success(null, "Session scheduled for deletion"));
+        }
         return ResponseEntity.ok(ApiResponse.success(null, "Session deleted successfully"));
     }
 
+    @DeleteMapping("/sessions")
+    @Operation(summary = "Delete all chat sessions of a user (account erasure)")
+    public ResponseEntity<ApiResponse<SessionDeletionResponse>> deleteAllSessions(
+            @Parameter(description = "User ID") @RequestParam String userId) {
+
+        SessionDeletionResponse result = chatService.deleteAllSessions(userId);
+        if (result.isPending()) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success(result, "Sessions scheduled for deletion"));
+        }
+        return ResponseEntity.ok(ApiResponse.success(result, "Sessions deleted successfully"));
+    }
+
     @GetMapping("/sessions/favorites")
     @Operation(summary = "Get all favorite sessions for a user")
     public ResponseEntity<ApiResponse<List<SessionResponse>>> getFavoriteSessions(
@@ -92,21 +146,110 @@ public class ChatController {
     public ResponseEntity<ApiResponse<MessageResponse>> addMessage(
             @PathVariable Long sessionId,
             @Parameter(description = "User ID") @RequestParam String userId,
+            @Parameter(description = "Acknowledgement policy when write-behind is enabled (ACCEPTED or DURABLE)")
+            @RequestParam(defaultValue = "DURABLE") AckMode ack,
+            @Parameter(description = "Client key of this add; a retry with the same key returns the message already written")
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @Valid @RequestBody AddMessageRequest request) {
 
-        MessageResponse message = chatService.addMessage(sessionId, userId, request);
+        if (idempotencyKey != null) {
+            // A retry of an add that already committed is answered before any transaction starts
+            MessageResponse message = chatService.findAnsweredMessage(sessionId, userId, idempotencyKey);
+            if (message == null) {
+                // Keyed adds bypass write-behind: the key is claimed in the same transaction as the insert
+                message = chatService.addMessage(sessionId, userId, request, idempotencyKey);
+            }
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(ApiResponse.success(message, "Message added successfully"));
+        }
+
+        if (!chatService.isWriteBehindEnabled()) {
+            MessageResponse message = chatService.addMessage(sessionId, userId, request);
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(ApiResponse.success(message, "Message added successfully"));
+        }
+
+        MessageResponse message = chatService.submitMessage(sessionId, userId, request, ack);
+        if (message == null) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success(null, "Message accepted"));
+        }
         return ResponseEntity.status(HttpStatus.CREATED)
                 .body(ApiResponse.success(message, "Message added successfully"));
     }
 
+    @PostMapping("/sessions/{sessionId}/messages/batch")
+    @Operation(summary = "Add several messages to a session in one transaction")
+    public ResponseEntity<ApiResponse<List<MessageResponse>>> addMessages(
+            @PathVariable Long sessionId,
+            @Parameter(description = "User ID") @RequestParam String userId,
+            @Valid @RequestBody AddMessagesBatchRequest request) {
+
+        List<MessageResponse> messages = chatService.addMessages(sessionId, userId, request.getMessages());
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(ApiResponse.success(messages, "Messages added successfully"));
+    }
+
     @GetMapping("/sessions/{sessionId}/messages")
     @Operation(summary = "Get all messages in a session")
     public ResponseEntity<ApiResponse<List<MessageResponse>>> getMessages(
             @PathVariable Long sessionId,
+            @Parameter(description = "User ID") @RequestParam String userId,
+            @Parameter(description = "Include a preview of each message's context") @RequestParam(defaultValue = "false") boolean includeContext,
+            WebRequest webRequest) {
+
+        // Validated against the session's message counters, so a 304 reads no message
+        SessionVersion version = chatService.getSessionVersion(sessionId, userId);
+        if (webRequest.checkNotModified(messagesETag(sessionId, version, includeContext))) {
+            return null;
+        }
+        List<MessageResponse> messages = chatService.getMessages(sessionId, userId, includeContext);
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(ApiResponse.success(messages));
+    }
+
+    @GetMapping("/sessions/{sessionId}/context-window")
+    @Operation(summary = "Get the most recent messages that fit a token budget, for an LLM prompt")
+    public ResponseEntity<ApiResponse<ContextWindowResponse>> getContextWindow(
+            @PathVariable Long sessionId,
+            @Parameter(description = "User ID") @RequestParam String userId,
+            @Parameter(description = "Token budget (estimated at ~4 characters per token)") @RequestParam int maxTokens,
+            @Parameter(description = "Include the stored summary when older messages are left out") @RequestParam(defaultValue = "true") boolean includeSummary) {
+
+        ContextWindowResponse window = chatService.getContextWindow(sessionId, userId, maxTokens, includeSummary);
+        return ResponseEntity.ok(ApiResponse.success(window));
+    }
+
+    @PutMapping("/sessions/{sessionId}/summary")
+    @Operation(summary = "Store the rolling summary of a session's older messages")
+    public ResponseEntity<ApiResponse<Void>> updateSummary(
+            @PathVariable Long sessionId,
+            @Parameter(description = "User ID") @RequestParam String userId,
+            @Valid @RequestBody UpdateSummaryRequest request) {
+
+        chatService.updateSummary(sessionId, userId, request);
+        return ResponseEntity.ok(ApiResponse.success(null, "Summary updated successfully"));
+    }
+
+    @GetMapping("/search")
+    @Operation(summary = "Search a user's session titles and messages, best matches first")
+    public ResponseEntity<ApiResponse<CursorSliceResponse<SearchHit>>> search(
+            @Parameter(description = "User ID") @RequestParam String userId,
+            @Parameter(description = "Search terms; supports \"quoted phrases\", or and -exclusions") @RequestParam String q,
+            @Parameter(description = "Return hits after this cursor") @RequestParam(required = false) String after,
+            @Parameter(description = "Slice size (1-50)") @RequestParam(defaultValue = "20") int size) {
+
+        CursorSliceResponse<SearchHit> hits = searchService.search(userId, q, after, size);
+        return ResponseEntity.ok(ApiResponse.success(hits));
+    }
+
+    @GetMapping("/messages/{messageId}/context")
+    @Operation(summary = "Get the context of a single message")
+    public ResponseEntity<ApiResponse<String>> getMessageContext(
+            @PathVariable Long messageId,
             @Parameter(description = "User ID") @RequestParam String userId) {
 
-        List<MessageResponse> messages = chatService.getMessages(sessionId, userId);
-        return ResponseEntity.ok(ApiResponse.success(messages));
+        String context = chatService.getMessageContext(messageId, userId);
+        return ResponseEntity.ok(ApiResponse.success(context));
     }
 
     @GetMapping("/sessions/{sessionId}/messages/paginated")
@@ -115,10 +258,107 @@ public class ChatController {
             @PathVariable Long sessionId,
             @Parameter(description = "User ID") @RequestParam String userId,
             @Parameter(description = "Page number (0-indexed)") @RequestParam(defaultValue = "0") int page,
-            @Parameter(description = "Page size") @RequestParam(defaultValue = "20") int size) {
+            @Parameter(description = "Page size") @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "Include a preview of each message's context") @RequestParam(defaultValue = "false") boolean includeContext) {
 
         Pageable pageable = PageRequest.of(page, size);
-        Page<MessageResponse> messages = chatService.getMessagesPaginated(sessionId, userId, pageable);
+        Page<MessageResponse> messages = chatService.getMessagesPaginated(sessionId, userId, pageable, includeContext);
+        return ResponseEntity.ok(ApiResponse.success(messages));
+    }
+
+    @GetMapping("/sessions/{sessionId}/messages/cursor")
+    @Operation(summary = "Get messages in a session using keyset (cursor) pagination")
+    public ResponseEntity<ApiResponse<CursorSliceResponse<MessageResponse>>> getMessagesByCursor(
+            @PathVariable Long sessionId,
+            @Parameter(description = "User ID") @RequestParam String userId,
+            @Parameter(description = "Return messages after this cursor") @RequestParam(required = false) String after,
+            @Parameter(description = "Return messages before this cursor") @RequestParam(required = false) String before,
+            @Parameter(description = "Slice size (1-100)") @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "Include a preview of each message's context") @RequestParam(defaultValue = "false") boolean includeContext) {
+
+        CursorSliceResponse<MessageResponse> messages =
+                chatService.getMessagesByCursor(sessionId, userId, after, before, size, includeContext);
         return ResponseEntity.ok(ApiResponse.success(messages));
     }
+
+    @GetMapping(value = "/sessions/{sessionId}/messages/subscribe", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Subscribe to new messages in a session (server-sent events)")
+    public SseEmitter subscribeToMessages(
+            @PathVariable Long sessionId,
+            @Parameter(description = "User ID") @RequestParam String userId,
+            @Parameter(description = "Id of the last event received; missed messages are replayed first")
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @Parameter(description = "Replay messages after this cursor, for the first connection")
+            @RequestParam(required = false) String after) {
+
+        return messagePushService.subscribe(sessionId, userId, lastEventId != null ? lastEventId : after);
+    }
+
+    @GetMapping(value = "/sessions/{sessionId}/messages/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Export all messages in a session as newline-delimited JSON")
+    public ResponseEntity<StreamingResponseBody> streamMessages(
+            @PathVariable Long sessionId,
+            @Parameter(description = "User ID") @RequestParam String userId) {
+
+        // Checked up front so a missing session is still a 404 rather than a truncated 200
+        chatService.verifySessionOwnership(sessionId, userId);
+
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = outputStream -> {
+            // Runs on an async thread after the request released its permit, and reads for the whole export
+            dbConcurrencyLimit.acquirePermit("export of session " + sessionId);
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(new SerializedString("\n"));
+                int[] written = {0};
+                chatService.streamMessages(sessionId, userId, message -> {
+                    try {
+                        writer.writeValue(generator, message);
+                        if (++written[0] % STREAM_FLUSH_INTERVAL == 0) {
+                            generator.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                if (written[0] > 0) {
+                    generator.writeRaw('\n');
+                }
+            } finally {
+                dbConcurrencyLimit.releasePermit();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    // Strong ETags for conditional GETs. There is no Last-Modified: at one second resolution it would answer
+    // 304 for a message added within the same second as the client's copy.
+
+    private static String sessionETag(SessionResponse session) {
+        return "\"s" + session.getId() + "-" + stamp(session.getUpdatedAt()) + "-" + session.getMessageCount() +
+                "-" + stamp(session.getLastMessageAt()) + "\"";
+    }
+
+    // Renames and favorites bump updatedAt and new messages the counters, so the session tags cover the list
+    private static String sessionsETag(List<SessionResponse> sessions) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            sessions.forEach(session -> digest.update(sessionETag(session).getBytes(StandardCharsets.UTF_8)));
+            return "\"l" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Messages are only ever appended, so the count and time of the last one identify the list
+    private static String messagesETag(Long sessionId, SessionVersion version, boolean includeContext) {
+        return "\"m" + sessionId + "-" + version.messageCount() + "-" + stamp(version.lastMessageAt()) +
+                (includeContext ? "-c" : "") + "\"";
+    }
+
+    private static String stamp(LocalDateTime time) {
+        return time != null ? time.toString() : "none";
+    }
 }
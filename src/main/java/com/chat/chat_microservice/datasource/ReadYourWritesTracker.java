@@ -0,0 +1,53 @@
+package com.chat.chat_microservice.datasource;
+
+import com.chat.chat_microservice.cache.BoundedCache;
+import com.chat.chat_microservice.config.ReadReplicaProperties;
+import com.chat.chat_microservice.event.SessionsChangedEvent;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+// Remembers users who wrote within the read-your-writes window. Requests of such a user are pinned to the
+// primary (see ReadYourWritesFilter), so a lagging replica cannot hide the message they just sent.
+public class ReadYourWritesTracker {
+
+    private final BoundedCache<String, Boolean> recentWriters;
+    private final ThreadLocal<String> currentUser = new ThreadLocal<>();
+    private final ThreadLocal<Boolean> primaryOnly = new ThreadLocal<>();
+    private final boolean enabled;
+
+    public ReadYourWritesTracker(ReadReplicaProperties properties) {
+        this.enabled = !properties.getReadYourWritesWindow().isZero();
+        this.recentWriters = new BoundedCache<>("read-your-writes", properties.getMaxStickyUsers(),
+                properties.getReadYourWritesWindow());
+    }
+
+    // Every session and message write publishes this event, including the write-behind committer
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onSessionsChanged(SessionsChangedEvent event) {
+        if (enabled) {
+            recentWriters.put(event.userId(), Boolean.TRUE);
+        }
+    }
+
+    public void bind(String userId) {
+        currentUser.set(userId);
+    }
+
+    // For reads that must see what was just committed regardless of who wrote it, e.g. an SSE replay
+    public void pinToPrimary() {
+        primaryOnly.set(Boolean.TRUE);
+    }
+
+    public void clear() {
+        currentUser.remove();
+        primaryOnly.remove();
+    }
+
+    public boolean isPinnedToPrimary() {
+        if (primaryOnly.get() != null) {
+            return true;
+        }
+        String userId = currentUser.get();
+        return userId != null && recentWriters.get(userId) != null;
+    }
+}
@@ -0,0 +1,130 @@
+package com.chat.chat_microservice.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Read-only side of the LazyConnectionDataSourceProxy set up in ReadReplicaConfig: hands out connections from
+// the healthy replicas in turn and falls back to the primary when none is usable or the user is pinned to it
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    // Replay lag only means something while WAL is pending; an idle primary would otherwise look ever further behind.
+    // A server that is not in recovery (e.g. a second local instance standing in for a replica) reports no lag.
+    private static final String LAG_QUERY = "SELECT CASE WHEN NOT pg_is_in_recovery() " +
+            "OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) END";
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final ReadYourWritesTracker readYourWritesTracker;
+    private final Duration maxLag;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter replicaReads;
+    private final Counter primaryReads;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas,
+                                    ReadYourWritesTracker readYourWritesTracker, Duration maxLag,
+                                    MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.readYourWritesTracker = readYourWritesTracker;
+        this.maxLag = maxLag;
+        this.replicaReads = meterRegistry.counter("chat.datasource.reads", "target", "replica");
+        this.primaryReads = meterRegistry.counter("chat.datasource.reads", "target", "primary");
+        for (int i = 0; i < this.replicas.size(); i++) {
+            Replica replica = this.replicas.get(i);
+            String name = String.valueOf(i);
+            Gauge.builder("chat.datasource.replica.lag", replica, r -> r.lagMillis)
+                    .baseUnit("milliseconds").tag("replica", name).register(meterRegistry);
+            Gauge.builder("chat.datasource.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+                    .tag("replica", name).register(meterRegistry);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!readYourWritesTracker.isPinnedToPrimary()) {
+            int size = replicas.size();
+            int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+            for (int i = 0; i < size; i++) {
+                Replica replica = replicas.get((start + i) % size);
+                if (!replica.healthy) {
+                    continue;
+                }
+                try {
+                    Connection connection = replica.dataSource.getConnection();
+                    replicaReads.increment();
+                    return connection;
+                } catch (SQLException e) {
+                    // Taken out of rotation until the next health check finds it reachable again
+                    replica.healthy = false;
+                    log.warn("Read replica {} unavailable, falling back: {}", replicas.indexOf(replica), e.getMessage());
+                }
+            }
+        }
+        primaryReads.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    // Replicas are pools with their own credentials, so a connection for other ones comes from the primary
+    public Connection getConnection(String username, String password) throws SQLException {
+        primaryReads.increment();
+        return primary.getConnection(username, password);
+    }
+
+    @Scheduled(fixedDelayString = "${app.read-replicas.health-check-interval:PT5S}")
+    public void checkReplicas() {
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(i);
+            boolean wasHealthy = replica.healthy;
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(LAG_QUERY)) {
+                resultSet.next();
+                replica.lagMillis = resultSet.getLong(1);
+                replica.healthy = replica.lagMillis <= maxLag.toMillis();
+            } catch (SQLException e) {
+                replica.healthy = false;
+            }
+            if (wasHealthy != replica.healthy) {
+                log.warn("Read replica {} is now {} (lag {} ms)", i, replica.healthy ? "in rotation" : "out of rotation",
+                        replica.lagMillis);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private static final class Replica {
+
+        private final DataSource dataSource;
+        // Optimistic until the first health check, which runs right after startup
+        private volatile boolean healthy = true;
+        private volatile long lagMillis;
+
+        private Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.chat.chat_microservice.dto;
+
+// How long a write-behind addMessage waits before answering the client
+public enum AckMode {
+    ACCEPTED, // answered once the message is queued in memory
+    DURABLE   // answered once the group commit containing the message is in Postgres
+}
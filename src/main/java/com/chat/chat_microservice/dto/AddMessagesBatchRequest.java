@@ -0,0 +1,20 @@
+package com.chat.chat_microservice.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AddMessagesBatchRequest {
+
+    @NotEmpty(message = "At least one message is required")
+    @Size(max = 100, message = "A batch may contain at most 100 messages")
+    private List<@Valid AddMessageRequest> messages;
+}
@@ -0,0 +1,22 @@
+package com.chat.chat_microservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// The most recent messages that fit a token budget, oldest first. The summary of older turns is only
+// included when older messages had to be left out.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContextWindowResponse {
+
+    private Long sessionId;
+    private List<MessageResponse> messages;
+    private int estimatedTokens;
+    private boolean truncated;
+    private String summary;
+    private Long summaryThroughMessageId;
+}
@@ -0,0 +1,55 @@
+package com.chat.chat_microservice.dto;
+
+import com.chat.chat_microservice.entity.ChatMessage;
+import com.chat.chat_microservice.exception.BadRequestException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+// Position of a message in its session's seq order, exposed to clients only as an opaque token
+@Data
+@AllArgsConstructor
+public class MessageCursor {
+
+    private static final String SEQ_PREFIX = "seq:";
+    private static final String LEGACY_SEPARATOR = "|";
+
+    private Long seq;
+    // Tokens issued before messages had a seq carry "createdAt|id" instead; seq is null until the
+    // message id is resolved (see ChatService#getMessagesByCursor)
+    private Long legacyId;
+
+    public static MessageCursor of(ChatMessage message) {
+        return new MessageCursor(message.getSeq(), null);
+    }
+
+    public static MessageCursor of(MessageResponse message) {
+        return new MessageCursor(message.getSeq(), null);
+    }
+
+    public String encode() {
+        String raw = SEQ_PREFIX + seq;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static MessageCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            if (raw.startsWith(SEQ_PREFIX)) {
+                return new MessageCursor(Long.parseLong(raw.substring(SEQ_PREFIX.length())), null);
+            }
+            int separator = raw.lastIndexOf(LEGACY_SEPARATOR);
+            if (separator < 0) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            LocalDateTime.parse(raw.substring(0, separator));
+            return new MessageCursor(null, Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+}
@@ -12,19 +12,53 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class MessageResponse {
 
+    // Contexts can be tens of KB; responses carry at most this many characters of one
+    public static final int CONTEXT_PREVIEW_LENGTH = 1_000;
+
     private Long id;
+    // Position in the session; messages are listed in seq order
+    private Long seq;
     private String sender;
     private String content;
     private String context;
     private LocalDateTime createdAt;
+    private boolean hasContext;
+    // The full context is served by GET /messages/{id}/context
+    private boolean contextTruncated;
+
+    // Listing projection; the context itself is only read when asked for
+    public MessageResponse(Long id, Long seq, String sender, String content, LocalDateTime createdAt,
+                           boolean hasContext) {
+        this(id, seq, sender, content, null, createdAt, hasContext, false);
+    }
+
+    // Export projection: the stored preview and length of the context, if there is one
+    public MessageResponse(Long id, Long seq, String sender, String content, LocalDateTime createdAt,
+                           String contextPreview, Integer contextLength) {
+        this(id, seq, sender, content, null, createdAt, false, false);
+        if (contextPreview != null) {
+            setContextPreview(contextPreview, contextLength);
+        }
+    }
+
+    public void setContextPreview(String preview, int fullLength) {
+        this.context = preview;
+        this.hasContext = preview != null;
+        this.contextTruncated = preview != null && fullLength > preview.length();
+    }
 
-    public static MessageResponse fromEntity(ChatMessage message) {
+    // For a message just written: its context text is at hand, so the stored blob is never read back
+    public static MessageResponse fromEntity(ChatMessage message, String context) {
         MessageResponse response = new MessageResponse();
         response.setId(message.getId());
+        response.setSeq(message.getSeq());
         response.setSender(message.getSender());
         response.setContent(message.getContent());
-        response.setContext(message.getContext());
         response.setCreatedAt(message.getCreatedAt());
+        if (context != null) {
+            response.setContextPreview(context.length() > CONTEXT_PREVIEW_LENGTH
+                    ? context.substring(0, CONTEXT_PREVIEW_LENGTH) : context, context.length());
+        }
         return response;
     }
-}
\ No newline at end of file
+}
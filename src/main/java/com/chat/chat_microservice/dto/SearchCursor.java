@@ -0,0 +1,43 @@
+package com.chat.chat_microservice.dto;
+
+import com.chat.chat_microservice.exception.BadRequestException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Position of a hit in (rank desc, hitId desc) order; the rank is carried exactly so ties resume correctly
+@Data
+@AllArgsConstructor
+public class SearchCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private float rank;
+    private long hitId;
+
+    public static SearchCursor of(SearchHit hit) {
+        return new SearchCursor(hit.getRank(), hit.hitId());
+    }
+
+    public String encode() {
+        String raw = rank + SEPARATOR + hitId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SearchCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            return new SearchCursor(
+                    Float.parseFloat(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.chat.chat_microservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// A session whose title matched (messageId null) or a matching message, with its matches marked **like this**
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchHit {
+
+    private Long sessionId;
+    private String sessionTitle;
+    private Long messageId;
+    private String sender;
+    private String snippet;
+    private float rank;
+    private LocalDateTime createdAt;
+
+    // Unique across both kinds of hit: message ids as they are, session ids negated
+    public long hitId() {
+        return messageId != null ? messageId : -sessionId;
+    }
+}
@@ -0,0 +1,14 @@
+package com.chat.chat_microservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionDeletionResponse {
+
+    private int sessionCount;
+    private boolean pending; // true when messages are still being purged in the background
+}
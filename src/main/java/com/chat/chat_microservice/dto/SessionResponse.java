@@ -19,6 +19,7 @@ public class SessionResponse {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private int messageCount;
+    private LocalDateTime lastMessageAt;
 
     public static SessionResponse fromEntity(ChatSession session) {
         SessionResponse response = new SessionResponse();
@@ -28,7 +29,8 @@ public class SessionResponse {
         response.setFavorite(session.isFavorite());
         response.setCreatedAt(session.getCreatedAt());
         response.setUpdatedAt(session.getUpdatedAt());
-        response.setMessageCount(session.getMessages() != null ? session.getMessages().size() : 0);
+        response.setMessageCount(session.getMessageCount());
+        response.setLastMessageAt(session.getLastMessageAt());
         return response;
     }
 }
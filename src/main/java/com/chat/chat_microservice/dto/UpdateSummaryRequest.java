@@ -0,0 +1,20 @@
+package com.chat.chat_microservice.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UpdateSummaryRequest {
+
+    @NotBlank(message = "Summary is required")
+    private String summary;
+
+    // Last message the summary covers
+    @NotNull(message = "Id of the last summarized message is required")
+    private Long throughMessageId;
+}
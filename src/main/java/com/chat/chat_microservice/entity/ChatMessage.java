@@ -9,28 +9,39 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "chat_messages")
+@Table(name = "chat_messages", indexes = {
+        // Serves every per-session listing, including keyset paging on seq
+        @Index(name = "idx_chat_messages_session_seq", columnList = "session_id, seq")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class ChatMessage {
 
+    // Pooled sequence instead of IDENTITY: one round trip per 50 ids, and Hibernate can batch the inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "chat_messages_seq")
+    @SequenceGenerator(name = "chat_messages_seq", sequenceName = "chat_messages_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "session_id", nullable = false)
     private ChatSession session;
 
+    // Position in the session, 1, 2, 3, ... in append order (see ChatSessionRepository#allocateMessageSeqs)
+    @Column(nullable = false, updatable = false)
+    private Long seq;
+
     @Column(nullable = false)
     private String sender; // "user" or "assistant"
 
     @Column(nullable = false, columnDefinition = "TEXT")
     private String content;
 
-    @Column(columnDefinition = "TEXT")
-    private String context; // Optional RAG context
+    // Optional RAG context, in its own table and shared between messages with the same text (see MessageContextStore)
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "context_id")
+    private ChatMessageContext context;
 
     @CreationTimestamp
     @Column(nullable = false, updatable = false)
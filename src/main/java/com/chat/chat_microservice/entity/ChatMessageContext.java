@@ -0,0 +1,44 @@
+package com.chat.chat_microservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Optional RAG context, stored once per distinct text and shared by every message that carries it.
+// Rows are written and reference counted by MessageContextStore, never through the entity.
+@Entity
+@Table(name = "chat_message_contexts")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatMessageContext {
+
+    @Id
+    private Long id;
+
+    // SHA-256 of the UTF-8 text
+    @Column(name = "content_hash", nullable = false, columnDefinition = "BYTEA")
+    private byte[] contentHash;
+
+    @Convert(converter = DeflateTextConverter.class)
+    @Column(columnDefinition = "BYTEA")
+    private String body;
+
+    // Plain text of contexts stored before deduplication (V4)
+    @Column(name = "legacy_body", columnDefinition = "TEXT")
+    private String legacyBody;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String preview;
+
+    @Column(name = "text_length", nullable = false)
+    private int textLength;
+
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    public String getText() {
+        return body != null ? body : legacyBody;
+    }
+}
@@ -4,7 +4,9 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.SQLRestriction;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
@@ -13,6 +15,8 @@ import java.util.List;
 
 @Entity
 @Table(name = "chat_sessions")
+// Sessions waiting for the chunked purge are invisible to every entity query
+@SQLRestriction("pending_deletion = false")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -39,6 +43,32 @@ public class ChatSession {
     @Column(nullable = false)
     private LocalDateTime updatedAt;
 
+    // Concurrent renames and favorite toggles fail with a 409 instead of overwriting each other
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
+    // Denormalized so session listings never have to touch chat_messages. Only written by the appends'
+    // atomic UPDATE (see ChatSessionRepository#allocateMessageSeqs): an entity update would write back the
+    // values it read and lose concurrent appends
+    @ColumnDefault("0")
+    @Column(nullable = false, updatable = false)
+    private int messageCount = 0;
+
+    @Column(updatable = false)
+    private LocalDateTime lastMessageAt;
+
+    @ColumnDefault("0")
+    @Column(nullable = false, updatable = false)
+    private long lastMessageSeq = 0;
+
+    // Only set by ChatSessionRepository#markPendingDeletion, which also bumps the version: an update that
+    // read the session before it was marked fails instead of writing back false and reviving it
+    @ColumnDefault("false")
+    @Column(nullable = false, updatable = false)
+    private boolean pendingDeletion = false;
+
     @OneToMany(mappedBy = "session", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<ChatMessage> messages = new ArrayList<>();
 }
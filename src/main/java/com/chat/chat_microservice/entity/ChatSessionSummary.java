@@ -0,0 +1,36 @@
+package com.chat.chat_microservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+// Rolling summary of a session's older turns; removed with the session by the ON DELETE CASCADE in V6
+@Entity
+@Table(name = "chat_session_summaries")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatSessionSummary {
+
+    @Id
+    @Column(name = "session_id")
+    private Long sessionId;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String summary;
+
+    // Cursor of the last message the summary covers
+    @Column(nullable = false)
+    private LocalDateTime throughCreatedAt;
+
+    @Column(nullable = false)
+    private Long throughMessageId;
+
+    @UpdateTimestamp
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,9 @@
+package com.chat.chat_microservice.event;
+
+import com.chat.chat_microservice.dto.MessageResponse;
+
+import java.util.List;
+
+// Messages persisted in one transaction, in the order they were added; pushed to subscribers once committed
+public record MessagesAddedEvent(Long sessionId, List<MessageResponse> messages) {
+}
@@ -0,0 +1,7 @@
+package com.chat.chat_microservice.event;
+
+import java.util.List;
+
+// Sessions already marked pending_deletion whose messages are too many to delete inside the request
+public record SessionPurgeRequestedEvent(List<Long> sessionIds) {
+}
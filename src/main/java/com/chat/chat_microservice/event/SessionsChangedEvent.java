@@ -0,0 +1,5 @@
+package com.chat.chat_microservice.event;
+
+// Published whenever something shown in a user's session list changes (title, favorite, counts, membership)
+public record SessionsChangedEvent(String userId) {
+}
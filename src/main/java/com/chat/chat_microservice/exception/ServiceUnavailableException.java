@@ -0,0 +1,7 @@
+package com.chat.chat_microservice.exception;
+
+public class ServiceUnavailableException extends RuntimeException {
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -53,9 +53,6 @@ public class ApiKeyAuthenticationFilter extends OncePerRequestFilter {
 
         String requestApiKey = request.getHeader(API_KEY_HEADER);
 
-        System.out.println(">>>"+requestApiKey);
-        System.out.println(">>>"+apiKey);
-
         if (requestApiKey == null || requestApiKey.isEmpty()) {
             log.warn("Missing API key for request: {}", requestPath);
             throw new UnauthorizedException("API key is required");
@@ -0,0 +1,81 @@
+package com.chat.chat_microservice.filter;
+
+import com.chat.chat_microservice.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// With virtual threads Tomcat no longer caps concurrency at its worker pool, so thousands of requests
+// could queue inside Hikari and time out there after 30s. This gate admits roughly as many API requests
+// as the pool can serve and fails the rest fast with 503 + Retry-After. Database work that outlives the request
+// thread (the streamed export, SSE replays) takes its own permit through acquirePermit/releasePermit.
+@Component
+@Slf4j
+public class DbConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private final boolean enabled;
+    private final Semaphore permits;
+    private final long acquireTimeoutNanos;
+
+    public DbConcurrencyLimitFilter(@Value("${app.db-concurrency.enabled:false}") boolean enabled,
+                                    @Value("${app.db-concurrency.max-concurrent-requests:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrentRequests,
+                                    @Value("${app.db-concurrency.acquire-timeout:PT2S}") Duration acquireTimeout,
+                                    MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+        meterRegistry.gauge("chat.db_concurrency.waiting", permits, Semaphore::getQueueLength);
+        meterRegistry.gauge("chat.db_concurrency.available", permits, Semaphore::availablePermits);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !request.getRequestURI().startsWith("/api/v1/chat");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        acquirePermit(request.getRequestURI());
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Every successful call must be paired with releasePermit(); both do nothing while the gate is disabled
+    public void acquirePermit(String work) {
+        if (!enabled) {
+            return;
+        }
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while waiting for a database slot");
+        }
+        if (!acquired) {
+            log.warn("Database concurrency limit reached for: {}", work);
+            throw new ServiceUnavailableException("Server is busy, please retry");
+        }
+    }
+
+    public void releasePermit() {
+        if (enabled) {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.chat.chat_microservice.filter;
+
+import com.chat.chat_microservice.config.RateLimitProperties;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Refill;
+import io.github.bucket4j.local.SynchronizationStrategy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+// Token buckets per API key and per user. Configured API keys are pinned; any other key value (typos, scanners)
+// or user lands in a bounded map that is swept of idle entries, and once that map is full, new entries share
+// one overflow bucket per scope.
+@Component
+@Slf4j
+public class RateLimitBucketStore {
+
+    public static final long REJECTED = -1;
+
+    // lastAccess is only rewritten when it is older than this, so hot keys do not bounce a cache line per request
+    private static final long TOUCH_GRANULARITY_MILLIS = 1_000;
+
+    public enum Scope {
+        API_KEY, USER_READ, USER_WRITE
+    }
+
+    private final RateLimitProperties properties;
+    private final Map<Scope, BucketMap> scopes = new EnumMap<>(Scope.class);
+
+    public RateLimitBucketStore(RateLimitProperties properties,
+                                @Value("${app.api.key}") String apiKey,
+                                MeterRegistry meterRegistry) {
+        this.properties = properties;
+        BucketMap apiKeys = new BucketMap(Scope.API_KEY, properties.getMaxBuckets(), properties::tierFor, meterRegistry);
+        apiKeys.pin(apiKey);
+        properties.getKeyTiers().keySet().forEach(apiKeys::pin);
+        scopes.put(Scope.API_KEY, apiKeys);
+        RateLimitProperties.User user = properties.getUser();
+        scopes.put(Scope.USER_READ, new BucketMap(Scope.USER_READ, user.getMaxBuckets(), k -> user.getRead(), meterRegistry));
+        scopes.put(Scope.USER_WRITE, new BucketMap(Scope.USER_WRITE, user.getMaxBuckets(), k -> user.getWrite(), meterRegistry));
+    }
+
+    // Returns the tokens left after taking one, or REJECTED
+    public long tryConsume(Scope scope, String key) {
+        BucketEntry entry = scopes.get(scope).resolve(key);
+        // Buckets are built without internal synchronization, so the whole token check is one uncontended
+        // lock acquisition and an in-place state update: nothing is allocated when a token is available
+        entry.lock.lock();
+        try {
+            return entry.bucket.tryConsume(1) ? entry.bucket.getAvailableTokens() : REJECTED;
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    public long nanosUntilRefill(Scope scope, String key) {
+        BucketEntry entry = scopes.get(scope).resolve(key);
+        entry.lock.lock();
+        try {
+            return entry.bucket.estimateAbilityToConsume(1).getNanosToWaitForRefill();
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    public int size(Scope scope) {
+        return scopes.get(scope).dynamic.size();
+    }
+
+    @Scheduled(fixedDelayString = "${app.rate-limit.sweep-interval:PT30S}")
+    public void evictIdle() {
+        long cutoff = nowMillis() - properties.getIdleTimeout().toMillis();
+        scopes.values().forEach(bucketMap -> bucketMap.evictIdle(cutoff));
+    }
+
+    private static Bucket newBucket(RateLimitProperties.Tier tier) {
+        Bandwidth limit = Bandwidth.classic(tier.getCapacity(),
+                Refill.intervally(tier.getCapacity(), tier.getRefillPeriod()));
+        return Bucket.builder()
+                .addLimit(limit)
+                .withSynchronizationStrategy(SynchronizationStrategy.NONE)
+                .build();
+    }
+
+    private static long nowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    private static final class BucketMap {
+
+        private final Scope scope;
+        private final int maxBuckets;
+        private final Function<String, RateLimitProperties.Tier> tiers;
+        private final Map<String, BucketEntry> pinned = new HashMap<>();
+        private final ConcurrentHashMap<String, BucketEntry> dynamic = new ConcurrentHashMap<>();
+        private final BucketEntry overflow;
+        private final Counter overflowCounter;
+        private final Counter evictionCounter;
+
+        private BucketMap(Scope scope, int maxBuckets, Function<String, RateLimitProperties.Tier> tiers,
+                          MeterRegistry meterRegistry) {
+            this.scope = scope;
+            this.maxBuckets = maxBuckets;
+            this.tiers = tiers;
+            this.overflow = new BucketEntry(newBucket(tiers.apply(null)));
+            Tags tags = Tags.of("scope", scope.name().toLowerCase());
+            this.overflowCounter = meterRegistry.counter("chat.rate_limit.overflow", tags);
+            this.evictionCounter = meterRegistry.counter("chat.rate_limit.evictions", tags);
+            meterRegistry.gaugeMapSize("chat.rate_limit.buckets", tags, dynamic);
+        }
+
+        private void pin(String key) {
+            pinned.put(key, newEntry(key));
+        }
+
+        private BucketEntry resolve(String key) {
+            BucketEntry entry = pinned.get(key);
+            if (entry != null) {
+                return entry;
+            }
+            entry = dynamic.get(key);
+            if (entry == null) {
+                if (dynamic.size() >= maxBuckets) {
+                    overflowCounter.increment();
+                    return overflow;
+                }
+                entry = dynamic.computeIfAbsent(key, this::newEntry);
+            }
+            long now = nowMillis();
+            if (now - entry.lastAccessMillis > TOUCH_GRANULARITY_MILLIS) {
+                entry.lastAccessMillis = now;
+            }
+            return entry;
+        }
+
+        private void evictIdle(long cutoff) {
+            int before = dynamic.size();
+            dynamic.values().removeIf(entry -> entry.lastAccessMillis < cutoff);
+            int evicted = before - dynamic.size();
+            if (evicted > 0) {
+                evictionCounter.increment(evicted);
+                log.debug("Evicted {} idle {} rate-limit buckets", evicted, scope);
+            }
+        }
+
+        private BucketEntry newEntry(String key) {
+            BucketEntry entry = new BucketEntry(newBucket(tiers.apply(key)));
+            entry.lastAccessMillis = nowMillis();
+            return entry;
+        }
+    }
+
+    private static final class BucketEntry {
+
+        private final Bucket bucket;
+        // ReentrantLock rather than synchronized, so contended virtual threads do not pin their carrier
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile long lastAccessMillis;
+
+        private BucketEntry(Bucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+}
@@ -1,31 +1,27 @@
 package com.chat.chat_microservice.filter;
 
 import com.chat.chat_microservice.exception.RateLimitExceededException;
-import io.github.bucket4j.Bandwidth;
-import io.github.bucket4j.Bucket;
-import io.github.bucket4j.Refill;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.time.Duration;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 @Component
+@RequiredArgsConstructor
 @Slf4j
 public class RateLimitingFilter extends OncePerRequestFilter {
 
-    private final Map<String, Bucket> cache = new ConcurrentHashMap<>();
+    static final String REMAINING_HEADER = "X-RateLimit-Remaining";
 
-    // 100 requests per minute per API key
-    private static final int CAPACITY = 100;
-    private static final Duration REFILL_DURATION = Duration.ofMinutes(1);
+    // Per API key limits come from app.rate-limit.tiers (100 requests per minute by default)
+    private final RateLimitBucketStore bucketStore;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
@@ -39,24 +35,19 @@ public class RateLimitingFilter extends OncePerRequestFilter {
             return;
         }
 
-        Bucket bucket = resolveBucket(apiKey);
-
-        if (bucket.tryConsume(1)) {
-            filterChain.doFilter(request, response);
-        } else {
+        long remaining = bucketStore.tryConsume(RateLimitBucketStore.Scope.API_KEY, apiKey);
+        if (remaining == RateLimitBucketStore.REJECTED) {
             log.warn("Rate limit exceeded for API key: {}", apiKey.substring(0, Math.min(8, apiKey.length())) + "...");
-            throw new RateLimitExceededException("Rate limit exceeded. Please try again later.");
+            long retryAfterNanos = bucketStore.nanosUntilRefill(RateLimitBucketStore.Scope.API_KEY, apiKey);
+            response.setHeader(REMAINING_HEADER, "0");
+            throw new RateLimitExceededException("Rate limit exceeded. Please try again later.",
+                    retryAfterSeconds(retryAfterNanos));
         }
+        response.setHeader(REMAINING_HEADER, String.valueOf(remaining));
+        filterChain.doFilter(request, response);
     }
 
-    private Bucket resolveBucket(String apiKey) {
-        return cache.computeIfAbsent(apiKey, k -> createNewBucket());
-    }
-
-    private Bucket createNewBucket() {
-        Bandwidth limit = Bandwidth.classic(CAPACITY, Refill.intervally(CAPACITY, REFILL_DURATION));
-        return Bucket.builder()
-                .addLimit(limit)
-                .build();
+    static long retryAfterSeconds(long nanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(nanos + 999_999_999));
     }
 }
@@ -0,0 +1,38 @@
+package com.chat.chat_microservice.filter;
+
+import com.chat.chat_microservice.datasource.ReadYourWritesTracker;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+// Binds the request's userId for ReplicaRoutingDataSource, so a user who just wrote reads from the primary
+@Component
+@ConditionalOnProperty(name = "app.read-replicas.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private final ReadYourWritesTracker readYourWritesTracker;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/v1/chat") || request.getParameter("userId") == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        readYourWritesTracker.bind(request.getParameter("userId"));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            readYourWritesTracker.clear();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.chat.chat_microservice.filter;
+
+import com.chat.chat_microservice.config.RateLimitProperties;
+import com.chat.chat_microservice.exception.RateLimitExceededException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Second level of rate limiting, below the API key: every backend shares one key, so budgets are also
+// enforced per userId and endpoint class (reads vs writes), plus a cap on the user's in-flight requests.
+// Runs after authentication so unauthenticated callers cannot drain another user's budget.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserRateLimitingFilter extends OncePerRequestFilter {
+
+    private final RateLimitBucketStore bucketStore;
+    private final RateLimitProperties properties;
+    // Only users with requests in progress have an entry, so the map is bounded by concurrency, not user count
+    private final ConcurrentHashMap<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // POST /sessions carries the userId in the body and is only limited per API key
+        return !request.getRequestURI().startsWith("/api/v1/chat") || request.getParameter("userId") == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String userId = request.getParameter("userId");
+        RateLimitBucketStore.Scope scope = isRead(request.getMethod())
+                ? RateLimitBucketStore.Scope.USER_READ
+                : RateLimitBucketStore.Scope.USER_WRITE;
+
+        long remaining = bucketStore.tryConsume(scope, userId);
+        if (remaining == RateLimitBucketStore.REJECTED) {
+            log.warn("Rate limit exceeded for user: {} ({})", userId, scope);
+            response.setHeader(RateLimitingFilter.REMAINING_HEADER, "0");
+            throw new RateLimitExceededException("Rate limit exceeded for this user. Please try again later.",
+                    RateLimitingFilter.retryAfterSeconds(bucketStore.nanosUntilRefill(scope, userId)));
+        }
+        // Report the tighter of the API key and user budgets
+        String keyRemaining = response.getHeader(RateLimitingFilter.REMAINING_HEADER);
+        if (keyRemaining == null || Long.parseLong(keyRemaining) > remaining) {
+            response.setHeader(RateLimitingFilter.REMAINING_HEADER, String.valueOf(remaining));
+        }
+
+        AtomicInteger count = inFlight.compute(userId, (key, current) -> {
+            AtomicInteger counter = current != null ? current : new AtomicInteger();
+            counter.incrementAndGet();
+            return counter;
+        });
+        try {
+            if (count.get() > properties.getUser().getMaxConcurrentRequests()) {
+                log.warn("Too many concurrent requests for user: {}", userId);
+                throw new RateLimitExceededException("Too many concurrent requests for this user", 1);
+            }
+            filterChain.doFilter(request, response);
+        } finally {
+            inFlight.computeIfPresent(userId, (key, counter) -> counter.decrementAndGet() == 0 ? null : counter);
+        }
+    }
+
+    private static boolean isRead(String method) {
+        return HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method);
+    }
+}
@@ -0,0 +1,39 @@
+package com.chat.chat_microservice.job;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Deletes context blobs whose last message is gone, a chunk per statement. A blob that gets referenced
+// again while the sweep runs is skipped: ref_count is re-checked on the locked row.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ContextBlobSweepJob {
+
+    private static final String DELETE_UNREFERENCED = "DELETE FROM chat_message_contexts WHERE ref_count = 0 AND id IN " +
+            "(SELECT c.id FROM chat_message_contexts c WHERE c.ref_count = 0 " +
+            " AND NOT EXISTS (SELECT 1 FROM chat_messages m WHERE m.context_id = c.id) " +
+            " LIMIT ? FOR UPDATE SKIP LOCKED)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.jobs.context-sweep.chunk-size:1000}")
+    private int chunkSize;
+
+    @Scheduled(fixedDelayString = "${app.jobs.context-sweep.interval:PT10M}")
+    public void sweep() {
+        long deleted = 0;
+        int chunk;
+        do {
+            chunk = jdbcTemplate.update(DELETE_UNREFERENCED, chunkSize);
+            deleted += chunk;
+        } while (chunk == chunkSize);
+        if (deleted > 0) {
+            log.info("Deleted {} unreferenced context blobs", deleted);
+        }
+    }
+}
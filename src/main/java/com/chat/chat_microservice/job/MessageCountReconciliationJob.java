@@ -0,0 +1,58 @@
+package com.chat.chat_microservice.job;
+
+import com.chat.chat_microservice.event.SessionsChangedEvent;
+import com.chat.chat_microservice.repository.ChatSessionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashSet;
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MessageCountReconciliationJob {
+
+    private final ChatSessionRepository sessionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.jobs.message-count-reconciliation.chunk-size:500}")
+    private int chunkSize;
+
+    // Safety net for chat_sessions.message_count / last_message_at drifting from chat_messages
+    @Scheduled(cron = "${app.jobs.message-count-reconciliation.cron:0 30 3 * * *}")
+    public void reconcile() {
+        log.info("Starting message count reconciliation");
+
+        long afterId = 0;
+        int fixed = 0;
+        List<Long> sessionIds;
+        do {
+            sessionIds = sessionRepository.findIdsAfter(afterId, chunkSize);
+            if (sessionIds.isEmpty()) {
+                break;
+            }
+            List<Long> chunk = sessionIds;
+            // One short transaction per chunk so the job never holds a connection for the whole table. The
+            // count runs in its own statement after the locks, so its snapshot includes every append that
+            // committed while they were awaited
+            List<String> corrected = transactionTemplate.execute(status -> {
+                sessionRepository.lockByIdIn(chunk);
+                List<String> userIds = sessionRepository.reconcileMessageCounts(chunk);
+                // Cached session lists (and their ETags) still show the drifted counts until evicted after commit
+                new HashSet<>(userIds).forEach(userId -> eventPublisher.publishEvent(new SessionsChangedEvent(userId)));
+                return userIds;
+            });
+            fixed += corrected != null ? corrected.size() : 0;
+            afterId = sessionIds.get(sessionIds.size() - 1);
+        } while (sessionIds.size() == chunkSize);
+
+        log.info("Message count reconciliation finished, {} sessions corrected", fixed);
+    }
+}
@@ -0,0 +1,155 @@
+package com.chat.chat_microservice.job;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Keeps a range-partitioned chat_messages (see db/partitioning) supplied with monthly partitions ahead of time,
+// and with retain-months set drops whole months of messages by detaching their partition instead of deleting rows
+@Component
+@ConditionalOnProperty(name = "app.partitioning.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class PartitionMaintenanceJob {
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("chat_messages_p(\\d{4})_(\\d{2})");
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MessageCountReconciliationJob reconciliationJob;
+
+    @Value("${app.partitioning.months-ahead:3}")
+    private int monthsAhead;
+
+    // 0 keeps every partition
+    @Value("${app.partitioning.retain-months:0}")
+    private int retainMonths;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${app.partitioning.cron:0 0 2 * * *}")
+    public void maintain() {
+        try {
+            maintain(YearMonth.now());
+        } catch (RuntimeException e) {
+            log.error("Partition maintenance failed", e);
+        }
+    }
+
+    public void maintain(YearMonth current) {
+        Integer partitioned = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_partitioned_table WHERE partrelid = to_regclass('chat_messages')",
+                Integer.class);
+        if (partitioned == null || partitioned == 0) {
+            log.warn("app.partitioning.enabled is set but chat_messages is not partitioned, skipping maintenance");
+            return;
+        }
+
+        TreeSet<YearMonth> months = new TreeSet<>();
+        Set<YearMonth> detachPending = new HashSet<>();
+        jdbcTemplate.query("SELECT c.relname, i.inhdetachpending FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = to_regclass('chat_messages')", rs -> {
+            Matcher matcher = PARTITION_NAME.matcher(rs.getString(1));
+            if (matcher.matches()) {
+                YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+                months.add(month);
+                if (rs.getBoolean(2)) {
+                    detachPending.add(month);
+                }
+            }
+        });
+        if (months.isEmpty()) {
+            log.warn("No monthly chat_messages partitions found, run the db/partitioning conversion script first");
+            return;
+        }
+
+        createPartitions(current, months.first());
+        if (retainMonths > 0) {
+            YearMonth cutoff = current.minusMonths(retainMonths);
+            dropPartitions(months.headSet(cutoff).stream().toList(), detachPending, findDetached(cutoff));
+        }
+    }
+
+    // Expired monthly tables that are no longer attached: a run failed between their detach and their drop.
+    // pg_inherits forgets them once detached, so they are picked up by name to finish the release and drop.
+    private List<YearMonth> findDetached(YearMonth cutoff) {
+        TreeSet<YearMonth> detached = new TreeSet<>();
+        jdbcTemplate.query("SELECT c.relname FROM pg_class c WHERE c.relkind = 'r' AND NOT c.relispartition " +
+                "AND c.relnamespace = current_schema()::regnamespace AND c.relname LIKE 'chat\\_messages\\_p%'", rs -> {
+            Matcher matcher = PARTITION_NAME.matcher(rs.getString(1));
+            if (matcher.matches()) {
+                YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+                if (month.isBefore(cutoff)) {
+                    detached.add(month);
+                }
+            }
+        });
+        return detached.stream().toList();
+    }
+
+    private void createPartitions(YearMonth current, YearMonth firstMonth) {
+        // Months before the first monthly partition belong to the legacy partition attached by the conversion
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = current.plusMonths(i);
+            if (month.isBefore(firstMonth)) {
+                continue;
+            }
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(month) +
+                    " PARTITION OF chat_messages FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" +
+                    month.plusMonths(1).atDay(1) + "')");
+        }
+    }
+
+    private void dropPartitions(List<YearMonth> expired, Set<YearMonth> detachPending, List<YearMonth> detached) {
+        if (expired.isEmpty() && detached.isEmpty()) {
+            return;
+        }
+        for (YearMonth month : detached) {
+            log.info("Resuming drop of detached chat_messages partition {}", partitionName(month));
+            releaseAndDrop(partitionName(month));
+        }
+        for (YearMonth month : expired) {
+            String name = partitionName(month);
+            // CONCURRENTLY only waits for in-flight queries instead of blocking chat_messages; it needs autocommit.
+            // A detach interrupted half way is left pending and has to be finalized instead.
+            jdbcTemplate.execute("ALTER TABLE chat_messages DETACH PARTITION " + name +
+                    (detachPending.contains(month) ? " FINALIZE" : " CONCURRENTLY"));
+            releaseAndDrop(name);
+        }
+        // The dropped messages were still counted in chat_sessions.message_count
+        reconciliationJob.reconcile();
+    }
+
+    // Safe to repeat: each statement commits on its own, and a release that already ran finds no rows left
+    private void releaseAndDrop(String name) {
+        // Contexts are shared blobs in their own table: only the messages that reference one are deleted
+        // row by row, to release those references. ContextBlobSweepJob removes blobs nobody uses anymore.
+        jdbcTemplate.execute("WITH gone AS (DELETE FROM " + name + " WHERE context_id IS NOT NULL RETURNING context_id) " +
+                "UPDATE chat_message_contexts c SET ref_count = c.ref_count - g.n " +
+                "FROM (SELECT context_id, count(*) AS n FROM gone GROUP BY context_id) g WHERE c.id = g.context_id");
+        jdbcTemplate.execute("DROP TABLE " + name);
+        log.info("Dropped chat_messages partition {}", name);
+    }
+
+    static String partitionName(YearMonth month) {
+        return "chat_messages_p" + month.format(SUFFIX);
+    }
+}
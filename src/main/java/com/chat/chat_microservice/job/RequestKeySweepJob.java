@@ -0,0 +1,45 @@
+package com.chat.chat_microservice.job;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+// Deletes request keys older than the retry window, a chunk per statement. A retry arriving after that
+// is written as a new message.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RequestKeySweepJob {
+
+    private static final String DELETE_EXPIRED = "DELETE FROM chat_message_request_keys WHERE (session_id, request_key) IN " +
+            "(SELECT session_id, request_key FROM chat_message_request_keys WHERE created_at < ? LIMIT ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.idempotency.key-retention:P1D}")
+    private Duration keyRetention;
+
+    @Value("${app.jobs.request-key-sweep.chunk-size:5000}")
+    private int chunkSize;
+
+    @Scheduled(fixedDelayString = "${app.jobs.request-key-sweep.interval:PT1H}")
+    public void sweep() {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(keyRetention));
+        long deleted = 0;
+        int chunk;
+        do {
+            chunk = jdbcTemplate.update(DELETE_EXPIRED, cutoff, chunkSize);
+            deleted += chunk;
+        } while (chunk == chunkSize);
+        if (deleted > 0) {
+            log.info("Deleted {} expired request keys", deleted);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.chat.chat_microservice.job;
+
+import com.chat.chat_microservice.cache.SessionOwnershipCache;
+import com.chat.chat_microservice.config.RetentionProperties;
+import com.chat.chat_microservice.event.SessionsChangedEvent;
+import com.chat.chat_microservice.repository.ChatSessionRepository;
+import com.chat.chat_microservice.repository.ChatSessionRepository.SessionRef;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Applies app.retention: sessions are marked pending_deletion a chunk at a time and handed to SessionPurgeJob,
+// with a pause between chunks (of sessions, and of a large session's messages) so the purge never competes with
+// foreground traffic for the pool
+@Component
+@Slf4j
+public class RetentionJob {
+
+    private final RetentionProperties properties;
+    private final ChatSessionRepository sessionRepository;
+    private final SessionPurgeJob sessionPurgeJob;
+    private final SessionOwnershipCache ownershipCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Counter messagesPurged;
+    // Sessions purged by the run in progress (or the last run), for watching a long run advance
+    private final AtomicLong currentRunSessions = new AtomicLong();
+
+    public RetentionJob(RetentionProperties properties,
+                        ChatSessionRepository sessionRepository,
+                        SessionPurgeJob sessionPurgeJob,
+                        SessionOwnershipCache ownershipCache,
+                        ApplicationEventPublisher eventPublisher,
+                        TransactionTemplate transactionTemplate,
+                        MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.sessionRepository = sessionRepository;
+        this.sessionPurgeJob = sessionPurgeJob;
+        this.ownershipCache = ownershipCache;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.messagesPurged = meterRegistry.counter("chat.retention.messages.purged");
+        meterRegistry.gauge("chat.retention.run.sessions", currentRunSessions);
+    }
+
+    @Scheduled(cron = "${app.retention.cron:0 0 4 * * *}")
+    public void purge() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        log.info("Starting retention run");
+        currentRunSessions.set(0);
+        try {
+            purgeInactive();
+            purgeBeyondSessionLimit();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Retention run interrupted after {} sessions", currentRunSessions.get());
+            return;
+        }
+        log.info("Retention run finished, {} sessions purged", currentRunSessions.get());
+    }
+
+    private void purgeInactive() throws InterruptedException {
+        Map<String, Duration> overrides = properties.getUserMaxAge();
+        int chunkSize = properties.getChunkSize();
+        boolean keepFavorites = properties.isKeepFavorites();
+
+        for (Map.Entry<String, Duration> override : overrides.entrySet()) {
+            LocalDateTime cutoff = LocalDateTime.now().minus(override.getValue());
+            List<Long> sessionIds;
+            do {
+                sessionIds = sessionRepository.findInactiveForUser(override.getKey(), cutoff, keepFavorites, chunkSize);
+                if (!sessionIds.isEmpty()) {
+                    purgeChunk(sessionIds, Set.of(override.getKey()), "max_age");
+                }
+            } while (sessionIds.size() == chunkSize);
+        }
+
+        if (properties.getMaxAge() == null) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minus(properties.getMaxAge());
+        long afterId = 0;
+        List<SessionRef> candidates;
+        do {
+            candidates = sessionRepository.findInactiveAfter(afterId, cutoff, keepFavorites, chunkSize);
+            if (candidates.isEmpty()) {
+                break;
+            }
+            afterId = candidates.get(candidates.size() - 1).getId();
+            // Users with an override were handled above with their own cutoff
+            List<SessionRef> expired = candidates.stream()
+                    .filter(session -> !overrides.containsKey(session.getUserId()))
+                    .toList();
+            if (!expired.isEmpty()) {
+                Set<String> userIds = new HashSet<>();
+                expired.forEach(session -> userIds.add(session.getUserId()));
+                purgeChunk(expired.stream().map(SessionRef::getId).toList(), userIds, "max_age");
+            }
+        } while (candidates.size() == chunkSize);
+    }
+
+    private void purgeBeyondSessionLimit() throws InterruptedException {
+        int maxSessions = properties.getMaxSessionsPerUser();
+        if (maxSessions <= 0) {
+            return;
+        }
+        int chunkSize = properties.getChunkSize();
+        Set<String> processed = new HashSet<>();
+        List<String> userIds;
+        do {
+            userIds = sessionRepository.findUsersOverSessionLimit(maxSessions, properties.isKeepFavorites(), chunkSize);
+            boolean progressed = false;
+            for (String userId : userIds) {
+                // A user whose purge failed would otherwise be returned forever
+                if (!processed.add(userId)) {
+                    continue;
+                }
+                progressed = true;
+                List<Long> excess = sessionRepository.findSessionsBeyondLimit(userId, maxSessions, properties.isKeepFavorites());
+                for (int from = 0; from < excess.size(); from += chunkSize) {
+                    purgeChunk(excess.subList(from, Math.min(from + chunkSize, excess.size())), Set.of(userId),
+                            "max_sessions");
+                }
+            }
+            if (!progressed) {
+                break;
+            }
+        } while (userIds.size() == chunkSize);
+    }
+
+    private void purgeChunk(List<Long> sessionIds, Set<String> userIds, String rule) throws InterruptedException {
+        transactionTemplate.executeWithoutResult(status -> {
+            sessionRepository.markPendingDeletion(sessionIds);
+            sessionIds.forEach(ownershipCache::invalidate);
+            userIds.forEach(userId -> eventPublisher.publishEvent(new SessionsChangedEvent(userId)));
+        });
+        for (Long sessionId : sessionIds) {
+            // Already marked, so a failure here is retried by SessionPurgeJob's sweep
+            messagesPurged.increment(sessionPurgeJob.purge(sessionId, properties.getThrottle()));
+        }
+        meterRegistry.counter("chat.retention.sessions.purged", "rule", rule).increment(sessionIds.size());
+        long total = currentRunSessions.addAndGet(sessionIds.size());
+        log.info("Retention ({}): purged {} sessions, {} so far in this run", rule, sessionIds.size(), total);
+        Thread.sleep(properties.getThrottle());
+    }
+}
@@ -0,0 +1,120 @@
+package com.chat.chat_microservice.job;
+
+import com.chat.chat_microservice.event.SessionPurgeRequestedEvent;
+import com.chat.chat_microservice.repository.ChatMessageRepository;
+import com.chat.chat_microservice.repository.ChatSessionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Deletes sessions marked pending_deletion chunk by chunk, one short transaction per chunk
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SessionPurgeJob {
+
+    private final ChatSessionRepository sessionRepository;
+    private final ChatMessageRepository messageRepository;
+    private final TransactionTemplate transactionTemplate;
+    // Sessions being purged on this instance. The listener, the sweep and RetentionJob can each reach a session
+    // another of them is still purging; the later one leaves it alone instead of deleting alongside.
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    @Value("${app.jobs.session-purge.chunk-size:5000}")
+    private int chunkSize;
+
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onPurgeRequested(SessionPurgeRequestedEvent event) {
+        event.sessionIds().forEach(this::purgeQuietly);
+    }
+
+    // Picks up sessions whose purge was interrupted, e.g. by a restart
+    @Scheduled(fixedDelayString = "${app.jobs.session-purge.sweep-interval:PT5M}")
+    public void sweep() {
+        List<Long> sessionIds = sessionRepository.findPendingDeletionIds(100);
+        if (!sessionIds.isEmpty()) {
+            log.info("Resuming purge of {} sessions pending deletion", sessionIds.size());
+            sessionIds.forEach(this::purgeQuietly);
+        }
+    }
+
+    // Returns the number of messages deleted, 0 if the session is already being purged
+    public long purge(Long sessionId) {
+        if (!claim(sessionId)) {
+            return 0;
+        }
+        try {
+            long deleted = 0;
+            int chunk;
+            do {
+                chunk = deleteChunk(sessionId);
+                deleted += chunk;
+            } while (chunk == chunkSize);
+            return finishPurge(sessionId, deleted);
+        } finally {
+            inFlight.remove(sessionId);
+        }
+    }
+
+    // Retention's variant: also pauses between message chunks, so one large session is no burst of deletes
+    public long purge(Long sessionId, Duration throttle) throws InterruptedException {
+        if (!claim(sessionId)) {
+            return 0;
+        }
+        try {
+            long deleted = 0;
+            int chunk;
+            do {
+                chunk = deleteChunk(sessionId);
+                deleted += chunk;
+                if (chunk == chunkSize) {
+                    Thread.sleep(throttle);
+                }
+            } while (chunk == chunkSize);
+            return finishPurge(sessionId, deleted);
+        } finally {
+            inFlight.remove(sessionId);
+        }
+    }
+
+    private boolean claim(Long sessionId) {
+        if (inFlight.add(sessionId)) {
+            return true;
+        }
+        log.debug("Session {} is already being purged", sessionId);
+        return false;
+    }
+
+    private int deleteChunk(Long sessionId) {
+        Integer count = transactionTemplate.execute(status ->
+                messageRepository.deleteChunkBySessionId(sessionId, chunkSize));
+        return count != null ? count : 0;
+    }
+
+    private long finishPurge(Long sessionId, long deleted) {
+        transactionTemplate.executeWithoutResult(status -> sessionRepository.deletePendingById(sessionId));
+        log.info("Purged session {} with {} messages", sessionId, deleted);
+        return deleted;
+    }
+
+    private void purgeQuietly(Long sessionId) {
+        try {
+            purge(sessionId);
+        } catch (RuntimeException e) {
+            // The session stays marked and the next sweep retries it
+            log.error("Failed to purge session: {}", sessionId, e);
+        }
+    }
+}
@@ -1,19 +1,133 @@
 package com.chat.chat_microservice.repository;
 
+import com.chat.chat_microservice.dto.MessageResponse;
 import com.chat.chat_microservice.entity.ChatMessage;
+import com.chat.chat_microservice.entity.ChatMessageContext;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
 
-    List<ChatMessage> findBySessionIdOrderByCreatedAtAsc(Long sessionId);
+    // Listings select straight into MessageResponse: no managed entities or dirty-checking snapshots, and
+    // contexts, which live in their own table, are not read (see findContextPreviews). Per-session reads also
+    // take a 'since' lower bound on createdAt (see ChatService#messagesSince). It never filters out a row,
+    // but it lets Postgres prune the older partitions once chat_messages is range-partitioned.
+    String LISTING = "select new com.chat.chat_microservice.dto.MessageResponse(m.id, m.seq, m.sender, m.content, m.createdAt, " +
+            "case when m.context is null then false else true end) from ChatMessage m where m.session.id = :sessionId ";
 
-    Page<ChatMessage> findBySessionIdOrderByCreatedAtAsc(Long sessionId, Pageable pageable);
+    @Query(LISTING + "and m.createdAt >= :since order by m.seq asc")
+    List<MessageResponse> findBySessionIdSince(@Param("sessionId") Long sessionId,
+                                               @Param("since") LocalDateTime since);
+
+    @Query(value = LISTING + "and m.createdAt >= :since order by m.seq asc",
+            countQuery = "select count(m) from ChatMessage m where m.session.id = :sessionId and m.createdAt >= :since")
+    Page<MessageResponse> findBySessionIdSince(@Param("sessionId") Long sessionId,
+                                               @Param("since") LocalDateTime since,
+                                               Pageable pageable);
 
     long countBySessionId(Long sessionId);
-}
\ No newline at end of file
+
+    // Keyset queries: callers always pass page 0, so there is no OFFSET and a Slice never issues count(*)
+
+    @Query(LISTING + "and m.createdAt >= :since order by m.seq asc")
+    Slice<MessageResponse> findFirstSlice(@Param("sessionId") Long sessionId,
+                                          @Param("since") LocalDateTime since,
+                                          Pageable pageable);
+
+    @Query(LISTING + "and m.createdAt >= :since and m.seq > :seq order by m.seq asc")
+    Slice<MessageResponse> findSliceAfter(@Param("sessionId") Long sessionId,
+                                          @Param("since") LocalDateTime since,
+                                          @Param("seq") long seq,
+                                          Pageable pageable);
+
+    @Query(LISTING + "and m.createdAt >= :since and m.seq < :seq order by m.seq desc")
+    Slice<MessageResponse> findSliceBefore(@Param("sessionId") Long sessionId,
+                                           @Param("since") LocalDateTime since,
+                                           @Param("seq") long seq,
+                                           Pageable pageable);
+
+    // Newest messages first, the tail a context window is cut from
+    @Query(LISTING + "and m.createdAt >= :since order by m.seq desc")
+    Slice<MessageResponse> findLatestSlice(@Param("sessionId") Long sessionId,
+                                           @Param("since") LocalDateTime since,
+                                           Pageable pageable);
+
+    interface ContextPreview {
+        Long getId();
+
+        String getPreview();
+
+        Integer getLength();
+    }
+
+    // Context previews of one listing page in a single query; previews are stored next to the compressed
+    // body, so a large context is neither transferred nor inflated for a listing
+    @Query("select m.id as id, c.preview as preview, c.textLength as length from ChatMessage m join m.context c " +
+            "where m.session.id = :sessionId and m.createdAt >= :since and m.id in :ids")
+    List<ContextPreview> findContextPreviews(@Param("sessionId") Long sessionId,
+                                             @Param("since") LocalDateTime since,
+                                             @Param("ids") List<Long> ids);
+
+    @Query("select c from ChatMessage m join m.context c where m.id = :id and m.session.id = :sessionId")
+    Optional<ChatMessageContext> findContextById(@Param("id") Long id, @Param("sessionId") Long sessionId);
+
+    @Query("select m.session.id from ChatMessage m where m.id = :id")
+    Optional<Long> findSessionIdById(@Param("id") Long id);
+
+    @Query(LISTING + "and m.createdAt >= :since and m.id = :id")
+    Optional<MessageResponse> findResponseById(@Param("sessionId") Long sessionId,
+                                               @Param("since") LocalDateTime since,
+                                               @Param("id") Long id);
+
+    // Resolves cursors issued before messages had a seq
+    @Query("select m.seq from ChatMessage m where m.id = :id and m.session.id = :sessionId")
+    Optional<Long> findSeqById(@Param("id") Long id, @Param("sessionId") Long sessionId);
+
+    @Query("select m.createdAt from ChatMessage m where m.id = :id and m.session.id = :sessionId")
+    Optional<LocalDateTime> findCreatedAtById(@Param("id") Long id, @Param("sessionId") Long sessionId);
+
+    // Forward-only cursor over a whole conversation, with context previews; must be consumed inside a
+    // transaction and closed
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("select new com.chat.chat_microservice.dto.MessageResponse(m.id, m.seq, m.sender, m.content, m.createdAt, " +
+            "c.preview, c.textLength) from ChatMessage m left join m.context c where m.session.id = :sessionId " +
+            "and m.createdAt >= :since order by m.seq asc")
+    Stream<MessageResponse> streamBySessionId(@Param("sessionId") Long sessionId, @Param("since") LocalDateTime since);
+
+    // Message deletes release their context references in the same statement. Blobs that drop to zero
+    // references are left to ContextBlobSweepJob. Both return the number of messages deleted. References are
+    // released from what the DELETE returns, not from what it was asked to delete: two purges of one session
+    // may overlap, and a row the other one deleted first must not be released twice. Not @Modifying, as the
+    // statement ends in a SELECT; callers run it inside their write transaction.
+    String RELEASE_DELETED = "released AS (UPDATE chat_message_contexts c SET ref_count = c.ref_count - r.n " +
+            "FROM (SELECT context_id, count(*) AS n FROM gone WHERE context_id IS NOT NULL GROUP BY context_id) r " +
+            "WHERE c.id = r.context_id) " +
+            "SELECT CAST(count(*) AS integer) FROM gone";
+
+    @Query(value = "WITH gone AS (DELETE FROM chat_messages WHERE session_id IN (:sessionIds) RETURNING context_id), " +
+            RELEASE_DELETED, nativeQuery = true)
+    int deleteBySessionIdIn(@Param("sessionIds") List<Long> sessionIds);
+
+    // One bounded chunk of a large session, so the purge never holds a long transaction
+    @Query(value = "WITH gone AS (DELETE FROM chat_messages WHERE id IN " +
+            "(SELECT id FROM chat_messages WHERE session_id = :sessionId LIMIT :limit) RETURNING context_id), " +
+            RELEASE_DELETED, nativeQuery = true)
+    int deleteChunkBySessionId(@Param("sessionId") Long sessionId, @Param("limit") int limit);
+}
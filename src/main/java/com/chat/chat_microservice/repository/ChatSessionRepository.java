@@ -1,11 +1,16 @@
 package com.chat.chat_microservice.repository;
 
+import com.chat.chat_microservice.dto.SessionResponse;
 import com.chat.chat_microservice.entity.ChatSession;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,7 +23,111 @@ public interface ChatSessionRepository extends JpaRepository<ChatSession, Long>
 
     Optional<ChatSession> findByIdAndUserId(Long id, String userId);
 
-    List<ChatSession> findByUserIdAndFavoriteOrderByUpdatedAtDesc(String userId, boolean favorite);
+    // Session list projections: only the columns SessionResponse needs, and no managed entity
+    String LISTING = "select new com.chat.chat_microservice.dto.SessionResponse(s.id, s.userId, s.title, s.favorite, " +
+            "s.createdAt, s.updatedAt, s.messageCount, s.lastMessageAt) from ChatSession s where s.userId = :userId ";
+
+    @Query(LISTING + "order by s.updatedAt desc")
+    List<SessionResponse> findResponsesByUserIdOrderByUpdatedAtDesc(@Param("userId") String userId);
+
+    // favorite is a literal rather than a bind parameter so generic plans can still use the partial favorites index
+    @Query(LISTING + "and s.favorite = true order by s.updatedAt desc")
+    List<SessionResponse> findFavoriteResponsesByUserIdOrderByUpdatedAtDesc(@Param("userId") String userId);
 
     void deleteByIdAndUserId(Long id, String userId);
+
+    // Ownership checks only need the owner and creation time, not the whole row
+    @Query("select new com.chat.chat_microservice.repository.SessionOwner(s.userId, s.createdAt) " +
+            "from ChatSession s where s.id = :id")
+    Optional<SessionOwner> findOwnerById(@Param("id") Long id);
+
+    @Query("select new com.chat.chat_microservice.repository.SessionVersion(s.userId, s.messageCount, s.lastMessageAt) " +
+            "from ChatSession s where s.id = :id")
+    Optional<SessionVersion> findVersionById(@Param("id") Long id);
+
+    // Claims the next 'count' seqs of the session and returns the last one, bumping the activity columns in the
+    // same atomic UPDATE. The row stays locked until commit, so appenders run it right before their inserts:
+    // appends to a session then commit in seq order, and a reader paging by seq never skips one.
+    @Query(value = "UPDATE chat_sessions SET last_message_seq = last_message_seq + :count, " +
+            "message_count = message_count + :count, last_message_at = :now, updated_at = :now " +
+            "WHERE id = :sessionId RETURNING last_message_seq", nativeQuery = true)
+    Optional<Long> allocateMessageSeqs(@Param("sessionId") Long sessionId,
+                                       @Param("count") int count,
+                                       @Param("now") LocalDateTime now);
+
+    @Query(value = "SELECT id FROM chat_sessions WHERE id > :afterId ORDER BY id LIMIT :limit", nativeQuery = true)
+    List<Long> findIdsAfter(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    // Appends hold the session row from allocateMessageSeqs until commit, so once these locks are granted no
+    // append to the chunk is in flight. Taken in id order, like the write-behind group commits
+    @Query(value = "SELECT id FROM chat_sessions WHERE id IN (:sessionIds) ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Long> lockByIdIn(@Param("sessionIds") List<Long> sessionIds);
+
+    // Recomputes the denormalized counters for a chunk of sessions locked by lockByIdIn, touching only rows
+    // whose count drifted. last_message_at is stamped by the append rather than copied from the message's
+    // created_at, so it differs slightly on every session and is only recomputed alongside a wrong count.
+    // Returns the owner of each corrected session; not @Modifying, as the UPDATE returns rows
+    @Query(value = "UPDATE chat_sessions s SET message_count = c.cnt, last_message_at = c.last_at " +
+            "FROM (SELECT s2.id, COUNT(m.id) AS cnt, MAX(m.created_at) AS last_at " +
+            "      FROM chat_sessions s2 LEFT JOIN chat_messages m ON m.session_id = s2.id " +
+            "      WHERE s2.id IN (:sessionIds) GROUP BY s2.id) c " +
+            "WHERE s.id = c.id AND s.message_count <> c.cnt RETURNING s.user_id",
+            nativeQuery = true)
+    List<String> reconcileMessageCounts(@Param("sessionIds") List<Long> sessionIds);
+
+    // Set-based deletes: no entity is loaded, so the cascade on ChatSession.messages is never walked
+    @Modifying
+    @Query("delete from ChatSession s where s.id in :ids")
+    int deleteAllByIdIn(@Param("ids") List<Long> ids);
+
+    @Modifying
+    @Query(value = "UPDATE chat_sessions SET pending_deletion = true, version = version + 1 WHERE id IN (:ids)",
+            nativeQuery = true)
+    int markPendingDeletion(@Param("ids") List<Long> ids);
+
+    @Query(value = "SELECT id FROM chat_sessions WHERE pending_deletion ORDER BY id LIMIT :limit", nativeQuery = true)
+    List<Long> findPendingDeletionIds(@Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "DELETE FROM chat_sessions WHERE id = :id AND pending_deletion", nativeQuery = true)
+    int deletePendingById(@Param("id") Long id);
+
+    interface SessionRef {
+        Long getId();
+
+        String getUserId();
+    }
+
+    // Retention queries: pending sessions drop out of every result, so a marked chunk is never returned again
+
+    @Query(value = "SELECT id, user_id AS userId FROM chat_sessions " +
+            "WHERE id > :afterId AND NOT pending_deletion AND COALESCE(last_message_at, updated_at) < :cutoff " +
+            "AND (:keepFavorites = false OR NOT favorite) ORDER BY id LIMIT :limit", nativeQuery = true)
+    List<SessionRef> findInactiveAfter(@Param("afterId") long afterId,
+                                       @Param("cutoff") LocalDateTime cutoff,
+                                       @Param("keepFavorites") boolean keepFavorites,
+                                       @Param("limit") int limit);
+
+    @Query(value = "SELECT id FROM chat_sessions " +
+            "WHERE user_id = :userId AND NOT pending_deletion AND COALESCE(last_message_at, updated_at) < :cutoff " +
+            "AND (:keepFavorites = false OR NOT favorite) ORDER BY id LIMIT :limit", nativeQuery = true)
+    List<Long> findInactiveForUser(@Param("userId") String userId,
+                                   @Param("cutoff") LocalDateTime cutoff,
+                                   @Param("keepFavorites") boolean keepFavorites,
+                                   @Param("limit") int limit);
+
+    @Query(value = "SELECT user_id FROM chat_sessions WHERE NOT pending_deletion " +
+            "AND (:keepFavorites = false OR NOT favorite) " +
+            "GROUP BY user_id HAVING COUNT(*) > :maxSessions ORDER BY user_id LIMIT :limit", nativeQuery = true)
+    List<String> findUsersOverSessionLimit(@Param("maxSessions") int maxSessions,
+                                           @Param("keepFavorites") boolean keepFavorites,
+                                           @Param("limit") int limit);
+
+    // Everything after the newest maxSessions sessions of the user
+    @Query(value = "SELECT id FROM chat_sessions WHERE user_id = :userId AND NOT pending_deletion " +
+            "AND (:keepFavorites = false OR NOT favorite) " +
+            "ORDER BY COALESCE(last_message_at, updated_at) DESC, id DESC OFFSET :maxSessions", nativeQuery = true)
+    List<Long> findSessionsBeyondLimit(@Param("userId") String userId,
+                                       @Param("maxSessions") int maxSessions,
+                                       @Param("keepFavorites") boolean keepFavorites);
 }
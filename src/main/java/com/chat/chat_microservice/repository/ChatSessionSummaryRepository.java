@@ -0,0 +1,9 @@
+package com.chat.chat_microservice.repository;
+
+import com.chat.chat_microservice.entity.ChatSessionSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ChatSessionSummaryRepository extends JpaRepository<ChatSessionSummary, Long> {
+}
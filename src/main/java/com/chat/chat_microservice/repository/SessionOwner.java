@@ -0,0 +1,7 @@
+package com.chat.chat_microservice.repository;
+
+import java.time.LocalDateTime;
+
+// Owner and creation time of a session; createdAt lower-bounds its messages, which lets Postgres prune partitions
+public record SessionOwner(String userId, LocalDateTime createdAt) {
+}
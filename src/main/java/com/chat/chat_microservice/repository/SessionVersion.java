@@ -0,0 +1,7 @@
+package com.chat.chat_microservice.repository;
+
+import java.time.LocalDateTime;
+
+// Owner and message counters of a session: enough to validate a conditional read of its messages
+public record SessionVersion(String userId, int messageCount, LocalDateTime lastMessageAt) {
+}
@@ -1,28 +1,80 @@
 package com.chat.chat_microservice.service;
 
+import com.chat.chat_microservice.cache.RecentMessagesCache;
+import com.chat.chat_microservice.cache.SessionListCache;
+import com.chat.chat_microservice.cache.SessionOwnershipCache;
 import com.chat.chat_microservice.dto.*;
 import com.chat.chat_microservice.entity.ChatMessage;
+import com.chat.chat_microservice.entity.ChatMessageContext;
 import com.chat.chat_microservice.entity.ChatSession;
+import com.chat.chat_microservice.entity.ChatSessionSummary;
+import com.chat.chat_microservice.event.MessagesAddedEvent;
+import com.chat.chat_microservice.event.SessionPurgeRequestedEvent;
+import com.chat.chat_microservice.event.SessionsChangedEvent;
+import com.chat.chat_microservice.exception.BadRequestException;
 import com.chat.chat_microservice.exception.ResourceNotFoundException;
 import com.chat.chat_microservice.repository.ChatMessageRepository;
 import com.chat.chat_microservice.repository.ChatSessionRepository;
+import com.chat.chat_microservice.repository.ChatSessionSummaryRepository;
+import com.chat.chat_microservice.repository.SessionOwner;
+import com.chat.chat_microservice.repository.SessionVersion;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
-
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ChatService {
 
+    private static final int MAX_SLICE_SIZE = 100;
+    // Messages are never older than their session; the margin only absorbs clock skew between instances
+    private static final Duration SINCE_MARGIN = Duration.ofDays(1);
+    private static final int MAX_CONTEXT_WINDOW_TOKENS = 1_000_000;
+    private static final int MAX_REQUEST_KEY_LENGTH = 255;
+    // Rough LLM token count without a tokenizer: ~4 characters per token, plus the role and separators
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int TOKENS_PER_MESSAGE = 4;
+
     private final ChatSessionRepository sessionRepository;
     private final ChatMessageRepository messageRepository;
+    private final ChatSessionSummaryRepository summaryRepository;
+    private final MessageContextStore contextStore;
+    private final MessageWriteBuffer messageWriteBuffer;
+    private final MessageRequestKeyStore requestKeys;
+    private final SessionOwnershipCache ownershipCache;
+    private final SessionListCache sessionListCache;
+    private final RecentMessagesCache recentMessages;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PlatformTransactionManager transactionManager;
+
+    // Larger deletions are handed to SessionPurgeJob instead of running inside the request
+    @Value("${app.jobs.session-purge.inline-max-messages:10000}")
+    private int inlineDeleteMaxMessages = 10_000;
 
     @Transactional
     public SessionResponse createSession(CreateSessionRequest request) {
@@ -35,66 +87,396 @@ public class ChatService {
 
         ChatSession savedSession = sessionRepository.save(session);
         log.info("Chat session created with ID: {}", savedSession.getId());
+        eventPublisher.publishEvent(new SessionsChangedEvent(savedSession.getUserId()));
 
         return SessionResponse.fromEntity(savedSession);
     }
 
     @Transactional
     public MessageResponse addMessage(Long sessionId, String userId, AddMessageRequest request) {
+        return addMessage(sessionId, userId, request, null);
+    }
+
+    // With a requestKey, retrying an add that already went through returns the message written back then
+    @Transactional
+    public MessageResponse addMessage(Long sessionId, String userId, AddMessageRequest request, String requestKey) {
         log.info("Adding message to session: {} by user: {}", sessionId, userId);
 
-        ChatSession session = sessionRepository.findByIdAndUserId(sessionId, userId)
-                .orElseThrow(() -> new ResourceNotFoundException(
-                        "Chat session not found with ID: " + sessionId));
+        SessionOwner owner = requireOwner(sessionId, userId);
+        if (requestKey != null) {
+            requireValidRequestKey(requestKey);
+            MessageResponse answered = requestKeys.findAnswered(sessionId, requestKey);
+            if (answered != null) {
+                return answered;
+            }
+            // Waits for a concurrent attempt with the same key to finish
+            Long writtenId = requestKeys.claim(sessionId, requestKey);
+            if (writtenId != null) {
+                log.info("Request key already used for message {} of session: {}", writtenId, sessionId);
+                MessageResponse written = messageRepository.findResponseById(sessionId, messagesSince(owner), writtenId)
+                        .orElseThrow(() -> new ResourceNotFoundException("Message not found with ID: " + writtenId));
+                attachContexts(sessionId, owner, List.of(written));
+                requestKeys.remember(sessionId, requestKey, written);
+                return written;
+            }
+        }
+        // Ownership is settled, a reference proxy is all the FK needs
+        ChatSession session = sessionRepository.getReferenceById(sessionId);
+
+        ChatMessageContext context = contextStore.store(Collections.singletonList(request.getContext()))
+                .get(request.getContext());
+        ChatMessage message = toEntity(session, request, context);
+        // Claimed last, right before the insert: it locks the session row until commit
+        message.setSeq(allocateMessageSeqs(sessionRepository, sessionId, 1, LocalDateTime.now()));
+        // Flushed so the generated createdAt is populated for the response
+        ChatMessage savedMessage = messageRepository.saveAndFlush(message);
+        eventPublisher.publishEvent(new SessionsChangedEvent(userId));
+        log.info("Message added with ID: {}", savedMessage.getId());
 
-        ChatMessage message = new ChatMessage();
-        message.setSession(session);
-        message.setSender(request.getSender());
-        message.setContent(request.getContent());
-        message.setContext(request.getContext());
+        MessageResponse response = MessageResponse.fromEntity(savedMessage, request.getContext());
+        if (requestKey != null) {
+            requestKeys.bind(sessionId, requestKey, response);
+        }
+        eventPublisher.publishEvent(new MessagesAddedEvent(sessionId, List.of(response)));
+        return response;
+    }
 
-        ChatMessage savedMessage = messageRepository.save(message);
-        log.info("Message added with ID: {}", savedMessage.getId());
+    // The committed answer to a retried add if this instance still remembers it, null otherwise. Deliberately
+    // not @Transactional: with the session's ownership cached too, a retry borrows no pool connection.
+    public MessageResponse findAnsweredMessage(Long sessionId, String userId, String requestKey) {
+        requireValidRequestKey(requestKey);
+        requireOwner(sessionId, userId);
+        return requestKeys.findAnswered(sessionId, requestKey);
+    }
+
+    private static void requireValidRequestKey(String requestKey) {
+        if (requestKey.isBlank() || requestKey.length() > MAX_REQUEST_KEY_LENGTH) {
+            throw new BadRequestException("Idempotency key must be 1 to " + MAX_REQUEST_KEY_LENGTH + " characters");
+        }
+    }
+
+    public boolean isWriteBehindEnabled() {
+        return messageWriteBuffer.isEnabled();
+    }
+
+    // Write-behind variant of addMessage; returns null for ACCEPTED since the message has no id yet
+    public MessageResponse submitMessage(Long sessionId, String userId, AddMessageRequest request, AckMode ackMode) {
+        log.info("Queueing message for session: {} by user: {} (ack={})", sessionId, userId, ackMode);
+
+        verifySessionOwnership(sessionId, userId);
+
+        CompletableFuture<MessageResponse> pending = messageWriteBuffer.submit(sessionId, userId, request);
+        if (ackMode == AckMode.ACCEPTED) {
+            return null;
+        }
+        return messageWriteBuffer.awaitDurable(pending);
+    }
+
+    @Transactional
+    public List<MessageResponse> addMessages(Long sessionId, String userId, List<AddMessageRequest> requests) {
+        log.info("Adding {} messages to session: {} by user: {}", requests.size(), sessionId, userId);
+
+        // One ownership check and one transaction for the whole batch
+        verifySessionOwnership(sessionId, userId);
+        ChatSession session = sessionRepository.getReferenceById(sessionId);
+
+        // Repeated contexts within the batch are stored once as well
+        Map<String, ChatMessageContext> contexts = contextStore.store(
+                requests.stream().map(AddMessageRequest::getContext).toList());
+        List<ChatMessage> messages = requests.stream()
+                .map(request -> toEntity(session, request, contexts.get(request.getContext())))
+                .collect(Collectors.toList());
+        long lastSeq = allocateMessageSeqs(sessionRepository, sessionId, messages.size(), LocalDateTime.now());
+        for (int i = 0; i < messages.size(); i++) {
+            messages.get(i).setSeq(lastSeq - messages.size() + 1 + i);
+        }
 
-        return MessageResponse.fromEntity(savedMessage);
+        // Sequence ids are assigned up front, so the flush goes out as JDBC batches
+        List<ChatMessage> savedMessages = messageRepository.saveAllAndFlush(messages);
+        eventPublisher.publishEvent(new SessionsChangedEvent(userId));
+        log.info("Added {} messages to session: {}", savedMessages.size(), sessionId);
+
+        List<MessageResponse> responses = new ArrayList<>(savedMessages.size());
+        for (int i = 0; i < savedMessages.size(); i++) {
+            responses.add(MessageResponse.fromEntity(savedMessages.get(i), requests.get(i).getContext()));
+        }
+        eventPublisher.publishEvent(new MessagesAddedEvent(sessionId, responses));
+        return responses;
     }
 
     @Transactional(readOnly = true)
-    public List<MessageResponse> getMessages(Long sessionId, String userId) {
+    public List<MessageResponse> getMessages(Long sessionId, String userId, boolean includeContext) {
         log.info("Retrieving messages for session: {} by user: {}", sessionId, userId);
 
-        // Verify session belongs to user
-        sessionRepository.findByIdAndUserId(sessionId, userId)
-                .orElseThrow(() -> new ResourceNotFoundException(
-                        "Chat session not found with ID: " + sessionId));
+        SessionOwner owner = requireOwner(sessionId, userId);
 
-        List<ChatMessage> messages = messageRepository.findBySessionIdOrderByCreatedAtAsc(sessionId);
-        return messages.stream()
-                .map(MessageResponse::fromEntity)
-                .collect(Collectors.toList());
+        List<MessageResponse> messages = messageRepository.findBySessionIdSince(sessionId, messagesSince(owner));
+        if (includeContext) {
+            attachContexts(sessionId, owner, messages);
+        }
+        return messages;
+    }
+
+    // Full context of a single message; listings carry at most a preview
+    @Transactional(readOnly = true)
+    public String getMessageContext(Long messageId, String userId) {
+        log.info("Retrieving context of message: {} by user: {}", messageId, userId);
+
+        Long sessionId = messageRepository.findSessionIdById(messageId)
+                .orElseThrow(() -> new ResourceNotFoundException("Message not found with ID: " + messageId));
+        requireOwner(sessionId, userId);
+
+        return messageRepository.findContextById(messageId, sessionId).map(ChatMessageContext::getText).orElse(null);
+    }
+
+    // Validator for conditional reads of the session's messages: a single-row lookup, no message is read
+    @Transactional(readOnly = true)
+    public SessionVersion getSessionVersion(Long sessionId, String userId) {
+        return sessionRepository.findVersionById(sessionId)
+                .filter(version -> userId.equals(version.userId()))
+                .orElseThrow(() -> new ResourceNotFoundException("Chat session not found with ID: " + sessionId));
+    }
+
+    // Served from the ownership cache when possible, otherwise a single-column lookup rather than a row fetch
+    @Transactional(readOnly = true)
+    public void verifySessionOwnership(Long sessionId, String userId) {
+        requireOwner(sessionId, userId);
+    }
+
+    private SessionOwner requireOwner(Long sessionId, String userId) {
+        SessionOwner owner = ownershipCache.getOwner(sessionId);
+        if (owner == null) {
+            owner = readOnly(() -> sessionRepository.findOwnerById(sessionId).orElse(null));
+            if (owner != null) {
+                ownershipCache.put(sessionId, owner);
+            }
+        }
+        if (owner == null || !userId.equals(owner.userId())) {
+            throw new ResourceNotFoundException("Chat session not found with ID: " + sessionId);
+        }
+        return owner;
+    }
+
+    // One extra query for the whole page, and only for the messages that have a context
+    private void attachContexts(Long sessionId, SessionOwner owner, List<MessageResponse> messages) {
+        List<Long> ids = messages.stream()
+                .filter(MessageResponse::isHasContext)
+                .map(MessageResponse::getId)
+                .toList();
+        if (ids.isEmpty()) {
+            return;
+        }
+        Map<Long, ChatMessageRepository.ContextPreview> previews = new HashMap<>();
+        for (ChatMessageRepository.ContextPreview preview :
+                messageRepository.findContextPreviews(sessionId, messagesSince(owner), ids)) {
+            previews.put(preview.getId(), preview);
+        }
+        for (MessageResponse message : messages) {
+            ChatMessageRepository.ContextPreview preview = previews.get(message.getId());
+            if (preview != null) {
+                message.setContextPreview(preview.getPreview(), preview.getLength());
+            }
+        }
+    }
+
+    // Lower bound for the session's message queries, so a partitioned chat_messages skips older partitions
+    private static LocalDateTime messagesSince(SessionOwner owner) {
+        return owner.createdAt().minus(SINCE_MARGIN);
+    }
+
+    // Hands messages to the consumer one at a time; heap use stays flat however long the session is
+    @Transactional(readOnly = true)
+    public void streamMessages(Long sessionId, String userId, Consumer<MessageResponse> consumer) {
+        log.info("Streaming messages for session: {} by user: {}", sessionId, userId);
+
+        SessionOwner owner = requireOwner(sessionId, userId);
+
+        long count = 0;
+        // Projections, so nothing accumulates in the persistence context however long the session is
+        try (Stream<MessageResponse> messages = messageRepository.streamBySessionId(sessionId, messagesSince(owner))) {
+            for (MessageResponse message : (Iterable<MessageResponse>) messages::iterator) {
+                consumer.accept(message);
+                count++;
+            }
+        }
+        log.info("Streamed {} messages for session: {}", count, sessionId);
     }
 
     @Transactional(readOnly = true)
-    public Page<MessageResponse> getMessagesPaginated(Long sessionId, String userId, Pageable pageable) {
+    public Page<MessageResponse> getMessagesPaginated(Long sessionId, String userId, Pageable pageable,
+                                                      boolean includeContext) {
         log.info("Retrieving paginated messages for session: {} by user: {}", sessionId, userId);
 
-        // Verify session belongs to user
-        sessionRepository.findByIdAndUserId(sessionId, userId)
-                .orElseThrow(() -> new ResourceNotFoundException(
-                        "Chat session not found with ID: " + sessionId));
+        SessionOwner owner = requireOwner(sessionId, userId);
 
-        Page<ChatMessage> messages = messageRepository.findBySessionIdOrderByCreatedAtAsc(sessionId, pageable);
-        return messages.map(MessageResponse::fromEntity);
+        Page<MessageResponse> messages = messageRepository.findBySessionIdSince(sessionId, messagesSince(owner), pageable);
+        if (includeContext) {
+            attachContexts(sessionId, owner, messages.getContent());
+        }
+        return messages;
     }
 
     @Transactional(readOnly = true)
+    public CursorSliceResponse<MessageResponse> getMessagesByCursor(Long sessionId, String userId,
+                                                                    String after, String before, int size,
+                                                                    boolean includeContext) {
+        log.info("Retrieving messages by cursor for session: {} by user: {}", sessionId, userId);
+
+        if (after != null && before != null) {
+            throw new BadRequestException("Only one of 'after' or 'before' may be given");
+        }
+        if (size < 1 || size > MAX_SLICE_SIZE) {
+            throw new BadRequestException("Size must be between 1 and " + MAX_SLICE_SIZE);
+        }
+
+        SessionOwner owner = requireOwner(sessionId, userId);
+
+        Pageable firstPage = PageRequest.of(0, size);
+        Slice<MessageResponse> slice;
+        List<MessageResponse> messages;
+        if (before != null) {
+            slice = messageRepository.findSliceBefore(sessionId, messagesSince(owner),
+                    resolveSeq(sessionId, MessageCursor.decode(before)), firstPage);
+            // Fetched newest-first to walk backwards; hand them out in chronological order
+            messages = new ArrayList<>(slice.getContent());
+            Collections.reverse(messages);
+        } else if (after != null) {
+            slice = messageRepository.findSliceAfter(sessionId, messagesSince(owner),
+                    resolveSeq(sessionId, MessageCursor.decode(after)), firstPage);
+            messages = slice.getContent();
+        } else {
+            slice = messageRepository.findFirstSlice(sessionId, messagesSince(owner), firstPage);
+            messages = slice.getContent();
+        }
+
+        // The cursor continues from the last row read in the direction of travel
+        String nextCursor = slice.hasNext()
+                ? MessageCursor.of(slice.getContent().get(slice.getNumberOfElements() - 1)).encode()
+                : null;
+
+        if (includeContext) {
+            attachContexts(sessionId, owner, messages);
+        }
+        return new CursorSliceResponse<>(messages, messages.size(), slice.hasNext(), nextCursor);
+    }
+
+    // Cursors issued before messages had a seq point at a message id instead
+    private long resolveSeq(Long sessionId, MessageCursor cursor) {
+        if (cursor.getSeq() != null) {
+            return cursor.getSeq();
+        }
+        return messageRepository.findSeqById(cursor.getLegacyId(), sessionId)
+                .orElseThrow(() -> new BadRequestException("Invalid cursor"));
+    }
+
+    // The most recent messages that fit maxTokens, for an LLM prompt. Deliberately not @Transactional: while
+    // the session's tail is cached (and the budget does not reach past it) no connection is borrowed
+    public ContextWindowResponse getContextWindow(Long sessionId, String userId, int maxTokens, boolean includeSummary) {
+        log.info("Building context window of {} tokens for session: {} by user: {}", maxTokens, sessionId, userId);
+
+        if (maxTokens < 1 || maxTokens > MAX_CONTEXT_WINDOW_TOKENS) {
+            throw new BadRequestException("maxTokens must be between 1 and " + MAX_CONTEXT_WINDOW_TOKENS);
+        }
+
+        SessionOwner owner = requireOwner(sessionId, userId);
+        RecentMessagesCache.Tail tail = recentMessages.get(sessionId,
+                () -> readOnly(() -> loadTail(sessionId, owner)));
+
+        ContextWindow window = fitContextWindow(sessionId, owner, tail, maxTokens);
+        int summaryTokens = tail.summary() != null ? estimateTokens(tail.summary()) : 0;
+        // The summary stands in for what was left out, and only makes the cut when messages still fit beside it
+        if (!window.truncated() || !includeSummary || tail.summary() == null || summaryTokens >= maxTokens) {
+            return new ContextWindowResponse(sessionId, window.messages(), window.tokens(), window.truncated(), null, null);
+        }
+        window = fitContextWindow(sessionId, owner, tail, maxTokens - summaryTokens);
+        return new ContextWindowResponse(sessionId, window.messages(), window.tokens() + summaryTokens, true,
+                tail.summary(), tail.summaryThroughMessageId());
+    }
+
+    @Transactional
+    public void updateSummary(Long sessionId, String userId, UpdateSummaryRequest request) {
+        log.info("Updating summary of session: {} by user: {}", sessionId, userId);
+
+        requireOwner(sessionId, userId);
+        LocalDateTime throughCreatedAt = messageRepository.findCreatedAtById(request.getThroughMessageId(), sessionId)
+                .orElseThrow(() -> new BadRequestException("Message " + request.getThroughMessageId() +
+                        " does not belong to session " + sessionId));
+
+        ChatSessionSummary summary = summaryRepository.findById(sessionId).orElseGet(ChatSessionSummary::new);
+        summary.setSessionId(sessionId);
+        summary.setSummary(request.getSummary());
+        summary.setThroughCreatedAt(throughCreatedAt);
+        summary.setThroughMessageId(request.getThroughMessageId());
+        summaryRepository.save(summary);
+        recentMessages.invalidate(sessionId);
+    }
+
+    // The newest messages that fit the budget, walking back through the cached tail and, only if the budget
+    // reaches past it, through older messages in the database
+    private ContextWindow fitContextWindow(Long sessionId, SessionOwner owner, RecentMessagesCache.Tail tail,
+                                           int budget) {
+        Deque<MessageResponse> window = new ArrayDeque<>();
+        int tokens = 0;
+        List<MessageResponse> recent = tail.messages();
+        for (int i = recent.size() - 1; i >= 0; i--) {
+            int cost = estimateTokens(recent.get(i));
+            if (tokens + cost > budget) {
+                return new ContextWindow(new ArrayList<>(window), tokens, true);
+            }
+            window.addFirst(recent.get(i));
+            tokens += cost;
+        }
+        if (tail.complete() || window.isEmpty()) {
+            return new ContextWindow(new ArrayList<>(window), tokens, false);
+        }
+
+        MessageResponse oldest = window.getFirst();
+        Slice<MessageResponse> older;
+        do {
+            long beforeSeq = oldest.getSeq();
+            older = readOnly(() -> messageRepository.findSliceBefore(sessionId, messagesSince(owner), beforeSeq,
+                    PageRequest.of(0, MAX_SLICE_SIZE)));
+            for (MessageResponse message : older) {
+                int cost = estimateTokens(message);
+                if (tokens + cost > budget) {
+                    return new ContextWindow(new ArrayList<>(window), tokens, true);
+                }
+                window.addFirst(message);
+                tokens += cost;
+                oldest = message;
+            }
+        } while (older.hasNext());
+        return new ContextWindow(new ArrayList<>(window), tokens, false);
+    }
+
+    private RecentMessagesCache.Tail loadTail(Long sessionId, SessionOwner owner) {
+        Slice<MessageResponse> latest = messageRepository.findLatestSlice(sessionId, messagesSince(owner),
+                PageRequest.of(0, recentMessages.getMessagesPerSession()));
+        List<MessageResponse> messages = new ArrayList<>(latest.getContent());
+        Collections.reverse(messages);
+        ChatSessionSummary summary = summaryRepository.findById(sessionId).orElse(null);
+        return RecentMessagesCache.Tail.of(messages, !latest.hasNext(),
+                summary != null ? summary.getSummary() : null,
+                summary != null ? summary.getThroughMessageId() : null);
+    }
+
+    static int estimateTokens(MessageResponse message) {
+        return TOKENS_PER_MESSAGE + estimateTokens(message.getContent());
+    }
+
+    static int estimateTokens(String text) {
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    private record ContextWindow(List<MessageResponse> messages, int tokens, boolean truncated) {
+    }
+
+    // Deliberately not @Transactional: a cache hit should not borrow a pool connection
     public List<SessionResponse> getSessions(String userId) {
         log.info("Retrieving all sessions for user: {}", userId);
 
-        List<ChatSession> sessions = sessionRepository.findByUserIdOrderByUpdatedAtDesc(userId);
-        return sessions.stream()
-                .map(SessionResponse::fromEntity)
-                .collect(Collectors.toList());
+        return sessionListCache.get(userId, false, () ->
+                readOnly(() -> sessionRepository.findResponsesByUserIdOrderByUpdatedAtDesc(userId)));
     }
 
     @Transactional(readOnly = true)
@@ -104,6 +486,7 @@ public class ChatService {
         ChatSession session = sessionRepository.findByIdAndUserId(sessionId, userId)
                 .orElseThrow(() -> new ResourceNotFoundException(
                         "Chat session not found with ID: " + sessionId));
+        ownershipCache.put(sessionId, new SessionOwner(session.getUserId(), session.getCreatedAt()));
 
         return SessionResponse.fromEntity(session);
     }
@@ -127,28 +510,84 @@ public class ChatService {
         }
 
         ChatSession updatedSession = sessionRepository.save(session);
+        eventPublisher.publishEvent(new SessionsChangedEvent(userId));
         return SessionResponse.fromEntity(updatedSession);
     }
 
+    // Returns false when the session was too large to delete inline and is being purged in the background
     @Transactional
-    public void deleteSession(Long sessionId, String userId) {
+    public boolean deleteSession(Long sessionId, String userId) {
         log.info("Deleting session: {} for user: {}", sessionId, userId);
 
         ChatSession session = sessionRepository.findByIdAndUserId(sessionId, userId)
                 .orElseThrow(() -> new ResourceNotFoundException(
                         "Chat session not found with ID: " + sessionId));
 
-        sessionRepository.delete(session);
-        log.info("Session deleted successfully");
+        boolean completed = deleteSessions(userId, List.of(sessionId), session.getMessageCount());
+        log.info(completed ? "Session deleted successfully" : "Session scheduled for deletion");
+        return completed;
+    }
+
+    // Account erasure: removes every session of the user with set-based statements
+    @Transactional
+    public SessionDeletionResponse deleteAllSessions(String userId) {
+        log.info("Deleting all sessions for user: {}", userId);
+
+        List<ChatSession> sessions = sessionRepository.findByUserIdOrderByUpdatedAtDesc(userId);
+        if (sessions.isEmpty()) {
+            return new SessionDeletionResponse(0, false);
+        }
+        List<Long> sessionIds = sessions.stream().map(ChatSession::getId).toList();
+        long messageCount = sessions.stream().mapToLong(ChatSession::getMessageCount).sum();
+
+        boolean completed = deleteSessions(userId, sessionIds, messageCount);
+        return new SessionDeletionResponse(sessionIds.size(), !completed);
+    }
+
+    private boolean deleteSessions(String userId, List<Long> sessionIds, long messageCount) {
+        boolean inline = messageCount <= inlineDeleteMaxMessages;
+        if (inline) {
+            messageRepository.deleteBySessionIdIn(sessionIds);
+            sessionRepository.deleteAllByIdIn(sessionIds);
+        } else {
+            // Hide the sessions now; SessionPurgeJob deletes their messages in chunks after commit
+            sessionRepository.markPendingDeletion(sessionIds);
+            eventPublisher.publishEvent(new SessionPurgeRequestedEvent(sessionIds));
+        }
+        sessionIds.forEach(ownershipCache::invalidate);
+        eventPublisher.publishEvent(new SessionsChangedEvent(userId));
+        return inline;
     }
 
-    @Transactional(readOnly = true)
     public List<SessionResponse> getFavoriteSessions(String userId) {
         log.info("Retrieving favorite sessions for user: {}", userId);
 
-        List<ChatSession> sessions = sessionRepository.findByUserIdAndFavoriteOrderByUpdatedAtDesc(userId, true);
-        return sessions.stream()
-                .map(SessionResponse::fromEntity)
-                .collect(Collectors.toList());
+        return sessionListCache.get(userId, true, () ->
+                readOnly(() -> sessionRepository.findFavoriteResponsesByUserIdOrderByUpdatedAtDesc(userId)));
+    }
+
+    // Database reads of the deliberately non-transactional methods, run only on a cache miss. Read-only like
+    // the @Transactional(readOnly = true) paths, so they go to a replica when one is configured; inside an
+    // existing transaction they simply join it
+    private <T> T readOnly(Supplier<T> read) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        return template.execute(status -> read.get());
+    }
+
+    // The last of 'count' seqs claimed for new messages of the session
+    static long allocateMessageSeqs(ChatSessionRepository sessionRepository, Long sessionId, int count,
+                                    LocalDateTime now) {
+        return sessionRepository.allocateMessageSeqs(sessionId, count, now)
+                .orElseThrow(() -> new ResourceNotFoundException("Chat session not found with ID: " + sessionId));
+    }
+
+    static ChatMessage toEntity(ChatSession session, AddMessageRequest request, ChatMessageContext context) {
+        ChatMessage message = new ChatMessage();
+        message.setSession(session);
+        message.setSender(request.getSender());
+        message.setContent(request.getContent());
+        message.setContext(context);
+        return message;
     }
 }
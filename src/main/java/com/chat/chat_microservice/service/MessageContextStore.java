@@ -0,0 +1,121 @@
+package com.chat.chat_microservice.service;
+
+import com.chat.chat_microservice.dto.MessageResponse;
+import com.chat.chat_microservice.entity.ChatMessageContext;
+import com.chat.chat_microservice.entity.DeflateTextConverter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Content-addressed storage for message contexts: each distinct text is stored once, compressed, and
+// counted by the messages referencing it. Runs inside the caller's transaction, so a rolled back insert
+// also rolls back its reference. Released blobs are deleted later by ContextBlobSweepJob.
+@Component
+@Slf4j
+public class MessageContextStore {
+
+    // A hit costs this one statement; compression only happens for text not stored yet
+    private static final String ADD_REFERENCES = "UPDATE chat_message_contexts SET ref_count = ref_count + ? " +
+            "WHERE content_hash = ? RETURNING id";
+
+    // A concurrent insert of the same text turns into an increment instead of a unique violation
+    private static final String INSERT = "INSERT INTO chat_message_contexts " +
+            "(id, content_hash, body, preview, text_length, ref_count) " +
+            "VALUES (nextval('chat_message_contexts_seq'), ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (content_hash) DO UPDATE SET ref_count = chat_message_contexts.ref_count + EXCLUDED.ref_count " +
+            "RETURNING id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final Counter newBlobs;
+    private final Counter deduplicated;
+    private final Counter rawBytes;
+    private final Counter storedBytes;
+
+    @Value("${app.contexts.compression-level:6}")
+    private int compressionLevel = 6;
+
+    public MessageContextStore(JdbcTemplate jdbcTemplate, EntityManager entityManager, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+        this.newBlobs = meterRegistry.counter("chat.contexts.stored", "outcome", "new");
+        this.deduplicated = meterRegistry.counter("chat.contexts.stored", "outcome", "deduplicated");
+        // What inline storage would have written (UTF-8 bytes per message) vs. what was written
+        this.rawBytes = meterRegistry.counter("chat.contexts.bytes", "kind", "raw");
+        this.storedBytes = meterRegistry.counter("chat.contexts.bytes", "kind", "stored");
+        Gauge.builder("chat.contexts.dedup.ratio", this, MessageContextStore::dedupRatio)
+                .register(meterRegistry);
+        Gauge.builder("chat.contexts.bytes.saved", this, store -> store.rawBytes.count() - store.storedBytes.count())
+                .baseUnit("bytes").register(meterRegistry);
+    }
+
+    // References to the stored contexts keyed by text; nulls are skipped, and looking one up yields null
+    public Map<String, ChatMessageContext> store(Collection<String> texts) {
+        Map<String, Long> references = texts.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+        if (references.isEmpty()) {
+            // Not Map.of(): callers look up a message without context by its null key
+            return new HashMap<>();
+        }
+        // Rows are locked in hash order, so two transactions sharing contexts cannot deadlock on them
+        TreeMap<String, String> byHash = new TreeMap<>();
+        references.keySet().forEach(text -> byHash.put(HexFormat.of().formatHex(sha256(text)), text));
+
+        Map<String, ChatMessageContext> stored = new HashMap<>();
+        byHash.forEach((hash, text) -> {
+            int count = references.get(text).intValue();
+            byte[] digest = HexFormat.of().parseHex(hash);
+            long rawLength = (long) text.getBytes(StandardCharsets.UTF_8).length * count;
+            rawBytes.increment(rawLength);
+
+            List<Long> existing = jdbcTemplate.queryForList(ADD_REFERENCES, Long.class, count, digest);
+            Long id;
+            if (!existing.isEmpty()) {
+                id = existing.get(0);
+                deduplicated.increment(count);
+            } else {
+                byte[] body = DeflateTextConverter.compress(text, compressionLevel);
+                String preview = text.length() > MessageResponse.CONTEXT_PREVIEW_LENGTH
+                        ? text.substring(0, MessageResponse.CONTEXT_PREVIEW_LENGTH) : text;
+                id = jdbcTemplate.queryForObject(INSERT, Long.class, digest, body, preview, text.length(), count);
+                newBlobs.increment();
+                deduplicated.increment(count - 1);
+                storedBytes.increment(body.length);
+            }
+            stored.put(text, entityManager.getReference(ChatMessageContext.class, id));
+        });
+        return stored;
+    }
+
+    private double dedupRatio() {
+        double total = newBlobs.count() + deduplicated.count();
+        return total == 0 ? 0 : deduplicated.count() / total;
+    }
+
+    static byte[] sha256(String text) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
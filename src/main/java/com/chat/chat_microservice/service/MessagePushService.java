@@ -0,0 +1,283 @@
+package com.chat.chat_microservice.service;
+
+import com.chat.chat_microservice.datasource.ReadYourWritesTracker;
+import com.chat.chat_microservice.dto.CursorSliceResponse;
+import com.chat.chat_microservice.dto.MessageCursor;
+import com.chat.chat_microservice.dto.MessageResponse;
+import com.chat.chat_microservice.event.MessagesAddedEvent;
+import com.chat.chat_microservice.exception.ServiceUnavailableException;
+import com.chat.chat_microservice.filter.DbConcurrencyLimitFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Server-sent events per session: messages are pushed once their transaction commits, so clients no longer
+// poll the listing. Each event id is the message's cursor; a reconnect with Last-Event-ID replays what was
+// missed from the database before live delivery resumes. Only commits on this instance are pushed.
+@Component
+@Slf4j
+public class MessagePushService {
+
+    private static final int REPLAY_PAGE_SIZE = 100;
+    private static final int IDLE = 0;
+    private static final int REPLAYING = 1;
+    private static final int REPLAY_AGAIN = 2;
+
+    private final ChatService chatService;
+    private final DbConcurrencyLimitFilter dbConcurrencyLimit;
+    // Only present with read replicas
+    private final ReadYourWritesTracker readYourWritesTracker;
+    private final ConcurrentMap<Long, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriptionCount = new AtomicInteger();
+    // Sends block on the client's socket; a virtual thread per drain keeps a slow client from holding a worker
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final Counter sentCounter;
+    private final Counter evictedCounter;
+
+    @Value("${app.push.buffer-size:256}")
+    private int bufferSize = 256;
+
+    @Value("${app.push.max-subscriptions:20000}")
+    private int maxSubscriptions = 20_000;
+
+    @Value("${app.push.timeout:PT30M}")
+    private Duration timeout = Duration.ofMinutes(30);
+
+    public MessagePushService(ChatService chatService, DbConcurrencyLimitFilter dbConcurrencyLimit,
+                              ObjectProvider<ReadYourWritesTracker> readYourWritesTracker,
+                              MeterRegistry meterRegistry) {
+        this.chatService = chatService;
+        this.dbConcurrencyLimit = dbConcurrencyLimit;
+        this.readYourWritesTracker = readYourWritesTracker.getIfAvailable();
+        this.sentCounter = meterRegistry.counter("chat.push.messages", "result", "sent");
+        this.evictedCounter = meterRegistry.counter("chat.push.evictions");
+        Gauge.builder("chat.push.subscriptions", subscriptionCount, AtomicInteger::get).register(meterRegistry);
+    }
+
+    public SseEmitter subscribe(Long sessionId, String userId, String lastEventId) {
+        chatService.verifySessionOwnership(sessionId, userId);
+        MessageCursor resumeAfter = lastEventId == null || lastEventId.isBlank() ? null : MessageCursor.decode(lastEventId);
+
+        if (subscriptionCount.incrementAndGet() > maxSubscriptions) {
+            subscriptionCount.decrementAndGet();
+            throw new ServiceUnavailableException("Too many subscriptions, please retry");
+        }
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscription subscription = new Subscription(sessionId, userId, emitter, new LinkedBlockingQueue<>(bufferSize));
+        // Registered before the replay starts, so nothing committed in between is missed
+        subscriptions.computeIfAbsent(sessionId, id -> ConcurrentHashMap.newKeySet()).add(subscription);
+        emitter.onCompletion(() -> remove(subscription));
+        emitter.onError(e -> remove(subscription));
+        if (resumeAfter != null) {
+            subscription.lastSent = resumeAfter;
+            subscription.replayState.set(REPLAYING);
+            schedule(subscription);
+        }
+        return emitter;
+    }
+
+    public int getSubscriptionCount() {
+        return subscriptionCount.get();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMessagesAdded(MessagesAddedEvent event) {
+        Set<Subscription> sessionSubscriptions = subscriptions.get(event.sessionId());
+        if (sessionSubscriptions == null) {
+            return;
+        }
+        for (Subscription subscription : sessionSubscriptions) {
+            boolean overflowed = false;
+            for (MessageResponse message : event.messages()) {
+                if (!subscription.queue.offer(message)) {
+                    overflowed = true;
+                    break;
+                }
+            }
+            if (!overflowed) {
+                schedule(subscription);
+            } else if (!subscription.requestReplay()) {
+                evict(subscription);
+            }
+        }
+    }
+
+    // Keeps proxies from closing idle connections and detects clients that went away
+    @Scheduled(fixedDelayString = "${app.push.heartbeat-interval:PT15S}")
+    public void sendHeartbeats() {
+        subscriptions.values().forEach(sessionSubscriptions -> sessionSubscriptions.forEach(subscription -> {
+            subscription.heartbeatDue = true;
+            schedule(subscription);
+        }));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscriptions.values().forEach(sessionSubscriptions -> sessionSubscriptions.forEach(s -> s.emitter.complete()));
+        senders.shutdownNow();
+    }
+
+    // At most one drain per subscription at a time, so its events go out in order
+    private void schedule(Subscription subscription) {
+        if (subscription.draining.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscription));
+        }
+    }
+
+    private void drain(Subscription subscription) {
+        try {
+            if (subscription.replayState.get() != IDLE) {
+                // A replay requested while this one runs may have missed messages, so it goes round again
+                do {
+                    subscription.replayState.set(REPLAYING);
+                    replay(subscription);
+                } while (!subscription.replayState.compareAndSet(REPLAYING, IDLE));
+            }
+            MessageResponse message;
+            while ((message = subscription.queue.poll()) != null) {
+                send(subscription, message);
+            }
+            if (subscription.heartbeatDue) {
+                subscription.heartbeatDue = false;
+                subscription.emitter.send(SseEmitter.event().comment("heartbeat"));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Closing subscription to session: {} ({})", subscription.sessionId, e.getMessage());
+            remove(subscription);
+            subscription.emitter.completeWithError(e);
+        } finally {
+            subscription.draining.set(false);
+        }
+        // Covers an event that arrived after the last poll but before draining was reset
+        if (!subscription.queue.isEmpty() || subscription.heartbeatDue) {
+            schedule(subscription);
+        }
+    }
+
+    private void replay(Subscription subscription) throws IOException {
+        // The drain runs outside any request, and a replica may not have the messages that triggered the
+        // replay yet; reading them from the primary keeps the replay from skipping past them
+        if (readYourWritesTracker != null) {
+            readYourWritesTracker.pinToPrimary();
+        }
+        try {
+            replayPages(subscription);
+        } finally {
+            if (readYourWritesTracker != null) {
+                readYourWritesTracker.clear();
+            }
+        }
+    }
+
+    private void replayPages(Subscription subscription) throws IOException {
+        boolean hasNext = true;
+        while (hasNext) {
+            // Replays run after the subscribe request returned, so each page read takes its own permit. A busy
+            // gate closes the subscription and the client resumes via Last-Event-ID
+            CursorSliceResponse<MessageResponse> slice;
+            dbConcurrencyLimit.acquirePermit("replay of session " + subscription.sessionId);
+            try {
+                slice = chatService.getMessagesByCursor(subscription.sessionId, subscription.userId,
+                        subscription.lastSent.encode(), null, REPLAY_PAGE_SIZE, false);
+            } finally {
+                dbConcurrencyLimit.releasePermit();
+            }
+            for (MessageResponse message : slice.getContent()) {
+                send(subscription, message);
+            }
+            hasNext = slice.isHasNext();
+        }
+    }
+
+    private void send(Subscription subscription, MessageResponse message) throws IOException {
+        MessageCursor cursor = MessageCursor.of(message);
+        // Already delivered by the replay
+        if (subscription.lastSent != null && !isAfter(cursor, subscription.lastSent)) {
+            return;
+        }
+        subscription.emitter.send(SseEmitter.event()
+                .id(cursor.encode())
+                .name("message")
+                .data(message, MediaType.APPLICATION_JSON));
+        subscription.lastSent = cursor;
+        sentCounter.increment();
+    }
+
+    // A client that cannot keep up is disconnected rather than buffered without bound; it resumes via Last-Event-ID
+    private void evict(Subscription subscription) {
+        if (remove(subscription)) {
+            evictedCounter.increment();
+            log.info("Evicting slow subscriber of session: {}", subscription.sessionId);
+            subscription.emitter.complete();
+        }
+    }
+
+    private boolean remove(Subscription subscription) {
+        boolean[] removed = {false};
+        subscriptions.computeIfPresent(subscription.sessionId, (id, sessionSubscriptions) -> {
+            removed[0] = sessionSubscriptions.remove(subscription);
+            return sessionSubscriptions.isEmpty() ? null : sessionSubscriptions;
+        });
+        if (removed[0]) {
+            subscriptionCount.decrementAndGet();
+        }
+        return removed[0];
+    }
+
+    // A Last-Event-ID from before messages had a seq has none; the replay resolves it, so everything is newer
+    private static boolean isAfter(MessageCursor cursor, MessageCursor other) {
+        return other.getSeq() == null || cursor.getSeq() > other.getSeq();
+    }
+
+    // lastSent is only touched by the drain holding 'draining'; the flags and replayState are set from other threads
+    private static final class Subscription {
+        private final Long sessionId;
+        private final String userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<MessageResponse> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicInteger replayState = new AtomicInteger(IDLE);
+        private volatile MessageCursor lastSent;
+        private volatile boolean heartbeatDue;
+
+        private Subscription(Long sessionId, String userId, SseEmitter emitter, BlockingQueue<MessageResponse> queue) {
+            this.sessionId = sessionId;
+            this.userId = userId;
+            this.emitter = emitter;
+            this.queue = queue;
+        }
+
+        // Everything queued is committed, so a running replay can pick it up from the database instead.
+        // The queue is cleared before the replay is requested: any replay that starts after the request
+        // reads what was cleared. A replay that finished in between leaves nothing to request, so it evicts.
+        private boolean requestReplay() {
+            if (replayState.get() == IDLE) {
+                return false;
+            }
+            queue.clear();
+            return replayState.getAndUpdate(state -> state == IDLE ? IDLE : REPLAY_AGAIN) != IDLE;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.chat.chat_microservice.service;
+
+import com.chat.chat_microservice.cache.BoundedCache;
+import com.chat.chat_microservice.dto.MessageResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+
+// Client request keys (Idempotency-Key) of added messages, so a retried add returns the message its first
+// attempt wrote instead of writing another one. Claims run inside the caller's transaction: a concurrent
+// retry blocks on the key until the first attempt commits (and replays its message) or rolls back (and
+// writes it instead). Committed answers are also kept in memory, so a later retry costs no query.
+@Component
+public class MessageRequestKeyStore {
+
+    // Waits for an uncommitted claim of the same key, then inserts nothing if that one committed
+    private static final String CLAIM = "INSERT INTO chat_message_request_keys (session_id, request_key, created_at) " +
+            "VALUES (?, ?, now()) ON CONFLICT DO NOTHING";
+
+    private static final String FIND_MESSAGE = "SELECT message_id FROM chat_message_request_keys " +
+            "WHERE session_id = ? AND request_key = ?";
+
+    private static final String BIND = "UPDATE chat_message_request_keys SET message_id = ? " +
+            "WHERE session_id = ? AND request_key = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BoundedCache<String, MessageResponse> answered;
+    private final Counter cacheReplays;
+    private final Counter databaseReplays;
+
+    public MessageRequestKeyStore(JdbcTemplate jdbcTemplate,
+                                  @Value("${app.idempotency.cache.max-size:10000}") int maxSize,
+                                  @Value("${app.idempotency.cache.ttl:PT10M}") Duration ttl,
+                                  MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.answered = new BoundedCache<>("request-keys", maxSize, ttl);
+        this.answered.bindTo(meterRegistry);
+        this.cacheReplays = meterRegistry.counter("chat.idempotency.replays", "source", "cache");
+        this.databaseReplays = meterRegistry.counter("chat.idempotency.replays", "source", "database");
+    }
+
+    // The committed answer to this key if it is still in memory
+    public MessageResponse findAnswered(Long sessionId, String requestKey) {
+        MessageResponse message = answered.get(cacheKey(sessionId, requestKey));
+        if (message != null) {
+            cacheReplays.increment();
+        }
+        return message;
+    }
+
+    // Null when the calling transaction now owns the key, otherwise the id of the message written under it
+    public Long claim(Long sessionId, String requestKey) {
+        if (jdbcTemplate.update(CLAIM, sessionId, requestKey) == 1) {
+            return null;
+        }
+        List<Long> messageIds = jdbcTemplate.queryForList(FIND_MESSAGE, Long.class, sessionId, requestKey);
+        if (messageIds.isEmpty() || messageIds.get(0) == null) {
+            // Only possible if the key was swept between the two statements
+            throw new IllegalStateException("Request key of session " + sessionId + " has no message");
+        }
+        databaseReplays.increment();
+        return messageIds.get(0);
+    }
+
+    // Records the message written under a claimed key; it is answered from memory once the transaction commits
+    public void bind(Long sessionId, String requestKey, MessageResponse message) {
+        jdbcTemplate.update(BIND, message.getId(), sessionId, requestKey);
+        remember(sessionId, requestKey, message);
+    }
+
+    public void remember(Long sessionId, String requestKey, MessageResponse message) {
+        String key = cacheKey(sessionId, requestKey);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    answered.put(key, message);
+                }
+            });
+        } else {
+            answered.put(key, message);
+        }
+    }
+
+    private static String cacheKey(Long sessionId, String requestKey) {
+        return sessionId + ":" + requestKey;
+    }
+}
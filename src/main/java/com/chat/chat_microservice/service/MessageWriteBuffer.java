@@ -0,0 +1,295 @@
+package com.chat.chat_microservice.service;
+
+import com.chat.chat_microservice.dto.AddMessageRequest;
+import com.chat.chat_microservice.dto.MessageResponse;
+import com.chat.chat_microservice.entity.ChatMessage;
+import com.chat.chat_microservice.entity.ChatMessageContext;
+import com.chat.chat_microservice.event.MessagesAddedEvent;
+import com.chat.chat_microservice.event.SessionsChangedEvent;
+import com.chat.chat_microservice.exception.ServiceUnavailableException;
+import com.chat.chat_microservice.repository.ChatMessageRepository;
+import com.chat.chat_microservice.repository.ChatSessionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Opt-in write-behind path for addMessage: requests are queued in memory and a single committer
+// thread persists them in group commits, so a burst costs a handful of transactions instead of one each.
+// A single FIFO consumer keeps messages of the same session in submission order.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MessageWriteBuffer implements SmartLifecycle {
+
+    private final ChatSessionRepository sessionRepository;
+    private final ChatMessageRepository messageRepository;
+    private final MessageContextStore contextStore;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.write-behind.capacity:10000}")
+    private int capacity;
+
+    @Value("${app.write-behind.max-batch-size:200}")
+    private int maxBatchSize;
+
+    @Value("${app.write-behind.max-delay-ms:5}")
+    private long maxDelayMs;
+
+    @Value("${app.write-behind.offer-timeout-ms:50}")
+    private long offerTimeoutMs;
+
+    @Value("${app.write-behind.durable-timeout-ms:5000}")
+    private long durableTimeoutMs;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private BlockingQueue<PendingMessage> queue;
+    private Thread committer;
+    private volatile boolean running;
+
+    private Counter committedCounter;
+    private Counter failedCounter;
+    private Counter rejectedCounter;
+    private DistributionSummary batchSizes;
+    private Timer commitTimer;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public CompletableFuture<MessageResponse> submit(Long sessionId, String userId, AddMessageRequest request) {
+        if (!running) {
+            throw new ServiceUnavailableException("Message buffer is not accepting writes");
+        }
+        PendingMessage pending = new PendingMessage(sessionId, userId, request, new PendingResult());
+        try {
+            // Backpressure: wait briefly for room, then push back on the client instead of growing the heap
+            if (!queue.offer(pending, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                rejectedCounter.increment();
+                throw new ServiceUnavailableException("Message buffer is full, please retry");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while queueing message");
+        }
+        return pending.future();
+    }
+
+    public MessageResponse awaitDurable(CompletableFuture<MessageResponse> pending) {
+        try {
+            try {
+                return pending.get(durableTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Dropped before the committer took it, so a client retrying after the 503 cannot write it twice
+                if (!(pending instanceof PendingResult result) || result.claim()) {
+                    pending.cancel(false);
+                    throw new ServiceUnavailableException(
+                            "Timed out waiting for message to be committed, it was not written");
+                }
+                // Already part of a group commit, its outcome is at most one transaction away
+                return pending.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while waiting for message to be committed");
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(capacity);
+        committedCounter = meterRegistry.counter("chat.write_behind.messages", "result", "committed");
+        failedCounter = meterRegistry.counter("chat.write_behind.messages", "result", "failed");
+        rejectedCounter = meterRegistry.counter("chat.write_behind.messages", "result", "rejected");
+        batchSizes = meterRegistry.summary("chat.write_behind.batch.size");
+        commitTimer = meterRegistry.timer("chat.write_behind.commit");
+        meterRegistry.gauge("chat.write_behind.queue.size", queue, BlockingQueue::size);
+
+        running = true;
+        Thread.Builder threadBuilder = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform();
+        committer = threadBuilder.name("message-write-behind").unstarted(this::runCommitter);
+        committer.start();
+        log.info("Write-behind message buffer started (capacity={}, maxBatchSize={}, maxDelayMs={})",
+                capacity, maxBatchSize, maxDelayMs);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        // Stop taking new writes, then let the committer drain whatever is already queued
+        running = false;
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Write-behind message buffer drained and stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Stops after the web server, so no request can enqueue behind the final drain
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void runCommitter() {
+        List<PendingMessage> batch = new ArrayList<>(maxBatchSize);
+        long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Group commit: flush when the batch is full or the first message has waited maxDelayMs
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                // Messages whose waiter timed out and answered 503 are dropped
+                batch.removeIf(pending -> !pending.future().claim());
+                if (!batch.isEmpty()) {
+                    commit(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Write-behind committer interrupted, {} messages left in buffer", queue.size());
+                return;
+            } catch (RuntimeException e) {
+                log.error("Unexpected error in write-behind committer", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<PendingMessage> batch) {
+        batchSizes.record(batch.size());
+        try {
+            List<MessageResponse> responses = commitTimer.record(() -> transactionTemplate.execute(status -> persist(batch)));
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future().complete(responses.get(i));
+            }
+            committedCounter.increment(batch.size());
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                fail(batch.get(0), e);
+                return;
+            }
+            // One bad message (e.g. its session was deleted meanwhile) must not fail the whole group
+            log.warn("Group commit of {} messages failed, retrying individually: {}", batch.size(), e.getMessage());
+            for (PendingMessage pending : batch) {
+                commit(List.of(pending));
+            }
+        }
+    }
+
+    private List<MessageResponse> persist(List<PendingMessage> batch) {
+        List<ChatMessage> messages = new ArrayList<>(batch.size());
+        Map<Long, Integer> countsBySession = new LinkedHashMap<>();
+        Set<String> userIds = new HashSet<>();
+        Map<String, ChatMessageContext> contexts = contextStore.store(
+                batch.stream().map(pending -> pending.request().getContext()).toList());
+        for (PendingMessage pending : batch) {
+            // Ownership was checked at submit time, a reference proxy avoids re-reading the session
+            messages.add(ChatService.toEntity(sessionRepository.getReferenceById(pending.sessionId()), pending.request(),
+                    contexts.get(pending.request().getContext())));
+            countsBySession.merge(pending.sessionId(), 1, Integer::sum);
+            userIds.add(pending.userId());
+        }
+        // Seqs are claimed right before the insert, in session id order so two group commits cannot deadlock
+        LocalDateTime now = LocalDateTime.now();
+        Map<Long, Long> nextSeqs = new HashMap<>();
+        new TreeMap<>(countsBySession).forEach((sessionId, count) -> nextSeqs.put(sessionId,
+                ChatService.allocateMessageSeqs(sessionRepository, sessionId, count, now) - count + 1));
+        for (int i = 0; i < batch.size(); i++) {
+            messages.get(i).setSeq(nextSeqs.merge(batch.get(i).sessionId(), 1L, Long::sum) - 1);
+        }
+        List<ChatMessage> savedMessages = messageRepository.saveAllAndFlush(messages);
+        userIds.forEach(userId -> eventPublisher.publishEvent(new SessionsChangedEvent(userId)));
+        List<MessageResponse> responses = new ArrayList<>(savedMessages.size());
+        Map<Long, List<MessageResponse>> responsesBySession = new LinkedHashMap<>();
+        for (int i = 0; i < savedMessages.size(); i++) {
+            MessageResponse response = MessageResponse.fromEntity(savedMessages.get(i), batch.get(i).request().getContext());
+            responses.add(response);
+            responsesBySession.computeIfAbsent(batch.get(i).sessionId(), id -> new ArrayList<>()).add(response);
+        }
+        responsesBySession.forEach((sessionId, added) -> eventPublisher.publishEvent(new MessagesAddedEvent(sessionId, added)));
+        return responses;
+    }
+
+    private void fail(PendingMessage pending, RuntimeException e) {
+        failedCounter.increment();
+        log.error("Failed to persist buffered message for session: {}", pending.sessionId(), e);
+        pending.future().completeExceptionally(e);
+    }
+
+    private record PendingMessage(Long sessionId, String userId, AddMessageRequest request, PendingResult future) {
+    }
+
+    // Claimed exactly once: by the committer before it writes the message, or by a timed-out waiter dropping it
+    private static final class PendingResult extends CompletableFuture<MessageResponse> {
+
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.chat.chat_microservice.service;
+
+import com.chat.chat_microservice.dto.CursorSliceResponse;
+import com.chat.chat_microservice.dto.SearchCursor;
+import com.chat.chat_microservice.dto.SearchHit;
+import com.chat.chat_microservice.exception.BadRequestException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+// Full-text search over a user's session titles and message contents, backed by the trigger-maintained tsvector
+// columns from V5. Hits come ranked with keyset paging; snippets are only built for the returned page.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SearchService {
+
+    private static final int MAX_SLICE_SIZE = 50;
+    private static final int MAX_QUERY_LENGTH = 200;
+
+    // websearch_to_tsquery accepts what users type ("quoted phrases", or, -exclusions) without syntax errors
+    private static final String SEARCH = "WITH q AS (SELECT websearch_to_tsquery('english', ?) AS query), " +
+            "hits AS (" +
+            "SELECT -s.id AS hit_id, s.id AS session_id, s.title AS session_title, NULL::BIGINT AS message_id, " +
+            "NULL::VARCHAR AS sender, s.title AS text, s.updated_at AS created_at, " +
+            "ts_rank(s.title_vector, q.query) AS rank " +
+            "FROM chat_sessions s, q " +
+            "WHERE s.user_id = ? AND NOT s.pending_deletion AND s.title_vector @@ q.query " +
+            "UNION ALL " +
+            "SELECT m.id, s.id, s.title, m.id, m.sender, m.content, m.created_at, " +
+            "ts_rank(m.search_vector, q.query) " +
+            "FROM chat_sessions s JOIN chat_messages m ON m.session_id = s.id, q " +
+            "WHERE s.user_id = ? AND NOT s.pending_deletion AND m.search_vector @@ q.query), " +
+            "page AS (SELECT * FROM hits %s ORDER BY rank DESC, hit_id DESC LIMIT ?) " +
+            "SELECT page.*, ts_headline('english', page.text, q.query, " +
+            "'StartSel=\"**\", StopSel=\"**\", MaxWords=30, MinWords=10, MaxFragments=2') AS snippet " +
+            "FROM page, q ORDER BY rank DESC, hit_id DESC";
+
+    // The driver binds floats as float8; cast back so the equality compares the very same real
+    private static final String AFTER_CURSOR = "WHERE rank < ?::REAL OR (rank = ?::REAL AND hit_id < ?)";
+
+    private static final RowMapper<SearchHit> HIT_MAPPER = (rs, rowNum) -> {
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        return new SearchHit(
+                rs.getLong("session_id"),
+                rs.getString("session_title"),
+                rs.getObject("message_id", Long.class),
+                rs.getString("sender"),
+                rs.getString("snippet"),
+                rs.getFloat("rank"),
+                createdAt != null ? createdAt.toLocalDateTime() : null);
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Scoped by user_id in the query itself, so there is no separate ownership check
+    @Transactional(readOnly = true)
+    public CursorSliceResponse<SearchHit> search(String userId, String query, String after, int size) {
+        log.info("Searching conversations of user: {}", userId);
+
+        if (query == null || query.isBlank()) {
+            throw new BadRequestException("Search query must not be empty");
+        }
+        if (query.length() > MAX_QUERY_LENGTH) {
+            throw new BadRequestException("Search query must be at most " + MAX_QUERY_LENGTH + " characters");
+        }
+        if (size < 1 || size > MAX_SLICE_SIZE) {
+            throw new BadRequestException("Size must be between 1 and " + MAX_SLICE_SIZE);
+        }
+
+        List<Object> args = new ArrayList<>(List.of(query, userId, userId));
+        String sql;
+        if (after != null) {
+            SearchCursor cursor = SearchCursor.decode(after);
+            args.add(cursor.getRank());
+            args.add(cursor.getRank());
+            args.add(cursor.getHitId());
+            sql = String.format(SEARCH, AFTER_CURSOR);
+        } else {
+            sql = String.format(SEARCH, "");
+        }
+        // One extra row tells whether there is a next slice
+        args.add(size + 1);
+
+        List<SearchHit> hits = new ArrayList<>(jdbcTemplate.query(sql, HIT_MAPPER, args.toArray()));
+        boolean hasNext = hits.size() > size;
+        if (hasNext) {
+            hits.remove(size);
+        }
+        String nextCursor = hasNext ? SearchCursor.of(hits.get(hits.size() - 1)).encode() : null;
+        return new CursorSliceResponse<>(hits, hits.size(), hasNext, nextCursor);
+    }
+}
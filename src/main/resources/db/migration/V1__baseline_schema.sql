@@ -0,0 +1,56 @@
+-- no-transaction
+-- Baseline matching the JPA model. Written to be a no-op on databases that were
+-- created by the former ddl-auto=update, so existing deployments adopt it in place.
+
+CREATE TABLE IF NOT EXISTS chat_sessions (
+    id               BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id          VARCHAR(255) NOT NULL,
+    title            VARCHAR(255) NOT NULL,
+    favorite         BOOLEAN      NOT NULL,
+    created_at       TIMESTAMP(6) NOT NULL,
+    updated_at       TIMESTAMP(6) NOT NULL,
+    message_count    INTEGER      NOT NULL DEFAULT 0,
+    last_message_at  TIMESTAMP(6),
+    pending_deletion BOOLEAN      NOT NULL DEFAULT FALSE
+);
+
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS message_count INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS last_message_at TIMESTAMP(6);
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS pending_deletion BOOLEAN NOT NULL DEFAULT FALSE;
+
+CREATE TABLE IF NOT EXISTS chat_messages (
+    id         BIGINT       PRIMARY KEY,
+    session_id BIGINT       NOT NULL CONSTRAINT fk_chat_messages_session REFERENCES chat_sessions (id),
+    sender     VARCHAR(255) NOT NULL,
+    content    TEXT         NOT NULL,
+    context    TEXT,
+    created_at TIMESTAMP(6) NOT NULL
+);
+
+-- chat_messages ids come from a pooled sequence (allocationSize = 50). Databases created while the
+-- column was IDENTITY get the sequence moved past their existing rows.
+CREATE SEQUENCE IF NOT EXISTS chat_messages_seq INCREMENT BY 50;
+ALTER SEQUENCE chat_messages_seq INCREMENT BY 50;
+SELECT setval('chat_messages_seq',
+              GREATEST((SELECT COALESCE(MAX(id), 0) + 50 FROM chat_messages),
+                       (SELECT last_value FROM chat_messages_seq)));
+
+-- Sessions that predate the denormalized counters would show 0 messages until the nightly reconciliation.
+-- Counted in one read of chat_messages into a table of this connection, then copied over a thousand sessions
+-- at a time; GREATEST keeps whatever appends already counted meanwhile. Each batch returns the rows it
+-- took off the work table, so the last one returns none.
+DROP TABLE IF EXISTS pg_temp.message_count_backfill;
+
+CREATE TEMP TABLE message_count_backfill AS
+SELECT session_id, count(*) AS cnt, max(created_at) AS last_at FROM chat_messages GROUP BY session_id;
+CREATE INDEX ON message_count_backfill (session_id);
+
+-- repeat until no rows
+WITH batch AS (SELECT session_id, cnt, last_at FROM message_count_backfill ORDER BY session_id LIMIT 1000),
+     counted AS (UPDATE chat_sessions s
+                 SET message_count   = GREATEST(s.message_count, b.cnt),
+                     last_message_at = GREATEST(s.last_message_at, b.last_at)
+                 FROM batch b WHERE s.id = b.session_id)
+DELETE FROM message_count_backfill WHERE session_id IN (SELECT session_id FROM batch);
+
+DROP TABLE message_count_backfill;
@@ -0,0 +1,20 @@
+-- no-transaction
+-- Composite indexes matched to the repository queries, so each one is an index range scan
+-- that already returns rows in the requested order (no sort step). Built concurrently, so
+-- writes to chat_sessions and chat_messages carry on during the build.
+
+-- findByUserIdOrderByUpdatedAtDesc (GET /sessions and account erasure)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_sessions_user_updated
+    ON chat_sessions (user_id, updated_at DESC);
+
+-- findFavoritesByUserIdOrderByUpdatedAtDesc (GET /sessions/favorites); favorites are a small subset
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_sessions_user_updated_favorite
+    ON chat_sessions (user_id, updated_at DESC) WHERE favorite;
+
+-- findBySessionIdOrderByCreatedAtAsc, keyset slices, streaming export and deletes by session
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_messages_session_created_id
+    ON chat_messages (session_id, created_at, id);
+
+-- SessionPurgeJob sweep: normally empty, so the partial index costs nothing
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_sessions_pending_deletion
+    ON chat_sessions (id) WHERE pending_deletion;
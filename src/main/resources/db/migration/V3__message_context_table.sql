@@ -0,0 +1,26 @@
+-- RAG contexts move out of chat_messages into their own table. Listings only read chat_messages,
+-- and a context is fetched when it is asked for, so large contexts no longer ride along with every row.
+
+CREATE SEQUENCE IF NOT EXISTS chat_message_contexts_seq INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS chat_message_contexts (
+    id   BIGINT PRIMARY KEY,
+    body TEXT   NOT NULL
+);
+
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS context_id BIGINT
+    CONSTRAINT fk_chat_messages_context REFERENCES chat_message_contexts (id);
+
+-- Existing contexts keep their message id as context id
+INSERT INTO chat_message_contexts (id, body)
+SELECT id, context FROM chat_messages WHERE context IS NOT NULL;
+
+UPDATE chat_messages SET context_id = id WHERE context IS NOT NULL;
+
+ALTER TABLE chat_messages DROP COLUMN context;
+
+SELECT setval('chat_message_contexts_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM chat_message_contexts));
+
+-- Deleting a context checks chat_messages for references; partial, since most messages have none
+CREATE INDEX IF NOT EXISTS idx_chat_messages_context
+    ON chat_messages (context_id) WHERE context_id IS NOT NULL;
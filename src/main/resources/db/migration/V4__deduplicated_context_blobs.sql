@@ -0,0 +1,45 @@
+-- Contexts become content-addressed blobs: stored once per distinct text (SHA-256 of its UTF-8 bytes),
+-- deflate-compressed by the application, and reference counted by the messages pointing at them.
+
+ALTER TABLE chat_message_contexts RENAME COLUMN body TO legacy_body;
+ALTER TABLE chat_message_contexts ALTER COLUMN legacy_body DROP NOT NULL;
+ALTER TABLE chat_message_contexts
+    ADD COLUMN IF NOT EXISTS body         BYTEA,
+    ADD COLUMN IF NOT EXISTS content_hash BYTEA,
+    ADD COLUMN IF NOT EXISTS preview      TEXT,
+    ADD COLUMN IF NOT EXISTS text_length  INTEGER,
+    ADD COLUMN IF NOT EXISTS ref_count    INTEGER NOT NULL DEFAULT 0;
+
+-- Rows written before this version keep their plain TEXT body, which Postgres still compresses when
+-- it is large. They get a hash and a preview (MessageResponse.CONTEXT_PREVIEW_LENGTH characters) here
+-- and are deduplicated against from now on.
+UPDATE chat_message_contexts
+SET content_hash = sha256(convert_to(legacy_body, 'UTF8')),
+    preview      = left(legacy_body, 1000),
+    text_length  = char_length(legacy_body)
+WHERE content_hash IS NULL;
+
+-- Existing duplicates are merged into the lowest id
+UPDATE chat_messages m
+SET context_id = d.keep_id
+FROM (SELECT id, min(id) OVER (PARTITION BY content_hash) AS keep_id FROM chat_message_contexts) d
+WHERE m.context_id = d.id AND d.id <> d.keep_id;
+
+UPDATE chat_message_contexts c
+SET ref_count = (SELECT count(*) FROM chat_messages m WHERE m.context_id = c.id);
+
+DELETE FROM chat_message_contexts WHERE ref_count = 0;
+
+ALTER TABLE chat_message_contexts
+    ALTER COLUMN content_hash SET NOT NULL,
+    ALTER COLUMN preview SET NOT NULL,
+    ALTER COLUMN text_length SET NOT NULL;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_chat_message_contexts_hash ON chat_message_contexts (content_hash);
+
+-- Blobs released by their last message, deleted by ContextBlobSweepJob
+CREATE INDEX IF NOT EXISTS idx_chat_message_contexts_unreferenced
+    ON chat_message_contexts (id) WHERE ref_count = 0;
+
+-- Ids are now taken one at a time by the upsert in MessageContextStore
+ALTER SEQUENCE chat_message_contexts_seq INCREMENT BY 1;
@@ -0,0 +1,46 @@
+-- no-transaction
+-- Full-text search over message contents and session titles, see SearchService.
+-- Triggers keep the vectors in step with every insert and update, whichever path writes the row
+-- (addMessage, batches, write-behind). Not generated columns: adding a stored one rewrites the table
+-- under an exclusive lock, while a plain column is added at once and existing rows are filled in batches.
+
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS search_vector TSVECTOR;
+
+CREATE OR REPLACE FUNCTION chat_messages_search_vector() RETURNS trigger LANGUAGE plpgsql AS
+    'BEGIN NEW.search_vector := to_tsvector(''english'', NEW.content); RETURN NEW; END';
+
+CREATE OR REPLACE TRIGGER chat_messages_search_vector
+    BEFORE INSERT OR UPDATE OF content ON chat_messages
+    FOR EACH ROW EXECUTE FUNCTION chat_messages_search_vector();
+
+-- Finds the rows still to fill without rescanning the table for every batch; dropped below
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_messages_search_backfill
+    ON chat_messages (id) WHERE search_vector IS NULL;
+
+-- repeat until no rows
+UPDATE chat_messages SET search_vector = to_tsvector('english', content)
+WHERE id IN (SELECT id FROM chat_messages WHERE search_vector IS NULL LIMIT 10000);
+
+DROP INDEX CONCURRENTLY IF EXISTS idx_chat_messages_search_backfill;
+
+-- Rare terms are looked up here, common ones are cheaper through the user's sessions
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_messages_search ON chat_messages USING GIN (search_vector);
+
+-- A user has few sessions and they are found by user_id, so titles need no index of their own
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS title_vector TSVECTOR;
+
+CREATE OR REPLACE FUNCTION chat_sessions_title_vector() RETURNS trigger LANGUAGE plpgsql AS
+    'BEGIN NEW.title_vector := to_tsvector(''english'', NEW.title); RETURN NEW; END';
+
+CREATE OR REPLACE TRIGGER chat_sessions_title_vector
+    BEFORE INSERT OR UPDATE OF title ON chat_sessions
+    FOR EACH ROW EXECUTE FUNCTION chat_sessions_title_vector();
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_sessions_title_backfill
+    ON chat_sessions (id) WHERE title_vector IS NULL;
+
+-- repeat until no rows
+UPDATE chat_sessions SET title_vector = to_tsvector('english', title)
+WHERE id IN (SELECT id FROM chat_sessions WHERE title_vector IS NULL LIMIT 10000);
+
+DROP INDEX CONCURRENTLY IF EXISTS idx_chat_sessions_title_backfill;
@@ -0,0 +1,12 @@
+-- Rolling summary of a session's older turns, written by the LLM orchestrator and returned with the
+-- context window. Kept out of chat_sessions so session listings and lookups never read it.
+-- The cursor (through_created_at, through_message_id) is the last message the summary covers.
+
+CREATE TABLE IF NOT EXISTS chat_session_summaries (
+    session_id         BIGINT       PRIMARY KEY
+        CONSTRAINT fk_chat_session_summaries_session REFERENCES chat_sessions (id) ON DELETE CASCADE,
+    summary            TEXT         NOT NULL,
+    through_created_at TIMESTAMP(6) NOT NULL,
+    through_message_id BIGINT       NOT NULL,
+    updated_at         TIMESTAMP(6) NOT NULL
+);
@@ -0,0 +1,16 @@
+-- Client request keys (Idempotency-Key header) of added messages, see MessageRequestKeyStore.
+-- A table of its own rather than a column on chat_messages: a partitioned table can only enforce
+-- uniqueness together with created_at, and a retry gets a new createdAt.
+-- message_id has no foreign key for the same reason, keys go with their session.
+
+CREATE TABLE IF NOT EXISTS chat_message_request_keys (
+    session_id  BIGINT       NOT NULL
+        CONSTRAINT fk_chat_message_request_keys_session REFERENCES chat_sessions (id) ON DELETE CASCADE,
+    request_key VARCHAR(255) NOT NULL,
+    message_id  BIGINT,
+    created_at  TIMESTAMP(6) NOT NULL,
+    CONSTRAINT pk_chat_message_request_keys PRIMARY KEY (session_id, request_key)
+);
+
+-- Serves RequestKeySweepJob
+CREATE INDEX IF NOT EXISTS idx_chat_message_request_keys_created ON chat_message_request_keys (created_at);
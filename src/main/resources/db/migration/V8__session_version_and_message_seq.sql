@@ -0,0 +1,57 @@
+-- no-transaction
+-- Optimistic locking for session updates, and a per-session append sequence for messages.
+-- chat_sessions.last_message_seq is claimed by every append in the same UPDATE that bumps the counters
+-- (ChatSessionRepository#allocateMessageSeqs), so messages are ordered and paged by (session_id, seq)
+-- without ties. Existing messages are numbered a few sessions at a time, each batch in its own transaction.
+
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS last_message_seq BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS seq BIGINT;
+
+-- Finds the messages still to number without rescanning the table for every batch; dropped below
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_messages_seq_backfill
+    ON chat_messages (session_id) WHERE seq IS NULL;
+
+-- Existing messages keep their former (created_at, id) order. A batch numbers every message of the
+-- sessions it picks and moves their last_message_seq along; it counts the sessions it updated, which
+-- is zero once no message is left unnumbered.
+-- repeat until no rows
+WITH numbered AS (
+    UPDATE chat_messages m SET seq = r.seq
+    FROM (SELECT id, created_at, row_number() OVER (PARTITION BY session_id ORDER BY created_at, id) AS seq
+          FROM chat_messages
+          WHERE session_id IN (SELECT session_id FROM chat_messages WHERE seq IS NULL LIMIT 5000)) r
+    WHERE m.id = r.id AND m.created_at = r.created_at AND m.seq IS NULL
+    RETURNING m.session_id, m.seq)
+UPDATE chat_sessions s SET last_message_seq = GREATEST(s.last_message_seq, n.last_seq)
+FROM (SELECT session_id, max(seq) AS last_seq FROM numbered GROUP BY session_id) n
+WHERE s.id = n.session_id;
+
+-- NOT NULL without scanning under an exclusive lock: a NOT VALID check applies to new rows at once and is
+-- validated while writes continue, after numbering whatever was inserted in the meantime. SET NOT NULL
+-- then relies on the validated check.
+ALTER TABLE chat_messages DROP CONSTRAINT IF EXISTS chat_messages_seq_not_null;
+ALTER TABLE chat_messages ADD CONSTRAINT chat_messages_seq_not_null CHECK (seq IS NOT NULL) NOT VALID;
+
+-- repeat until no rows
+WITH numbered AS (
+    UPDATE chat_messages m SET seq = r.seq
+    FROM (SELECT id, created_at, row_number() OVER (PARTITION BY session_id ORDER BY created_at, id) AS seq
+          FROM chat_messages
+          WHERE session_id IN (SELECT session_id FROM chat_messages WHERE seq IS NULL LIMIT 5000)) r
+    WHERE m.id = r.id AND m.created_at = r.created_at AND m.seq IS NULL
+    RETURNING m.session_id, m.seq)
+UPDATE chat_sessions s SET last_message_seq = GREATEST(s.last_message_seq, n.last_seq)
+FROM (SELECT session_id, max(seq) AS last_seq FROM numbered GROUP BY session_id) n
+WHERE s.id = n.session_id;
+
+ALTER TABLE chat_messages VALIDATE CONSTRAINT chat_messages_seq_not_null;
+ALTER TABLE chat_messages ALTER COLUMN seq SET NOT NULL;
+ALTER TABLE chat_messages DROP CONSTRAINT chat_messages_seq_not_null;
+
+DROP INDEX CONCURRENTLY IF EXISTS idx_chat_messages_seq_backfill;
+
+-- Replaces (session_id, created_at, id) for listings, keyset slices, streaming export and deletes by session
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_messages_session_seq ON chat_messages (session_id, seq);
+DROP INDEX CONCURRENTLY IF EXISTS idx_chat_messages_session_created_id;
@@ -0,0 +1,66 @@
+-- Opt-in conversion of chat_messages into a table range-partitioned by month on created_at.
+-- Not a versioned migration: run it by hand once, e.g.
+--   psql -v ON_ERROR_STOP=1 -f chat_messages_range_partitioning.sql
+-- and then set app.partitioning.enabled=true so PartitionMaintenanceJob keeps creating partitions ahead.
+--
+-- Existing rows are not copied. The current table becomes the partition for everything before next month,
+-- so apart from the index build in step 1 the conversion is a metadata change under a short lock.
+
+-- Step 1, outside a transaction and without blocking writes: give the current table what it needs to be
+-- attached without a scan, i.e. an index matching the new primary key and a validated upper bound.
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS chat_messages_id_created_at ON chat_messages (id, created_at);
+
+DO $$
+BEGIN
+    EXECUTE format('ALTER TABLE chat_messages ADD CONSTRAINT chat_messages_legacy_bound CHECK (created_at < %L) NOT VALID',
+                   date_trunc('month', now()) + INTERVAL '1 month');
+END $$;
+
+ALTER TABLE chat_messages VALIDATE CONSTRAINT chat_messages_legacy_bound;
+
+-- Step 2: swap in the partitioned parent. The primary key has to include the partition key.
+BEGIN;
+
+LOCK TABLE chat_messages IN ACCESS EXCLUSIVE MODE;
+
+ALTER TABLE chat_messages RENAME TO chat_messages_legacy;
+ALTER TABLE chat_messages_legacy RENAME CONSTRAINT chat_messages_pkey TO chat_messages_legacy_pkey;
+ALTER INDEX idx_chat_messages_session_seq RENAME TO idx_chat_messages_legacy_session_seq;
+ALTER INDEX idx_chat_messages_context RENAME TO idx_chat_messages_legacy_context;
+ALTER INDEX idx_chat_messages_search RENAME TO idx_chat_messages_legacy_search;
+-- The parent's trigger (below) is cloned onto every partition, the legacy one included
+DROP TRIGGER chat_messages_search_vector ON chat_messages_legacy;
+
+CREATE TABLE chat_messages (LIKE chat_messages_legacy INCLUDING DEFAULTS INCLUDING GENERATED) PARTITION BY RANGE (created_at);
+ALTER TABLE chat_messages ADD CONSTRAINT chat_messages_pkey PRIMARY KEY (id, created_at);
+ALTER TABLE chat_messages ADD CONSTRAINT fk_chat_messages_session
+    FOREIGN KEY (session_id) REFERENCES chat_sessions (id);
+ALTER TABLE chat_messages ADD CONSTRAINT fk_chat_messages_context
+    FOREIGN KEY (context_id) REFERENCES chat_message_contexts (id);
+CREATE INDEX idx_chat_messages_session_seq ON chat_messages (session_id, seq);
+CREATE INDEX idx_chat_messages_context ON chat_messages (context_id) WHERE context_id IS NOT NULL;
+CREATE INDEX idx_chat_messages_search ON chat_messages USING GIN (search_vector);
+CREATE TRIGGER chat_messages_search_vector
+    BEFORE INSERT OR UPDATE OF content ON chat_messages
+    FOR EACH ROW EXECUTE FUNCTION chat_messages_search_vector();
+
+-- The legacy table covers everything up to the bound validated above; monthly partitions take over from there.
+-- Partition names follow chat_messages_pYYYY_MM, which is what PartitionMaintenanceJob looks for.
+DO $$
+DECLARE
+    cutover TIMESTAMP := date_trunc('month', now()) + INTERVAL '1 month';
+    month_start TIMESTAMP;
+BEGIN
+    EXECUTE format('ALTER TABLE chat_messages ATTACH PARTITION chat_messages_legacy FOR VALUES FROM (MINVALUE) TO (%L)',
+                   cutover);
+    FOR i IN 0..2 LOOP
+        month_start := cutover + make_interval(months => i);
+        EXECUTE format('CREATE TABLE chat_messages_p%s PARTITION OF chat_messages FOR VALUES FROM (%L) TO (%L)',
+                       to_char(month_start, 'YYYY_MM'), month_start, month_start + INTERVAL '1 month');
+    END LOOP;
+END $$;
+
+COMMIT;
+
+-- The old primary key is now redundant with the partitioned one (chat_messages_id_created_at)
+ALTER TABLE chat_messages_legacy DROP CONSTRAINT chat_messages_legacy_pkey;
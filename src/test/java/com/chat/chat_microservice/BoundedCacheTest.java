@@ -0,0 +1,62 @@
+package com.chat.chat_microservice;
+
+import com.chat.chat_microservice.cache.BoundedCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedCacheTest {
+
+    @Test
+    void put_WhenFull_ShouldEvictLeastRecentlyUsed() {
+        // Arrange
+        BoundedCache<Long, String> cache = new BoundedCache<>("test", 2, Duration.ofMinutes(1));
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+        cache.get(1L);
+
+        // Act
+        cache.put(3L, "three");
+
+        // Assert
+        assertEquals("one", cache.get(1L));
+        assertNull(cache.get(2L));
+        assertEquals("three", cache.get(3L));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void get_AfterTtl_ShouldMiss() throws InterruptedException {
+        // Arrange
+        BoundedCache<Long, String> cache = new BoundedCache<>("test", 10, Duration.ofMillis(20));
+        cache.put(1L, "one");
+
+        // Act
+        Thread.sleep(40);
+
+        // Assert
+        assertNull(cache.get(1L));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void bindTo_ShouldExposeHitAndMissCounts() {
+        // Arrange
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BoundedCache<Long, String> cache = new BoundedCache<>("test", 10, Duration.ofMinutes(1));
+        cache.bindTo(registry);
+        cache.put(1L, "one");
+
+        // Act
+        cache.get(1L);
+        cache.get(1L);
+        cache.get(2L);
+
+        // Assert
+        assertEquals(2.0, registry.get("cache.gets").tag("cache", "test").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "test").tag("result", "miss").functionCounter().count());
+    }
+}
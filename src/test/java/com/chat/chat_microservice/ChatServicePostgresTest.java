@@ -0,0 +1,685 @@
+package com.chat.chat_microservice;
+
+import com.chat.chat_microservice.config.RetentionProperties;
+import com.chat.chat_microservice.controller.ChatController;
+import com.chat.chat_microservice.dto.AckMode;
+import com.chat.chat_microservice.dto.AddMessageRequest;
+import com.chat.chat_microservice.dto.CreateSessionRequest;
+import com.chat.chat_microservice.dto.CursorSliceResponse;
+import com.chat.chat_microservice.dto.MessageCursor;
+import com.chat.chat_microservice.dto.MessageResponse;
+import com.chat.chat_microservice.dto.SessionDeletionResponse;
+import com.chat.chat_microservice.dto.SessionResponse;
+import com.chat.chat_microservice.entity.ChatMessage;
+import com.chat.chat_microservice.entity.ChatSession;
+import com.chat.chat_microservice.job.RetentionJob;
+import com.chat.chat_microservice.repository.ChatSessionRepository;
+import com.chat.chat_microservice.service.ChatService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs against a real Postgres only, e.g. TEST_DB_URL=jdbc:postgresql://localhost:5432/chatdb
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "TEST_DB_URL", matches = ".+")
+class ChatServicePostgresTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatServicePostgresTest.class);
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("TEST_DB_URL"));
+        registry.add("spring.datasource.username", () -> System.getenv().getOrDefault("TEST_DB_USERNAME", "chatuser"));
+        registry.add("spring.datasource.password", () -> System.getenv().getOrDefault("TEST_DB_PASSWORD", "chatpass"));
+        registry.add("spring.jpa.properties.hibernate.generate_statistics", () -> "true");
+        registry.add("app.write-behind.enabled", () -> "true");
+    }
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ChatController chatController;
+
+    @Autowired
+    private ChatSessionRepository sessionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private RetentionProperties retentionProperties;
+
+    @Autowired
+    private RetentionJob retentionJob;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size}")
+    private int poolSize;
+
+    private Statistics statistics;
+    private String userId;
+    private final List<Long> sessionIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        userId = "pg-test-" + UUID.randomUUID();
+    }
+
+    @AfterEach
+    void tearDown() {
+        sessionIds.forEach(id -> {
+            jdbcTemplate.update("WITH gone AS (DELETE FROM chat_messages WHERE session_id = ? RETURNING context_id) " +
+                    "UPDATE chat_message_contexts c SET ref_count = c.ref_count - g.n " +
+                    "FROM (SELECT context_id, count(*) AS n FROM gone WHERE context_id IS NOT NULL GROUP BY context_id) g " +
+                    "WHERE c.id = g.context_id", id);
+            jdbcTemplate.update("DELETE FROM chat_sessions WHERE id = ?", id);
+        });
+    }
+
+    @Test
+    void getSessions_StatementCountShouldNotDependOnMessageVolume() {
+        for (int i = 0; i < 5; i++) {
+            SessionResponse session = chatService.createSession(new CreateSessionRequest(userId, "Session " + i));
+            sessionIds.add(session.getId());
+            addMessages(session.getId(), 1);
+        }
+
+        statistics.clear();
+        List<SessionResponse> small = chatService.getSessions(userId);
+        long smallStatements = statistics.getPrepareStatementCount();
+
+        sessionIds.forEach(id -> addMessages(id, 50));
+
+        statistics.clear();
+        List<SessionResponse> large = chatService.getSessions(userId);
+        long largeStatements = statistics.getPrepareStatementCount();
+
+        assertEquals(5, small.size());
+        assertEquals(51, large.get(0).getMessageCount());
+        assertEquals(smallStatements, largeStatements);
+        assertEquals(1, largeStatements);
+    }
+
+    @Test
+    void deleteSession_StatementCountShouldNotDependOnMessageVolume() {
+        SessionResponse small = chatService.createSession(new CreateSessionRequest(userId, "Small"));
+        SessionResponse large = chatService.createSession(new CreateSessionRequest(userId, "Large"));
+        sessionIds.add(small.getId());
+        sessionIds.add(large.getId());
+        seedMessages(small.getId(), 10);
+        seedMessages(large.getId(), 5_000);
+        jdbcTemplate.update("UPDATE chat_sessions SET message_count = ? WHERE id = ?", 5_000, large.getId());
+
+        statistics.clear();
+        assertTrue(chatService.deleteSession(small.getId(), userId));
+        long smallStatements = statistics.getPrepareStatementCount();
+
+        statistics.clear();
+        assertTrue(chatService.deleteSession(large.getId(), userId));
+        long largeStatements = statistics.getPrepareStatementCount();
+
+        assertEquals(smallStatements, largeStatements);
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM chat_messages WHERE session_id = ?", Integer.class, large.getId()));
+    }
+
+    @Test
+    void deleteAllSessions_LargeAccountShouldBePurgedInChunks() throws InterruptedException {
+        SessionResponse session = chatService.createSession(new CreateSessionRequest(userId, "Huge"));
+        sessionIds.add(session.getId());
+        seedMessages(session.getId(), 20_000);
+        jdbcTemplate.update("UPDATE chat_sessions SET message_count = ? WHERE id = ?", 20_000, session.getId());
+
+        SessionDeletionResponse response = chatService.deleteAllSessions(userId);
+
+        assertTrue(response.isPending());
+        assertTrue(chatService.getSessions(userId).isEmpty());
+        for (int i = 0; i < 100 && sessionExists(session.getId()); i++) {
+            Thread.sleep(100);
+        }
+        assertFalse(sessionExists(session.getId()));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM chat_messages WHERE session_id = ?", Integer.class, session.getId()));
+    }
+
+    @Test
+    void retention_ShouldPurgeInactiveAndExcessSessionsButKeepFavorites() {
+        SessionResponse stale = chatService.createSession(new CreateSessionRequest(userId, "Stale"));
+        SessionResponse staleFavorite = chatService.createSession(new CreateSessionRequest(userId, "Stale favorite"));
+        SessionResponse older = chatService.createSession(new CreateSessionRequest(userId, "Older"));
+        SessionResponse newest = chatService.createSession(new CreateSessionRequest(userId, "Newest"));
+        List.of(stale, staleFavorite, older, newest).forEach(session -> sessionIds.add(session.getId()));
+        seedMessages(stale.getId(), 50);
+        jdbcTemplate.update("UPDATE chat_sessions SET updated_at = now() - INTERVAL '400 days', " +
+                "favorite = (id = ?) WHERE id IN (?, ?)", staleFavorite.getId(), stale.getId(), staleFavorite.getId());
+        jdbcTemplate.update("UPDATE chat_sessions SET updated_at = now() - INTERVAL '1 day' WHERE id = ?", older.getId());
+
+        retentionProperties.setEnabled(true);
+        retentionProperties.setMaxAge(Duration.ofDays(365));
+        retentionProperties.setMaxSessionsPerUser(1);
+        retentionProperties.setThrottle(Duration.ZERO);
+        try {
+            retentionJob.purge();
+        } finally {
+            retentionProperties.setEnabled(false);
+            retentionProperties.setMaxAge(null);
+            retentionProperties.setMaxSessionsPerUser(0);
+        }
+
+        assertFalse(sessionExists(stale.getId()));
+        assertFalse(sessionExists(older.getId()));
+        assertTrue(sessionExists(staleFavorite.getId()));
+        assertTrue(sessionExists(newest.getId()));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM chat_messages WHERE session_id = ?", Integer.class, stale.getId()));
+    }
+
+    @Test
+    void getMessagesByCursor_DeepSliceShouldCostTheSameAsFirstSlice() {
+        int pageSize = 20;
+        int deepPage = 10_000;
+        SessionResponse session = chatService.createSession(new CreateSessionRequest(userId, "Paging benchmark"));
+        sessionIds.add(session.getId());
+        seedMessages(session.getId(), pageSize * (deepPage + 1));
+
+        // Cursor that points at the last row of page 9,999, i.e. the start of page 10,000
+        MessageCursor deepCursor = new MessageCursor((long) pageSize * deepPage, null);
+
+        long firstSliceNanos = medianNanos(() ->
+                chatService.getMessagesByCursor(session.getId(), userId, null, null, pageSize, false));
+        long deepSliceNanos = medianNanos(() ->
+                chatService.getMessagesByCursor(session.getId(), userId, deepCursor.encode(), null, pageSize, false));
+
+        CursorSliceResponse<MessageResponse> deepSlice =
+                chatService.getMessagesByCursor(session.getId(), userId, deepCursor.encode(), null, pageSize, false);
+        log.info("Cursor paging median latency: page 1 = {} us, page {} = {} us",
+                firstSliceNanos / 1_000, deepPage, deepSliceNanos / 1_000);
+
+        assertEquals(pageSize, deepSlice.getSize());
+        assertEquals("message " + (pageSize * deepPage + 1), deepSlice.getContent().get(0).getContent());
+        assertTrue(deepSliceNanos < firstSliceNanos * 3 + 5_000_000,
+                "deep slice should not scale with its position in the conversation");
+    }
+
+    @Test
+    void getMessages_ProjectionShouldAllocateLessThanEntityLoading() {
+        int messages = 2_000;
+        SessionResponse session = chatService.createSession(new CreateSessionRequest(userId, "Allocation benchmark"));
+        sessionIds.add(session.getId());
+        // Retrieval contexts are typically tens of KB per assistant message
+        for (int batch = 0; batch < messages / 100; batch++) {
+            List<AddMessageRequest> requests = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                requests.add(new AddMessageRequest("assistant", "answer " + i,
+                        batch + "/" + i + " " + "retrieved passage ".repeat(2_000)));
+            }
+            chatService.addMessages(session.getId(), userId, requests);
+        }
+
+        // Listing through managed entities (with dirty-checking snapshots) mapped into responses
+        Runnable entities = () -> {
+            EntityManager entityManager = entityManagerFactory.createEntityManager();
+            try {
+                entityManager.createQuery("select m from ChatMessage m where m.session.id = :sessionId " +
+                                "order by m.createdAt asc", ChatMessage.class)
+                        .setParameter("sessionId", session.getId())
+                        .getResultStream()
+                        .map(message -> MessageResponse.fromEntity(message, null))
+                        .toList();
+            } finally {
+                entityManager.close();
+            }
+        };
+        Runnable projection = () -> chatService.getMessages(session.getId(), userId, false);
+        Runnable projectionWithContext = () -> chatService.getMessages(session.getId(), userId, true);
+
+        long entityBytes = medianAllocatedBytes(entities);
+        long projectionBytes = medianAllocatedBytes(projection);
+        long projectionWithContextBytes = medianAllocatedBytes(projectionWithContext);
+        log.info("Allocated per listing of {} messages: entities = {} KB, projection = {} KB, " +
+                        "projection with context previews = {} KB",
+                messages, entityBytes / 1024, projectionBytes / 1024, projectionWithContextBytes / 1024);
+
+        List<MessageResponse> previews = chatService.getMessages(session.getId(), userId, true);
+        assertEquals(messages, previews.size());
+        assertTrue(previews.stream().allMatch(m -> m.isContextTruncated()
+                && m.getContext().length() == MessageResponse.CONTEXT_PREVIEW_LENGTH));
+        assertTrue(projectionBytes < entityBytes, "projection should allocate less than entity loading");
+    }
+
+    @Test
+    void contextStorage_DeduplicatedBlobsComparedToInlineText() {
+        // Agents resend the same retrieved documents: 1,000 messages drawing on 20 distinct ~36 KB contexts
+        int messages = 1_000;
+        int distinct = 20;
+        List<String> documents = new ArrayList<>();
+        for (int i = 0; i < distinct; i++) {
+            documents.add(userId + " document " + i + " " + "retrieved passage ".repeat(2_000));
+        }
+        SessionResponse session = chatService.createSession(new CreateSessionRequest(userId, "Context storage"));
+        sessionIds.add(session.getId());
+        String inlineTable = "context_inline_" + UUID.randomUUID().toString().replace("-", "");
+        jdbcTemplate.execute("CREATE TABLE " + inlineTable + " (id BIGSERIAL PRIMARY KEY, context TEXT)");
+        try {
+            long inlineStart = System.nanoTime();
+            for (int batch = 0; batch < messages / 100; batch++) {
+                List<Object[]> rows = new ArrayList<>();
+                for (int i = 0; i < 100; i++) {
+                    rows.add(new Object[]{documents.get((batch * 100 + i) % distinct)});
+                }
+                jdbcTemplate.batchUpdate("INSERT INTO " + inlineTable + " (context) VALUES (?)", rows);
+            }
+            long inlineWriteMs = Duration.ofNanos(System.nanoTime() - inlineStart).toMillis();
+
+            long dedupStart = System.nanoTime();
+            for (int batch = 0; batch < messages / 100; batch++) {
+                List<AddMessageRequest> requests = new ArrayList<>();
+                for (int i = 0; i < 100; i++) {
+                    requests.add(new AddMessageRequest("assistant", "answer " + i,
+                            documents.get((batch * 100 + i) % distinct)));
+                }
+                chatService.addMessages(session.getId(), userId, requests);
+            }
+            long dedupWriteMs = Duration.ofNanos(System.nanoTime() - dedupStart).toMillis();
+
+            // pg_column_size reports the stored (TOAST-compressed) size, so inline already benefits from pglz
+            long inlineBytes = jdbcTemplate.queryForObject(
+                    "SELECT sum(pg_column_size(context)) FROM " + inlineTable, Long.class);
+            long dedupBytes = jdbcTemplate.queryForObject("SELECT sum(pg_column_size(c.body)) " +
+                    "FROM chat_message_contexts c WHERE c.id IN " +
+                    "(SELECT context_id FROM chat_messages WHERE session_id = ?)", Long.class, session.getId());
+            int blobs = jdbcTemplate.queryForObject("SELECT count(DISTINCT context_id) FROM chat_messages " +
+                    "WHERE session_id = ?", Integer.class, session.getId());
+
+            List<Long> messageIds = jdbcTemplate.queryForList("SELECT id FROM chat_messages WHERE session_id = ? " +
+                    "ORDER BY id LIMIT 100", Long.class, session.getId());
+            long inlineReadNanos = medianNanos(() -> messageIds.forEach(id -> jdbcTemplate.queryForObject(
+                    "SELECT context FROM " + inlineTable + " WHERE id = ?", String.class, id - messageIds.get(0) + 1)));
+            long dedupReadNanos = medianNanos(() -> messageIds.forEach(id -> chatService.getMessageContext(id, userId)));
+
+            log.info("{} contexts ({} distinct): inline = {} KB stored, {} ms to write, {} ms per 100 reads; " +
+                            "deduplicated = {} KB stored, {} ms to write, {} ms per 100 reads",
+                    messages, distinct, inlineBytes / 1024, inlineWriteMs, Duration.ofNanos(inlineReadNanos).toMillis(),
+                    dedupBytes / 1024, dedupWriteMs, Duration.ofNanos(dedupReadNanos).toMillis());
+
+            assertEquals(distinct, blobs);
+            assertEquals(documents.get(0), chatService.getMessageContext(messageIds.get(0), userId));
+            assertTrue(dedupBytes < inlineBytes, "deduplicated contexts should take less space than inline text");
+        } finally {
+            jdbcTemplate.execute("DROP TABLE " + inlineTable);
+        }
+    }
+
+    @Test
+    void addMessage_WriteBehindThroughputComparedToDirectCommits() throws Exception {
+        int clients = 32;
+        int messagesPerClient = 100;
+        SessionResponse session = chatService.createSession(new CreateSessionRequest(userId, "Write-behind load"));
+        sessionIds.add(session.getId());
+
+        double direct = messagesPerSecond(clients, messagesPerClient, i ->
+                chatService.addMessage(session.getId(), userId, new AddMessageRequest("user", "direct " + i, null)));
+        double buffered = messagesPerSecond(clients, messagesPerClient, i ->
+                chatService.submitMessage(session.getId(), userId,
+                        new AddMessageRequest("user", "buffered " + i, null), AckMode.DURABLE));
+        log.info("addMessage throughput with {} clients: direct = {} msg/s, write-behind (durable) = {} msg/s",
+                clients, Math.round(direct), Math.round(buffered));
+
+        assertEquals(2 * clients * messagesPerClient, chatService.getSession(session.getId(), userId).getMessageCount());
+    }
+
+    @Test
+    void addMessage_ConcurrentRetriesWithOneRequestKeyShouldWriteOneMessage() throws Exception {
+        int retries = Math.min(8, poolSize);
+        SessionResponse session = chatService.createSession(new CreateSessionRequest(userId, "Retried adds"));
+        sessionIds.add(session.getId());
+        AddMessageRequest request = new AddMessageRequest("assistant", "Exactly once", "Shared context");
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(retries);
+        Set<Long> messageIds = new HashSet<>();
+        try {
+            List<Future<MessageResponse>> attempts = new ArrayList<>();
+            for (int i = 0; i < retries; i++) {
+                attempts.add(executor.submit(() -> {
+                    start.await();
+                    return chatService.addMessage(session.getId(), userId, request, "retry-key");
+                }));
+            }
+            start.countDown();
+            for (Future<MessageResponse> attempt : attempts) {
+                MessageResponse message = attempt.get();
+                assertEquals("Shared context", message.getContext());
+                messageIds.add(message.getId());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, messageIds.size());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM chat_messages WHERE session_id = ?",
+                Long.class, session.getId()));
+        assertEquals(1, chatService.getSession(session.getId(), userId).getMessageCount());
+
+        // A later retry is answered from memory
+        statistics.clear();
+        MessageResponse answered = chatService.findAnsweredMessage(session.getId(), userId, "retry-key");
+        assertEquals(messageIds.iterator().next(), answered.getId());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void addMessage_ConcurrentAppendsShouldGetGapFreeSeqsInCommitOrder() throws Exception {
+        int clients = Math.min(16, poolSize);
+        int roundsPerClient = 40;
+        SessionResponse session = chatService.createSession(new CreateSessionRequest(userId, "Concurrent appends"));
+        sessionIds.add(session.getId());
+
+        // Every client mixes single adds, batches and write-behind submits into the same session
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try {
+            List<Future<?>> runs = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                String client = "c" + c;
+                runs.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < roundsPerClient; i++) {
+                        switch (i % 3) {
+                            case 0 -> chatService.addMessage(session.getId(), userId,
+                                    new AddMessageRequest("user", client + " " + i, null));
+                            case 1 -> chatService.addMessages(session.getId(), userId, List.of(
+                                    new AddMessageRequest("user", client + " " + i + "a", null),
+                                    new AddMessageRequest("assistant", client + " " + i + "b", null)));
+                            default -> chatService.submitMessage(session.getId(), userId,
+                                    new AddMessageRequest("user", client + " " + i, null), AckMode.DURABLE);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> run : runs) {
+                run.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Batch rounds (i % 3 == 1) add two messages
+        long expected = (long) clients * (roundsPerClient + (roundsPerClient + 1) / 3);
+        List<Long> seqs = jdbcTemplate.queryForList(
+                "SELECT seq FROM chat_messages WHERE session_id = ? ORDER BY seq", Long.class, session.getId());
+        assertEquals(expected, seqs.size());
+        for (int i = 0; i < seqs.size(); i++) {
+            assertEquals(i + 1, seqs.get(i), "seqs must be 1..n without gaps or duplicates");
+        }
+        assertEquals(expected, chatService.getSession(session.getId(), userId).getMessageCount());
+        assertEquals(expected, jdbcTemplate.queryForObject(
+                "SELECT last_message_seq FROM chat_sessions WHERE id = ?", Long.class, session.getId()));
+
+        // Cursor paging hands out every message exactly once, each client's messages in the order it sent them
+        List<MessageResponse> paged = new ArrayList<>();
+        String after = null;
+        do {
+            CursorSliceResponse<MessageResponse> slice =
+                    chatService.getMessagesByCursor(session.getId(), userId, after, null, 37, false);
+            paged.addAll(slice.getContent());
+            after = slice.getNextCursor();
+        } while (after != null);
+        assertEquals(seqs, paged.stream().map(MessageResponse::getSeq).toList());
+        for (int c = 0; c < clients; c++) {
+            String prefix = "c" + c + " ";
+            List<String> sent = paged.stream().map(MessageResponse::getContent)
+                    .filter(content -> content.startsWith(prefix)).toList();
+            List<String> ordered = new ArrayList<>(sent);
+            ordered.sort(Comparator.comparingInt(content -> Integer.parseInt(
+                    content.substring(prefix.length()).replaceAll("[ab]$", ""))));
+            assertEquals(ordered, sent);
+        }
+    }
+
+    @Test
+    void updateSession_StaleCopyShouldConflictButAppendsShouldNot() {
+        SessionResponse created = chatService.createSession(new CreateSessionRequest(userId, "Versioned"));
+        sessionIds.add(created.getId());
+        ChatSession copy = sessionRepository.findById(created.getId()).orElseThrow();
+
+        // Appends bump the counters, not the version, so the copy is still current for its own columns
+        addMessages(created.getId(), 3);
+        copy.setTitle("Renamed");
+        ChatSession renamed = sessionRepository.save(copy);
+        assertEquals(3, chatService.getSession(created.getId(), userId).getMessageCount());
+        assertEquals("Renamed", chatService.getSession(created.getId(), userId).getTitle());
+
+        // The copy still carries the version it was read with, the rename has moved past it
+        assertEquals(copy.getVersion() + 1, renamed.getVersion());
+        copy.setFavorite(true);
+        assertThrows(OptimisticLockingFailureException.class, () -> sessionRepository.save(copy));
+        assertFalse(chatService.getSession(created.getId(), userId).isFavorite());
+    }
+
+    @Test
+    void updateSession_CopyReadBeforeDeletionWasRequestedShouldNotReviveTheSession() {
+        SessionResponse created = chatService.createSession(new CreateSessionRequest(userId, "Doomed"));
+        sessionIds.add(created.getId());
+        ChatSession copy = sessionRepository.findById(created.getId()).orElseThrow();
+
+        transactionTemplate.executeWithoutResult(status -> sessionRepository.markPendingDeletion(List.of(created.getId())));
+        copy.setTitle("Renamed");
+
+        assertThrows(OptimisticLockingFailureException.class, () -> sessionRepository.save(copy));
+        assertEquals(Boolean.TRUE, jdbcTemplate.queryForObject(
+                "SELECT pending_deletion FROM chat_sessions WHERE id = ?", Boolean.class, created.getId()));
+    }
+
+    @Test
+    void getMessages_NotModifiedShouldCostOneSmallQueryAndNoMessageRead() {
+        SessionResponse session = chatService.createSession(new CreateSessionRequest(userId, "Polled"));
+        sessionIds.add(session.getId());
+        addMessages(session.getId(), 200);
+        String uri = "/api/v1/chat/sessions/" + session.getId() + "/messages";
+
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        chatController.getMessages(session.getId(), userId, false,
+                new ServletWebRequest(new MockHttpServletRequest("GET", uri), first));
+        String etag = first.getHeader("ETag");
+        assertNotNull(etag);
+
+        statistics.clear();
+        MockHttpServletRequest poll = new MockHttpServletRequest("GET", uri);
+        poll.addHeader("If-None-Match", etag);
+        MockHttpServletResponse notModified = new MockHttpServletResponse();
+        ResponseEntity<?> body = chatController.getMessages(session.getId(), userId, false,
+                new ServletWebRequest(poll, notModified));
+
+        assertNull(body);
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), notModified.getStatus());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+
+        // A new message changes the tag
+        addMessages(session.getId(), 1);
+        MockHttpServletResponse changed = new MockHttpServletResponse();
+        assertNotNull(chatController.getMessages(session.getId(), userId, false, new ServletWebRequest(poll, changed)));
+        assertEquals(HttpStatus.OK.value(), changed.getStatus());
+        assertNotEquals(etag, changed.getHeader("ETag"));
+    }
+
+    @Test
+    void readPath_PlatformVersusVirtualThreadsAtHighConcurrency() throws Exception {
+        // 200 mirrors Tomcat's default max worker threads; the virtual run is gated like DbConcurrencyLimitFilter
+        int platformThreads = 200;
+        int requestsPerClient = 5;
+        SessionResponse session = chatService.createSession(new CreateSessionRequest(userId, "Thread model load"));
+        sessionIds.add(session.getId());
+        seedMessages(session.getId(), 1_000);
+        Runnable read = () -> chatService.getMessagesByCursor(session.getId(), userId, null, null, 20, false);
+
+        for (int clients : new int[]{1_000, 10_000}) {
+            long[] platform = runClients(Executors.newFixedThreadPool(platformThreads), clients, requestsPerClient,
+                    null, read);
+            long[] virtual = runClients(Executors.newVirtualThreadPerTaskExecutor(), clients, requestsPerClient,
+                    new Semaphore(poolSize, true), read);
+            log.info("{} clients x {} reads: platform({} threads) = {} req/s, p99 {} ms; virtual = {} req/s, p99 {} ms",
+                    clients, requestsPerClient, platformThreads, platform[0], platform[1], virtual[0], virtual[1]);
+        }
+    }
+
+    // Returns {requests per second, p99 latency in ms}; latency includes time spent queued for a thread or permit
+    private static long[] runClients(ExecutorService executor, int clients, int requestsPerClient,
+                                     Semaphore permits, Runnable request) throws Exception {
+        long[] latencies = new long[clients * requestsPerClient];
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>(clients);
+            for (int c = 0; c < clients; c++) {
+                int client = c;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < requestsPerClient; i++) {
+                        long requestStart = System.nanoTime();
+                        if (permits != null) {
+                            permits.acquireUninterruptibly();
+                        }
+                        try {
+                            request.run();
+                        } finally {
+                            if (permits != null) {
+                                permits.release();
+                            }
+                        }
+                        latencies[client * requestsPerClient + i] = System.nanoTime() - requestStart;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Arrays.sort(latencies);
+            return new long[]{Math.round(latencies.length / seconds),
+                    latencies[(int) (latencies.length * 0.99)] / 1_000_000};
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static double messagesPerSecond(int clients, int messagesPerClient, Consumer<Integer> send) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < messagesPerClient; i++) {
+                        send.accept(i);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return clients * messagesPerClient / ((System.nanoTime() - start) / 1e9);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private boolean sessionExists(Long sessionId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM chat_sessions WHERE id = ?", Integer.class, sessionId) > 0;
+    }
+
+    private void seedMessages(Long sessionId, int count) {
+        jdbcTemplate.update("WITH claimed AS (UPDATE chat_sessions SET last_message_seq = last_message_seq + ? " +
+                        "WHERE id = ? RETURNING last_message_seq - ? AS base) " +
+                        "INSERT INTO chat_messages (id, session_id, seq, sender, content, created_at) " +
+                        "SELECT nextval('chat_messages_seq'), ?, claimed.base + g, 'user', 'message ' || g, " +
+                        "?::timestamp + g * INTERVAL '1 millisecond' " +
+                        "FROM claimed, generate_series(1, ?) g",
+                count, sessionId, count, sessionId, LocalDateTime.now().minusHours(1), count);
+        jdbcTemplate.execute("ANALYZE chat_messages");
+    }
+
+    // Bytes allocated by the calling thread; the listing runs synchronously on it
+    private static long medianAllocatedBytes(Runnable action) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        for (int i = 0; i < 5; i++) {
+            action.run();
+        }
+        long[] samples = new long[11];
+        for (int i = 0; i < samples.length; i++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            action.run();
+            samples[i] = threads.getThreadAllocatedBytes(threadId) - before;
+        }
+        Arrays.sort(samples);
+        return samples[samples.length / 2];
+    }
+
+    private static long medianNanos(Runnable action) {
+        for (int i = 0; i < 5; i++) {
+            action.run();
+        }
+        long[] samples = new long[25];
+        for (int i = 0; i < samples.length; i++) {
+            long start = System.nanoTime();
+            action.run();
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples[samples.length / 2];
+    }
+
+    private void addMessages(Long sessionId, int count) {
+        for (int i = 0; i < count; i++) {
+            chatService.addMessage(sessionId, userId, new AddMessageRequest("user", "message " + i, null));
+        }
+    }
+}
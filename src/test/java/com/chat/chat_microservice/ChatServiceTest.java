@@ -1,26 +1,60 @@
 package com.chat.chat_microservice;
 
+import com.chat.chat_microservice.cache.RecentMessagesCache;
+import com.chat.chat_microservice.cache.SessionListCache;
+import com.chat.chat_microservice.cache.SessionListCacheTier;
+import com.chat.chat_microservice.cache.SessionOwnershipCache;
 import com.chat.chat_microservice.dto.*;
 import com.chat.chat_microservice.entity.ChatMessage;
+import com.chat.chat_microservice.entity.ChatMessageContext;
 import com.chat.chat_microservice.entity.ChatSession;
+import com.chat.chat_microservice.entity.ChatSessionSummary;
+import com.chat.chat_microservice.event.MessagesAddedEvent;
+import com.chat.chat_microservice.event.SessionPurgeRequestedEvent;
+import com.chat.chat_microservice.event.SessionsChangedEvent;
+import com.chat.chat_microservice.exception.BadRequestException;
 import com.chat.chat_microservice.exception.ResourceNotFoundException;
 import com.chat.chat_microservice.repository.ChatMessageRepository;
 import com.chat.chat_microservice.repository.ChatSessionRepository;
+import com.chat.chat_microservice.repository.ChatSessionSummaryRepository;
+import com.chat.chat_microservice.repository.SessionOwner;
+import com.chat.chat_microservice.repository.SessionVersion;
 import com.chat.chat_microservice.service.ChatService;
+import com.chat.chat_microservice.service.MessageContextStore;
+import com.chat.chat_microservice.service.MessageRequestKeyStore;
+import com.chat.chat_microservice.service.MessageWriteBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -32,6 +66,36 @@ class ChatServiceTest {
     @Mock
     private ChatMessageRepository messageRepository;
 
+    @Mock
+    private ChatSessionSummaryRepository summaryRepository;
+
+    @Mock
+    private MessageContextStore contextStore;
+
+    @Mock
+    private MessageWriteBuffer messageWriteBuffer;
+
+    @Mock
+    private MessageRequestKeyStore requestKeys;
+
+    @Spy
+    private SessionOwnershipCache ownershipCache =
+            new SessionOwnershipCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+
+    @Spy
+    private SessionListCache sessionListCache = new SessionListCache(100, Duration.ofMinutes(1),
+            new StaticListableBeanFactory().getBeanProvider(SessionListCacheTier.class), new SimpleMeterRegistry());
+
+    @Spy
+    private RecentMessagesCache recentMessages =
+            new RecentMessagesCache(100, 10, Duration.ofMinutes(1), new SimpleMeterRegistry());
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @InjectMocks
     private ChatService chatService;
 
@@ -53,6 +117,7 @@ class ChatServiceTest {
 
         testMessage = new ChatMessage();
         testMessage.setId(1L);
+        testMessage.setSeq(1L);
         testMessage.setSession(testSession);
         testMessage.setSender("user");
         testMessage.setContent("Hello");
@@ -73,15 +138,19 @@ class ChatServiceTest {
         assertEquals(TEST_SESSION_ID, response.getId());
         assertEquals(TEST_USER_ID, response.getUserId());
         verify(sessionRepository, times(1)).save(any(ChatSession.class));
+        verify(eventPublisher).publishEvent(new SessionsChangedEvent(TEST_USER_ID));
     }
 
     @Test
     void addMessage_WhenSessionExists_ShouldReturnMessageResponse() {
         // Arrange
         AddMessageRequest request = new AddMessageRequest("user", "Hello", null);
-        when(sessionRepository.findByIdAndUserId(TEST_SESSION_ID, TEST_USER_ID))
-                .thenReturn(Optional.of(testSession));
-        when(messageRepository.save(any(ChatMessage.class))).thenReturn(testMessage);
+        when(sessionRepository.findOwnerById(TEST_SESSION_ID))
+                .thenReturn(Optional.of(owner()));
+        when(sessionRepository.getReferenceById(TEST_SESSION_ID)).thenReturn(testSession);
+        when(sessionRepository.allocateMessageSeqs(eq(TEST_SESSION_ID), eq(1), any(LocalDateTime.class)))
+                .thenReturn(Optional.of(1L));
+        when(messageRepository.saveAndFlush(any(ChatMessage.class))).thenReturn(testMessage);
 
         // Act
         MessageResponse response = chatService.addMessage(TEST_SESSION_ID, TEST_USER_ID, request);
@@ -90,14 +159,16 @@ class ChatServiceTest {
         assertNotNull(response);
         assertEquals("user", response.getSender());
         assertEquals("Hello", response.getContent());
-        verify(messageRepository, times(1)).save(any(ChatMessage.class));
+        verify(sessionRepository, times(1)).allocateMessageSeqs(eq(TEST_SESSION_ID), eq(1), any(LocalDateTime.class));
+        verify(messageRepository).saveAndFlush(argThat(message -> message.getSeq() == 1L));
+        verify(eventPublisher).publishEvent(new MessagesAddedEvent(TEST_SESSION_ID, List.of(response)));
     }
 
     @Test
     void addMessage_WhenSessionNotFound_ShouldThrowException() {
         // Arrange
         AddMessageRequest request = new AddMessageRequest("user", "Hello", null);
-        when(sessionRepository.findByIdAndUserId(TEST_SESSION_ID, TEST_USER_ID))
+        when(sessionRepository.findOwnerById(TEST_SESSION_ID))
                 .thenReturn(Optional.empty());
 
         // Act & Assert
@@ -105,22 +176,484 @@ class ChatServiceTest {
                 chatService.addMessage(TEST_SESSION_ID, TEST_USER_ID, request));
     }
 
+    @Test
+    void addMessage_WhenOwnershipCached_ShouldNotQuerySession() {
+        // Arrange
+        AddMessageRequest request = new AddMessageRequest("user", "Hello", null);
+        ownershipCache.put(TEST_SESSION_ID, owner());
+        when(sessionRepository.getReferenceById(TEST_SESSION_ID)).thenReturn(testSession);
+        when(sessionRepository.allocateMessageSeqs(eq(TEST_SESSION_ID), eq(1), any(LocalDateTime.class)))
+                .thenReturn(Optional.of(1L));
+        when(messageRepository.saveAndFlush(any(ChatMessage.class))).thenReturn(testMessage);
+
+        // Act
+        chatService.addMessage(TEST_SESSION_ID, TEST_USER_ID, request);
+
+        // Assert
+        verify(sessionRepository, never()).findOwnerById(any());
+        verify(sessionRepository, never()).findByIdAndUserId(any(), any());
+    }
+
+    @Test
+    void addMessage_WithNewRequestKey_ShouldClaimItAndBindTheWrittenMessage() {
+        // Arrange
+        AddMessageRequest request = new AddMessageRequest("user", "Hello", null);
+        ownershipCache.put(TEST_SESSION_ID, owner());
+        when(requestKeys.claim(TEST_SESSION_ID, "retry-1")).thenReturn(null);
+        when(sessionRepository.getReferenceById(TEST_SESSION_ID)).thenReturn(testSession);
+        when(sessionRepository.allocateMessageSeqs(eq(TEST_SESSION_ID), eq(1), any(LocalDateTime.class)))
+                .thenReturn(Optional.of(1L));
+        when(messageRepository.saveAndFlush(any(ChatMessage.class))).thenReturn(testMessage);
+
+        // Act
+        MessageResponse response = chatService.addMessage(TEST_SESSION_ID, TEST_USER_ID, request, "retry-1");
+
+        // Assert
+        verify(requestKeys).claim(TEST_SESSION_ID, "retry-1");
+        verify(requestKeys).bind(TEST_SESSION_ID, "retry-1", response);
+        verify(messageRepository, times(1)).saveAndFlush(any(ChatMessage.class));
+    }
+
+    @Test
+    void addMessage_WithRequestKeyOfCommittedAttempt_ShouldReturnThatMessageWithoutWriting() {
+        // Arrange
+        AddMessageRequest request = new AddMessageRequest("user", "Hello", null);
+        ownershipCache.put(TEST_SESSION_ID, owner());
+        when(requestKeys.claim(TEST_SESSION_ID, "retry-1")).thenReturn(1L);
+        when(messageRepository.findResponseById(eq(TEST_SESSION_ID), any(LocalDateTime.class), eq(1L)))
+                .thenReturn(Optional.of(listed(testMessage)));
+
+        // Act
+        MessageResponse response = chatService.addMessage(TEST_SESSION_ID, TEST_USER_ID, request, "retry-1");
+
+        // Assert
+        assertEquals(1L, response.getId());
+        verify(requestKeys).remember(TEST_SESSION_ID, "retry-1", response);
+        verify(messageRepository, never()).saveAndFlush(any());
+        verify(sessionRepository, never()).allocateMessageSeqs(any(), anyInt(), any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void findAnsweredMessage_WhenOwnershipCached_ShouldNotTouchTheDatabase() {
+        // Arrange
+        MessageResponse answered = listed(testMessage);
+        ownershipCache.put(TEST_SESSION_ID, owner());
+        when(requestKeys.findAnswered(TEST_SESSION_ID, "retry-1")).thenReturn(answered);
+
+        // Act
+        MessageResponse response = chatService.findAnsweredMessage(TEST_SESSION_ID, TEST_USER_ID, "retry-1");
+
+        // Assert
+        assertSame(answered, response);
+        verifyNoInteractions(sessionRepository, messageRepository);
+    }
+
+    @Test
+    void findAnsweredMessage_WithOversizedKey_ShouldThrowBadRequest() {
+        assertThrows(BadRequestException.class, () ->
+                chatService.findAnsweredMessage(TEST_SESSION_ID, TEST_USER_ID, "k".repeat(256)));
+        verifyNoInteractions(requestKeys);
+    }
+
+    @Test
+    void getMessages_WhenSessionOwnedByAnotherUser_ShouldThrowNotFound() {
+        // Arrange
+        ownershipCache.put(TEST_SESSION_ID, new SessionOwner("someone-else", LocalDateTime.now()));
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () ->
+                chatService.getMessages(TEST_SESSION_ID, TEST_USER_ID, true));
+        verify(messageRepository, never()).findBySessionIdSince(eq(TEST_SESSION_ID), any(LocalDateTime.class));
+    }
+
+    @Test
+    void submitMessage_WithAcceptedAck_ShouldNotWaitForCommit() {
+        // Arrange
+        AddMessageRequest request = new AddMessageRequest("user", "Hello", null);
+        when(sessionRepository.findOwnerById(TEST_SESSION_ID))
+                .thenReturn(Optional.of(owner()));
+        when(messageWriteBuffer.submit(TEST_SESSION_ID, TEST_USER_ID, request)).thenReturn(new CompletableFuture<>());
+
+        // Act
+        MessageResponse response = chatService.submitMessage(TEST_SESSION_ID, TEST_USER_ID, request, AckMode.ACCEPTED);
+
+        // Assert
+        assertNull(response);
+        verify(messageWriteBuffer, never()).awaitDurable(any());
+        verify(messageRepository, never()).saveAndFlush(any(ChatMessage.class));
+    }
+
+    @Test
+    void submitMessage_WhenSessionNotFound_ShouldNotQueue() {
+        // Arrange
+        AddMessageRequest request = new AddMessageRequest("user", "Hello", null);
+        when(sessionRepository.findOwnerById(TEST_SESSION_ID))
+                .thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () ->
+                chatService.submitMessage(TEST_SESSION_ID, TEST_USER_ID, request, AckMode.DURABLE));
+        verifyNoInteractions(messageWriteBuffer);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void addMessages_ShouldPersistBatchWithSingleOwnershipCheck() {
+        // Arrange
+        List<AddMessageRequest> requests = List.of(
+                new AddMessageRequest("user", "Question", null),
+                new AddMessageRequest("assistant", "Answer", "retrieved docs"));
+        when(sessionRepository.findOwnerById(TEST_SESSION_ID))
+                .thenReturn(Optional.of(owner()));
+        when(sessionRepository.getReferenceById(TEST_SESSION_ID)).thenReturn(testSession);
+        when(sessionRepository.allocateMessageSeqs(eq(TEST_SESSION_ID), eq(2), any(LocalDateTime.class)))
+                .thenReturn(Optional.of(7L));
+        when(messageRepository.saveAllAndFlush(anyList()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        List<MessageResponse> responses = chatService.addMessages(TEST_SESSION_ID, TEST_USER_ID, requests);
+
+        // Assert
+        assertEquals(2, responses.size());
+        assertEquals("Answer", responses.get(1).getContent());
+        assertEquals("retrieved docs", responses.get(1).getContext());
+        verify(contextStore, times(1)).store(argThat(texts -> texts.contains("retrieved docs")));
+        verify(sessionRepository, times(1)).findOwnerById(TEST_SESSION_ID);
+        verify(messageRepository, times(1)).saveAllAndFlush(anyList());
+        verify(messageRepository, never()).save(any(ChatMessage.class));
+        // The session's counter was at 5, so the batch takes seqs 6 and 7 in request order
+        assertEquals(List.of(6L, 7L), responses.stream().map(MessageResponse::getSeq).toList());
+    }
+
+    @Test
+    void addMessage_WithLargeContext_ShouldStoreItSeparatelyAndReturnAPreview() {
+        // Arrange
+        String context = "retrieved passage ".repeat(5_000);
+        ChatMessageContext stored = new ChatMessageContext();
+        stored.setId(9L);
+        when(contextStore.store(List.of(context))).thenReturn(Map.of(context, stored));
+        AddMessageRequest request = new AddMessageRequest("assistant", "Answer", context);
+        when(sessionRepository.findOwnerById(TEST_SESSION_ID))
+                .thenReturn(Optional.of(owner()));
+        when(sessionRepository.getReferenceById(TEST_SESSION_ID)).thenReturn(testSession);
+        when(sessionRepository.allocateMessageSeqs(eq(TEST_SESSION_ID), eq(1), any(LocalDateTime.class)))
+                .thenReturn(Optional.of(1L));
+        when(messageRepository.saveAndFlush(any(ChatMessage.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        MessageResponse response = chatService.addMessage(TEST_SESSION_ID, TEST_USER_ID, request);
+
+        // Assert
+        verify(messageRepository).saveAndFlush(argThat(message -> message.getContext() == stored));
+        assertEquals(MessageResponse.CONTEXT_PREVIEW_LENGTH, response.getContext().length());
+        assertTrue(response.isHasContext());
+        assertTrue(response.isContextTruncated());
+    }
+
     @Test
     void getMessages_WhenSessionExists_ShouldReturnMessages() {
         // Arrange
-        List<ChatMessage> messages = List.of(testMessage);
-        when(sessionRepository.findByIdAndUserId(TEST_SESSION_ID, TEST_USER_ID))
-                .thenReturn(Optional.of(testSession));
-        when(messageRepository.findBySessionIdOrderByCreatedAtAsc(TEST_SESSION_ID))
+        List<MessageResponse> messages = List.of(listed(testMessage));
+        when(sessionRepository.findOwnerById(TEST_SESSION_ID))
+                .thenReturn(Optional.of(owner()));
+        when(messageRepository.findBySessionIdSince(TEST_SESSION_ID, testSession.getCreatedAt().minusDays(1)))
                 .thenReturn(messages);
 
         // Act
-        List<MessageResponse> responses = chatService.getMessages(TEST_SESSION_ID, TEST_USER_ID);
+        List<MessageResponse> responses = chatService.getMessages(TEST_SESSION_ID, TEST_USER_ID, false);
 
         // Assert
         assertNotNull(responses);
         assertEquals(1, responses.size());
         assertEquals("Hello", responses.get(0).getContent());
+        verify(messageRepository, never()).findContextPreviews(any(), any(), any());
+    }
+
+    @Test
+    void getMessages_WithContext_ShouldFetchPreviewsOfThePageInOneQuery() {
+        // Arrange
+        ChatMessageRepository.ContextPreview preview = mock(ChatMessageRepository.ContextPreview.class);
+        when(preview.getId()).thenReturn(2L);
+        when(preview.getPreview()).thenReturn("retrieved docs");
+        when(preview.getLength()).thenReturn(50_000);
+        MessageResponse withContext = new MessageResponse(2L, 2L, "assistant", "Hi", LocalDateTime.now(), true);
+        when(sessionRepository.findOwnerById(TEST_SESSION_ID))
+                .thenReturn(Optional.of(owner()));
+        when(messageRepository.findBySessionIdSince(eq(TEST_SESSION_ID), any(LocalDateTime.class)))
+                .thenReturn(List.of(listed(testMessage), withContext));
+        when(messageRepository.findContextPreviews(eq(TEST_SESSION_ID), any(LocalDateTime.class), eq(List.of(2L))))
+                .thenReturn(List.of(preview));
+
+        // Act
+        List<MessageResponse> responses = chatService.getMessages(TEST_SESSION_ID, TEST_USER_ID, true);
+
+        // Assert: only messages that have a context are looked up
+        assertNull(responses.get(0).getContext());
+        assertFalse(responses.get(0).isHasContext());
+        assertEquals("retrieved docs", responses.get(1).getContext());
+        assertTrue(responses.get(1).isContextTruncated());
+    }
+
+    @Test
+    void getSessionVersion_ShouldReadCountersWithoutTouchingMessages() {
+        // Arrange
+        SessionVersion version = new SessionVersion(TEST_USER_ID, 3, LocalDateTime.now());
+        when(sessionRepository.findVersionById(TEST_SESSION_ID)).thenReturn(Optional.of(version));
+
+        // Act
+        SessionVersion result = chatService.getSessionVersion(TEST_SESSION_ID, TEST_USER_ID);
+
+        // Assert
+        assertEquals(version, result);
+        verifyNoInteractions(messageRepository);
+    }
+
+    @Test
+    void getSessionVersion_WhenSessionOwnedByAnotherUser_ShouldThrowNotFound() {
+        // Arrange
+        when(sessionRepository.findVersionById(TEST_SESSION_ID))
+                .thenReturn(Optional.of(new SessionVersion("someone-else", 0, null)));
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () ->
+                chatService.getSessionVersion(TEST_SESSION_ID, TEST_USER_ID));
+    }
+
+    @Test
+    void getMessageContext_ShouldCheckOwnershipOfTheMessagesSession() {
+        // Arrange
+        when(messageRepository.findSessionIdById(7L)).thenReturn(Optional.of(TEST_SESSION_ID));
+        when(sessionRepository.findOwnerById(TEST_SESSION_ID))
+                .thenReturn(Optional.of(owner()));
+        ChatMessageContext stored = new ChatMessageContext();
+        stored.setBody("retrieved docs");
+        when(messageRepository.findContextById(7L, TEST_SESSION_ID)).thenReturn(Optional.of(stored));
+
+        // Act
+        String context = chatService.getMessageContext(7L, TEST_USER_ID);
+
+        // Assert
+        assertEquals("retrieved docs", context);
+        assertThrows(ResourceNotFoundException.class, () -> chatService.getMessageContext(7L, "someone-else"));
+    }
+
+    @Test
+    void streamMessages_ShouldHandOutEveryMessageInOrder() {
+        // Arrange
+        MessageResponse second = new MessageResponse(2L, 2L, "assistant", "Hi there", LocalDateTime.now(),
+                "retrieved docs", 14);
+        when(sessionRepository.findOwnerById(TEST_SESSION_ID))
+                .thenReturn(Optional.of(owner()));
+        when(messageRepository.streamBySessionId(eq(TEST_SESSION_ID), any(LocalDateTime.class)))
+                .thenReturn(Stream.of(listed(testMessage), second));
+        List<MessageResponse> received = new ArrayList<>();
+
+        // Act
+        chatService.streamMessages(TEST_SESSION_ID, TEST_USER_ID, received::add);
+
+        // Assert
+        assertEquals(2, received.size());
+        assertEquals("Hi there", received.get(1).getContent());
+        assertTrue(received.get(1).isHasContext());
+        assertFalse(received.get(1).isContextTruncated());
+        verify(messageRepository, never()).findBySessionIdSince(eq(TEST_SESSION_ID), any(LocalDateTime.class));
+    }
+
+    @Test
+    void streamMessages_WhenSessionNotFound_ShouldNotOpenStream() {
+        // Arrange
+        when(sessionRepository.findOwnerById(TEST_SESSION_ID))
+                .thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () ->
+                chatService.streamMessages(TEST_SESSION_ID, TEST_USER_ID, message -> { }));
+        verify(messageRepository, never()).streamBySessionId(any(), any());
+    }
+
+    @Test
+    void getMessagesByCursor_FirstSlice_ShouldReturnCursorOfLastMessage() {
+        // Arrange
+        when(sessionRepository.findOwnerById(TEST_SESSION_ID))
+                .thenReturn(Optional.of(owner()));
+        when(messageRepository.findFirstSlice(eq(TEST_SESSION_ID), any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(List.of(listed(testMessage)), PageRequest.of(0, 1), true));
+
+        // Act
+        CursorSliceResponse<MessageResponse> response =
+                chatService.getMessagesByCursor(TEST_SESSION_ID, TEST_USER_ID, null, null, 1, false);
+
+        // Assert
+        assertTrue(response.isHasNext());
+        assertEquals(MessageCursor.of(testMessage), MessageCursor.decode(response.getNextCursor()));
+        verify(messageRepository, never()).countBySessionId(any());
+    }
+
+    @Test
+    void getMessagesByCursor_Before_ShouldReturnChronologicalOrder() {
+        // Arrange
+        ChatMessage older = new ChatMessage();
+        older.setId(0L);
+        older.setSeq(0L);
+        older.setSender("assistant");
+        older.setContent("Earlier");
+        older.setCreatedAt(testMessage.getCreatedAt().minusSeconds(1));
+        MessageCursor cursor = new MessageCursor(2L, null);
+        when(sessionRepository.findOwnerById(TEST_SESSION_ID))
+                .thenReturn(Optional.of(owner()));
+        when(messageRepository.findSliceBefore(eq(TEST_SESSION_ID), any(LocalDateTime.class), eq(2L),
+                any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(List.of(listed(testMessage), listed(older)), PageRequest.of(0, 2), false));
+
+        // Act
+        CursorSliceResponse<MessageResponse> response =
+                chatService.getMessagesByCursor(TEST_SESSION_ID, TEST_USER_ID, null, cursor.encode(), 2, false);
+
+        // Assert
+        assertEquals("Earlier", response.getContent().get(0).getContent());
+        assertEquals("Hello", response.getContent().get(1).getContent());
+        assertFalse(response.isHasNext());
+        assertNull(response.getNextCursor());
+    }
+
+    @Test
+    void getMessagesByCursor_WithLegacyCursor_ShouldContinueFromThatMessagesSeq() {
+        // Arrange: tokens issued before messages had a seq
+        String legacy = legacyCursor(1L);
+        when(sessionRepository.findOwnerById(TEST_SESSION_ID))
+                .thenReturn(Optional.of(owner()));
+        when(messageRepository.findSeqById(1L, TEST_SESSION_ID)).thenReturn(Optional.of(5L));
+        when(messageRepository.findSliceAfter(eq(TEST_SESSION_ID), any(LocalDateTime.class), eq(5L),
+                any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(List.of(), PageRequest.of(0, 20), false));
+
+        // Act
+        CursorSliceResponse<MessageResponse> response =
+                chatService.getMessagesByCursor(TEST_SESSION_ID, TEST_USER_ID, legacy, null, 20, false);
+
+        // Assert
+        assertTrue(response.getContent().isEmpty());
+        assertThrows(BadRequestException.class, () ->
+                chatService.getMessagesByCursor(TEST_SESSION_ID, TEST_USER_ID, null, legacyCursor(2L), 20, false));
+    }
+
+    @Test
+    void getMessagesByCursor_WithInvalidCursor_ShouldThrowBadRequest() {
+        // Arrange
+        when(sessionRepository.findOwnerById(TEST_SESSION_ID))
+                .thenReturn(Optional.of(owner()));
+
+        // Act & Assert
+        assertThrows(BadRequestException.class, () ->
+                chatService.getMessagesByCursor(TEST_SESSION_ID, TEST_USER_ID, "not-a-cursor", null, 20, false));
+    }
+
+    @Test
+    void getContextWindow_WhenTailCached_ShouldNotQueryMessagesAgain() {
+        // Arrange
+        when(sessionRepository.findOwnerById(TEST_SESSION_ID))
+                .thenReturn(Optional.of(owner()));
+        when(messageRepository.findLatestSlice(eq(TEST_SESSION_ID), any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(List.of(message(2, 40), message(1, 40)), PageRequest.of(0, 10), false));
+
+        // Act
+        chatService.getContextWindow(TEST_SESSION_ID, TEST_USER_ID, 1_000, true);
+        ContextWindowResponse window = chatService.getContextWindow(TEST_SESSION_ID, TEST_USER_ID, 1_000, true);
+
+        // Assert
+        assertEquals(List.of(1L, 2L), window.getMessages().stream().map(MessageResponse::getId).toList());
+        assertEquals(28, window.getEstimatedTokens());
+        assertFalse(window.isTruncated());
+        verify(messageRepository, times(1)).findLatestSlice(any(), any(), any());
+        verify(summaryRepository, times(1)).findById(TEST_SESSION_ID);
+    }
+
+    @Test
+    void getContextWindow_WhenOverBudget_ShouldKeepNewestMessagesAndMakeRoomForSummary() {
+        // Arrange
+        ChatSessionSummary summary = new ChatSessionSummary();
+        summary.setSummary("x".repeat(16));
+        summary.setThroughMessageId(1L);
+        when(sessionRepository.findOwnerById(TEST_SESSION_ID))
+                .thenReturn(Optional.of(owner()));
+        when(messageRepository.findLatestSlice(eq(TEST_SESSION_ID), any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(List.of(message(4, 40), message(3, 40), message(2, 40)),
+                        PageRequest.of(0, 3), true));
+        when(summaryRepository.findById(TEST_SESSION_ID)).thenReturn(Optional.of(summary));
+
+        // Act: 14 tokens per message; two fit in 30, but only one beside the 4-token summary
+        ContextWindowResponse window = chatService.getContextWindow(TEST_SESSION_ID, TEST_USER_ID, 30, true);
+
+        // Assert
+        assertEquals(List.of(4L), window.getMessages().stream().map(MessageResponse::getId).toList());
+        assertEquals(18, window.getEstimatedTokens());
+        assertTrue(window.isTruncated());
+        assertEquals(summary.getSummary(), window.getSummary());
+        assertEquals(1L, window.getSummaryThroughMessageId());
+        verify(messageRepository, never()).findSliceBefore(any(), any(), anyLong(), any());
+    }
+
+    @Test
+    void getContextWindow_WhenBudgetReachesPastCachedTail_ShouldContinueWithOlderMessages() {
+        // Arrange
+        MessageResponse newest = message(2, 40);
+        when(sessionRepository.findOwnerById(TEST_SESSION_ID))
+                .thenReturn(Optional.of(owner()));
+        when(messageRepository.findLatestSlice(eq(TEST_SESSION_ID), any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(List.of(newest), PageRequest.of(0, 1), true));
+        when(messageRepository.findSliceBefore(eq(TEST_SESSION_ID), any(LocalDateTime.class), eq(2L),
+                any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(List.of(message(1, 40)), PageRequest.of(0, 100), false));
+
+        // Act
+        ContextWindowResponse window = chatService.getContextWindow(TEST_SESSION_ID, TEST_USER_ID, 1_000, true);
+
+        // Assert
+        assertEquals(List.of(1L, 2L), window.getMessages().stream().map(MessageResponse::getId).toList());
+        assertFalse(window.isTruncated());
+        assertNull(window.getSummary());
+    }
+
+    @Test
+    void getContextWindow_WithInvalidBudget_ShouldThrowBadRequest() {
+        assertThrows(BadRequestException.class, () ->
+                chatService.getContextWindow(TEST_SESSION_ID, TEST_USER_ID, 0, true));
+        verifyNoInteractions(sessionRepository, messageRepository);
+    }
+
+    @Test
+    void updateSummary_ShouldStoreSummaryAndDropCachedTail() {
+        // Arrange
+        when(sessionRepository.findOwnerById(TEST_SESSION_ID))
+                .thenReturn(Optional.of(owner()));
+        when(messageRepository.findCreatedAtById(1L, TEST_SESSION_ID))
+                .thenReturn(Optional.of(testMessage.getCreatedAt()));
+        when(summaryRepository.findById(TEST_SESSION_ID)).thenReturn(Optional.empty());
+
+        // Act
+        chatService.updateSummary(TEST_SESSION_ID, TEST_USER_ID, new UpdateSummaryRequest("So far", 1L));
+
+        // Assert
+        verify(summaryRepository).save(argThat(summary -> TEST_SESSION_ID.equals(summary.getSessionId()) &&
+                "So far".equals(summary.getSummary()) &&
+                testMessage.getCreatedAt().equals(summary.getThroughCreatedAt())));
+        verify(recentMessages).invalidate(TEST_SESSION_ID);
+    }
+
+    @Test
+    void updateSummary_WhenMessageNotInSession_ShouldThrowBadRequest() {
+        // Arrange
+        when(sessionRepository.findOwnerById(TEST_SESSION_ID))
+                .thenReturn(Optional.of(owner()));
+        when(messageRepository.findCreatedAtById(99L, TEST_SESSION_ID)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(BadRequestException.class, () ->
+                chatService.updateSummary(TEST_SESSION_ID, TEST_USER_ID, new UpdateSummaryRequest("So far", 99L)));
+        verify(summaryRepository, never()).save(any());
     }
 
     @Test
@@ -146,17 +679,59 @@ class ChatServiceTest {
                 .thenReturn(Optional.of(testSession));
 
         // Act
-        chatService.deleteSession(TEST_SESSION_ID, TEST_USER_ID);
+        boolean completed = chatService.deleteSession(TEST_SESSION_ID, TEST_USER_ID);
+
+        // Assert: set-based deletes, the messages collection is never loaded for the cascade
+        assertTrue(completed);
+        verify(messageRepository).deleteBySessionIdIn(List.of(TEST_SESSION_ID));
+        verify(sessionRepository).deleteAllByIdIn(List.of(TEST_SESSION_ID));
+        verify(sessionRepository, never()).delete(any(ChatSession.class));
+        verify(ownershipCache).invalidate(TEST_SESSION_ID);
+        assertNull(ownershipCache.getOwner(TEST_SESSION_ID));
+    }
+
+    @Test
+    void deleteSession_WhenSessionIsLarge_ShouldHideItAndPurgeInBackground() {
+        // Arrange
+        testSession.setMessageCount(20_000);
+        when(sessionRepository.findByIdAndUserId(TEST_SESSION_ID, TEST_USER_ID))
+                .thenReturn(Optional.of(testSession));
+
+        // Act
+        boolean completed = chatService.deleteSession(TEST_SESSION_ID, TEST_USER_ID);
 
         // Assert
-        verify(sessionRepository, times(1)).delete(testSession);
+        assertFalse(completed);
+        verify(sessionRepository).markPendingDeletion(List.of(TEST_SESSION_ID));
+        verify(eventPublisher).publishEvent(new SessionPurgeRequestedEvent(List.of(TEST_SESSION_ID)));
+        verifyNoInteractions(messageRepository);
     }
 
     @Test
-    void getSessions_ShouldReturnAllUserSessions() {
+    void deleteAllSessions_ShouldDeleteEverySessionOfTheUserInBulk() {
         // Arrange
-        List<ChatSession> sessions = List.of(testSession);
+        ChatSession other = new ChatSession();
+        other.setId(2L);
+        other.setUserId(TEST_USER_ID);
         when(sessionRepository.findByUserIdOrderByUpdatedAtDesc(TEST_USER_ID))
+                .thenReturn(List.of(testSession, other));
+
+        // Act
+        SessionDeletionResponse response = chatService.deleteAllSessions(TEST_USER_ID);
+
+        // Assert
+        assertEquals(2, response.getSessionCount());
+        assertFalse(response.isPending());
+        verify(messageRepository).deleteBySessionIdIn(List.of(TEST_SESSION_ID, 2L));
+        verify(sessionRepository).deleteAllByIdIn(List.of(TEST_SESSION_ID, 2L));
+        verify(eventPublisher).publishEvent(new SessionsChangedEvent(TEST_USER_ID));
+    }
+
+    @Test
+    void getSessions_ShouldReturnAllUserSessions() {
+        // Arrange
+        List<SessionResponse> sessions = List.of(SessionResponse.fromEntity(testSession));
+        when(sessionRepository.findResponsesByUserIdOrderByUpdatedAtDesc(TEST_USER_ID))
                 .thenReturn(sessions);
 
         // Act
@@ -168,12 +743,44 @@ class ChatServiceTest {
         assertEquals("Test Session", responses.get(0).getTitle());
     }
 
+    @Test
+    void getSessions_WhenCalledTwice_ShouldQueryRepositoryOnce() {
+        // Arrange
+        when(sessionRepository.findResponsesByUserIdOrderByUpdatedAtDesc(TEST_USER_ID))
+                .thenReturn(List.of(SessionResponse.fromEntity(testSession)));
+
+        // Act
+        chatService.getSessions(TEST_USER_ID);
+        List<SessionResponse> responses = chatService.getSessions(TEST_USER_ID);
+
+        // Assert: the miss ran read-only (so it can go to a replica), the hit opened no transaction
+        assertEquals(1, responses.size());
+        verify(sessionRepository, times(1)).findResponsesByUserIdOrderByUpdatedAtDesc(TEST_USER_ID);
+        verify(transactionManager, times(1)).getTransaction(argThat(TransactionDefinition::isReadOnly));
+    }
+
+    @Test
+    void getSessions_ShouldUseProjectionWithoutLoadingEntities() {
+        // Arrange
+        testSession.setMessageCount(42);
+        when(sessionRepository.findResponsesByUserIdOrderByUpdatedAtDesc(TEST_USER_ID))
+                .thenReturn(List.of(SessionResponse.fromEntity(testSession)));
+
+        // Act
+        List<SessionResponse> responses = chatService.getSessions(TEST_USER_ID);
+
+        // Assert
+        assertEquals(42, responses.get(0).getMessageCount());
+        verify(sessionRepository, never()).findByUserIdOrderByUpdatedAtDesc(any());
+        verifyNoInteractions(messageRepository);
+    }
+
     @Test
     void getFavoriteSessions_ShouldReturnOnlyFavorites() {
         // Arrange
         testSession.setFavorite(true);
-        List<ChatSession> sessions = List.of(testSession);
-        when(sessionRepository.findByUserIdAndFavoriteOrderByUpdatedAtDesc(TEST_USER_ID, true))
+        List<SessionResponse> sessions = List.of(SessionResponse.fromEntity(testSession));
+        when(sessionRepository.findFavoriteResponsesByUserIdOrderByUpdatedAtDesc(TEST_USER_ID))
                 .thenReturn(sessions);
 
         // Act
@@ -184,4 +791,24 @@ class ChatServiceTest {
         assertEquals(1, responses.size());
         assertTrue(responses.get(0).isFavorite());
     }
-}
\ No newline at end of file
+
+    private SessionOwner owner() {
+        return new SessionOwner(TEST_USER_ID, testSession.getCreatedAt());
+    }
+
+    private MessageResponse message(long id, int length) {
+        return new MessageResponse(id, id, "user", "x".repeat(length), testSession.getCreatedAt().plusSeconds(id),
+                false);
+    }
+
+    private String legacyCursor(long messageId) {
+        String raw = testMessage.getCreatedAt() + "|" + messageId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // What the listing projection returns for a message
+    private static MessageResponse listed(ChatMessage message) {
+        return new MessageResponse(message.getId(), message.getSeq(), message.getSender(), message.getContent(),
+                message.getCreatedAt(), message.getContext() != null);
+    }
+}
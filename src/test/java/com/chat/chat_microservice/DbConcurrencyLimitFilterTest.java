@@ -0,0 +1,70 @@
+package com.chat.chat_microservice;
+
+import com.chat.chat_microservice.exception.ServiceUnavailableException;
+import com.chat.chat_microservice.filter.DbConcurrencyLimitFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DbConcurrencyLimitFilterTest {
+
+    @Test
+    void doFilter_WhenAllPermitsInUse_ShouldRejectWithServiceUnavailable() throws Exception {
+        // Arrange
+        DbConcurrencyLimitFilter filter = new DbConcurrencyLimitFilter(true, 1, Duration.ofMillis(20), new SimpleMeterRegistry());
+        AtomicInteger served = new AtomicInteger();
+
+        // Act: the first request still holds the only permit when the second one arrives
+        filter.doFilter(chatRequest(), new MockHttpServletResponse(), (request, response) -> {
+            served.incrementAndGet();
+            assertThrows(ServiceUnavailableException.class, () ->
+                    filter.doFilter(chatRequest(), new MockHttpServletResponse(), new MockFilterChain()));
+        });
+
+        // Assert: the permit is released again once the first request completes
+        filter.doFilter(chatRequest(), new MockHttpServletResponse(), (request, response) -> served.incrementAndGet());
+        assertEquals(2, served.get());
+    }
+
+    @Test
+    void acquirePermit_ShouldShareThePermitsOfRequests() throws Exception {
+        // Arrange
+        DbConcurrencyLimitFilter filter = new DbConcurrencyLimitFilter(true, 1, Duration.ofMillis(20), new SimpleMeterRegistry());
+        AtomicInteger served = new AtomicInteger();
+
+        // Act: a streamed export holds the only permit after its request returned
+        filter.acquirePermit("export");
+        assertThrows(ServiceUnavailableException.class, () ->
+                filter.doFilter(chatRequest(), new MockHttpServletResponse(), new MockFilterChain()));
+        filter.releasePermit();
+        filter.doFilter(chatRequest(), new MockHttpServletResponse(), (request, response) -> served.incrementAndGet());
+
+        // Assert
+        assertEquals(1, served.get());
+    }
+
+    @Test
+    void doFilter_WhenDisabled_ShouldNotLimit() throws Exception {
+        // Arrange
+        DbConcurrencyLimitFilter filter = new DbConcurrencyLimitFilter(false, 1, Duration.ofMillis(20), new SimpleMeterRegistry());
+        AtomicInteger served = new AtomicInteger();
+
+        // Act
+        filter.doFilter(chatRequest(), new MockHttpServletResponse(), (request, response) ->
+                filter.doFilter(chatRequest(), new MockHttpServletResponse(), (inner, innerResponse) -> served.incrementAndGet()));
+
+        // Assert
+        assertEquals(1, served.get());
+    }
+
+    private static MockHttpServletRequest chatRequest() {
+        return new MockHttpServletRequest("GET", "/api/v1/chat/sessions");
+    }
+}
@@ -0,0 +1,118 @@
+package com.chat.chat_microservice;
+
+import com.chat.chat_microservice.dto.AddMessageRequest;
+import com.chat.chat_microservice.entity.ChatMessageContext;
+import com.chat.chat_microservice.entity.DeflateTextConverter;
+import com.chat.chat_microservice.service.MessageContextStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MessageContextStoreTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private MessageContextStore store;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        store = new MessageContextStore(jdbcTemplate, entityManager, meterRegistry);
+    }
+
+    @Test
+    void store_WhenTextAlreadyStored_ShouldOnlyAddReferences() {
+        // Arrange
+        String context = "retrieved docs";
+        ChatMessageContext reference = new ChatMessageContext();
+        when(jdbcTemplate.queryForList(startsWith("UPDATE chat_message_contexts"), eq(Long.class), any(), any()))
+                .thenReturn(List.of(5L));
+        when(entityManager.getReference(ChatMessageContext.class, 5L)).thenReturn(reference);
+
+        // Act
+        Map<String, ChatMessageContext> stored = store.store(Arrays.asList(context, null, context));
+
+        // Assert
+        assertSame(reference, stored.get(context));
+        verify(jdbcTemplate).queryForList(startsWith("UPDATE chat_message_contexts"), eq(Long.class), eq(2), any());
+        verify(jdbcTemplate, never()).queryForObject(anyString(), eq(Long.class), any(Object[].class));
+        assertEquals(2, meterRegistry.get("chat.contexts.stored").tag("outcome", "deduplicated").counter().count());
+        assertEquals(1.0, meterRegistry.get("chat.contexts.dedup.ratio").gauge().value());
+    }
+
+    @Test
+    void store_WhenTextIsNew_ShouldInsertCompressedBodyWithPreview() {
+        // Arrange
+        String context = "retrieved passage ".repeat(5_000);
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any(), any())).thenReturn(List.of());
+        when(jdbcTemplate.queryForObject(startsWith("INSERT INTO chat_message_contexts"), eq(Long.class),
+                any(), any(), any(), any(), any())).thenReturn(9L);
+        when(entityManager.getReference(ChatMessageContext.class, 9L)).thenReturn(new ChatMessageContext());
+
+        // Act
+        store.store(List.of(context, context, context));
+
+        // Assert
+        ArgumentCaptor<Object> body = ArgumentCaptor.forClass(Object.class);
+        ArgumentCaptor<Object> preview = ArgumentCaptor.forClass(Object.class);
+        verify(jdbcTemplate).queryForObject(startsWith("INSERT INTO chat_message_contexts"), eq(Long.class),
+                any(), body.capture(), preview.capture(), eq(context.length()), eq(3));
+        byte[] compressed = (byte[]) body.getValue();
+        assertEquals(context, DeflateTextConverter.decompress(compressed));
+        assertTrue(compressed.length < context.length() / 10);
+        assertEquals(1_000, ((String) preview.getValue()).length());
+        assertEquals(1, meterRegistry.get("chat.contexts.stored").tag("outcome", "new").counter().count());
+        assertEquals(2, meterRegistry.get("chat.contexts.stored").tag("outcome", "deduplicated").counter().count());
+        assertEquals(3.0 * context.length() - compressed.length,
+                meterRegistry.get("chat.contexts.bytes.saved").gauge().value());
+    }
+
+    @Test
+    void store_WithOnlyNulls_ShouldNotTouchTheDatabase() {
+        // Act
+        Map<String, ChatMessageContext> stored = store.store(Arrays.asList(null, null));
+
+        // Assert
+        assertTrue(stored.isEmpty());
+        verifyNoInteractions(jdbcTemplate, entityManager);
+    }
+
+    @Test
+    void store_ForMessageWithoutContext_ShouldResolveItsNullKeyToNoContext() {
+        // Arrange
+        AddMessageRequest request = new AddMessageRequest();
+        request.setSender("user");
+        request.setContent("hello");
+
+        // Act: what addMessage does with a request that carries no context
+        ChatMessageContext context = store.store(Collections.singletonList(request.getContext()))
+                .get(request.getContext());
+
+        // Assert
+        assertNull(context);
+    }
+}
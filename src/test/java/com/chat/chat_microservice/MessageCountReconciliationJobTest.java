@@ -0,0 +1,75 @@
+package com.chat.chat_microservice;
+
+import com.chat.chat_microservice.event.SessionsChangedEvent;
+import com.chat.chat_microservice.job.MessageCountReconciliationJob;
+import com.chat.chat_microservice.repository.ChatSessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MessageCountReconciliationJobTest {
+
+    @Mock
+    private ChatSessionRepository sessionRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private MessageCountReconciliationJob job;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        job = new MessageCountReconciliationJob(sessionRepository, transactionTemplate, eventPublisher);
+        ReflectionTestUtils.setField(job, "chunkSize", 2);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+    }
+
+    @Test
+    void reconcile_ShouldLockEachChunkBeforeRecountingIt() {
+        // Arrange
+        when(sessionRepository.findIdsAfter(0L, 2)).thenReturn(List.of(1L, 2L));
+        when(sessionRepository.findIdsAfter(2L, 2)).thenReturn(List.of(3L));
+
+        // Act
+        job.reconcile();
+
+        // Assert
+        InOrder inOrder = inOrder(sessionRepository);
+        inOrder.verify(sessionRepository).lockByIdIn(List.of(1L, 2L));
+        inOrder.verify(sessionRepository).reconcileMessageCounts(List.of(1L, 2L));
+        inOrder.verify(sessionRepository).lockByIdIn(List.of(3L));
+        inOrder.verify(sessionRepository).reconcileMessageCounts(List.of(3L));
+    }
+
+    @Test
+    void reconcile_ShouldEvictSessionListsOfUsersWhoseCountsWereCorrected() {
+        // Arrange
+        when(sessionRepository.findIdsAfter(0L, 2)).thenReturn(List.of(1L));
+        when(sessionRepository.reconcileMessageCounts(List.of(1L))).thenReturn(List.of("alice", "alice"));
+
+        // Act
+        job.reconcile();
+
+        // Assert
+        verify(eventPublisher, times(1)).publishEvent(new SessionsChangedEvent("alice"));
+        verifyNoMoreInteractions(eventPublisher);
+    }
+}
@@ -0,0 +1,188 @@
+package com.chat.chat_microservice;
+
+import com.chat.chat_microservice.config.ReadReplicaProperties;
+import com.chat.chat_microservice.datasource.ReadYourWritesTracker;
+import com.chat.chat_microservice.dto.CursorSliceResponse;
+import com.chat.chat_microservice.dto.MessageCursor;
+import com.chat.chat_microservice.dto.MessageResponse;
+import com.chat.chat_microservice.event.MessagesAddedEvent;
+import com.chat.chat_microservice.exception.ServiceUnavailableException;
+import com.chat.chat_microservice.filter.DbConcurrencyLimitFilter;
+import com.chat.chat_microservice.service.ChatService;
+import com.chat.chat_microservice.service.MessagePushService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MessagePushServiceTest {
+
+    private static final Long TEST_SESSION_ID = 1L;
+    private static final String TEST_USER_ID = "user123";
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 17, 12, 0);
+
+    @Mock
+    private ChatService chatService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private MessagePushService pushService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        pushService = new MessagePushService(chatService, disabledGate(), trackers(null), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pushService.shutdown();
+    }
+
+    @Test
+    void onMessagesAdded_ShouldPushToSubscribersOfThatSessionOnly() {
+        // Arrange
+        pushService.subscribe(TEST_SESSION_ID, TEST_USER_ID, null);
+        pushService.subscribe(2L, TEST_USER_ID, null);
+
+        // Act
+        pushService.onMessagesAdded(new MessagesAddedEvent(TEST_SESSION_ID, List.of(message(1), message(2))));
+
+        // Assert
+        waitUntil(() -> sent() == 2);
+        verify(chatService).verifySessionOwnership(TEST_SESSION_ID, TEST_USER_ID);
+        verify(chatService, never()).getMessagesByCursor(any(), any(), any(), any(), anyInt(), anyBoolean());
+    }
+
+    @Test
+    void subscribe_WithLastEventId_ShouldReplayMissedMessagesAndSkipThemWhenPushedLive() {
+        // Arrange
+        String lastEventId = MessageCursor.of(message(1)).encode();
+        when(chatService.getMessagesByCursor(TEST_SESSION_ID, TEST_USER_ID, lastEventId, null, 100, false))
+                .thenReturn(new CursorSliceResponse<>(List.of(message(2), message(3)), 2, false, null));
+
+        // Act
+        pushService.subscribe(TEST_SESSION_ID, TEST_USER_ID, lastEventId);
+        waitUntil(() -> sent() == 2);
+        pushService.onMessagesAdded(new MessagesAddedEvent(TEST_SESSION_ID, List.of(message(3), message(4))));
+
+        // Assert
+        waitUntil(() -> sent() == 3);
+        verify(chatService, times(1)).getMessagesByCursor(any(), any(), any(), any(), anyInt(), anyBoolean());
+    }
+
+    @Test
+    void subscribe_WithLastEventIdAndReadReplicas_ShouldReplayFromPrimary() {
+        // Arrange
+        ReadYourWritesTracker tracker = new ReadYourWritesTracker(new ReadReplicaProperties());
+        pushService = new MessagePushService(chatService, disabledGate(), trackers(tracker), meterRegistry);
+        AtomicBoolean pinned = new AtomicBoolean();
+        when(chatService.getMessagesByCursor(any(), any(), any(), any(), anyInt(), anyBoolean())).thenAnswer(invocation -> {
+            pinned.set(tracker.isPinnedToPrimary());
+            return new CursorSliceResponse<>(List.of(message(2)), 1, false, null);
+        });
+
+        // Act
+        pushService.subscribe(TEST_SESSION_ID, TEST_USER_ID, MessageCursor.of(message(1)).encode());
+
+        // Assert
+        waitUntil(() -> sent() == 1);
+        assertTrue(pinned.get());
+    }
+
+    @Test
+    void onMessagesAdded_WhenSubscriberBufferOverflows_ShouldEvictIt() {
+        // Arrange
+        ReflectionTestUtils.setField(pushService, "bufferSize", 2);
+        pushService.subscribe(TEST_SESSION_ID, TEST_USER_ID, null);
+
+        // Act
+        pushService.onMessagesAdded(new MessagesAddedEvent(TEST_SESSION_ID, List.of(message(1), message(2), message(3))));
+
+        // Assert
+        assertEquals(0, pushService.getSubscriptionCount());
+        assertEquals(1, meterRegistry.get("chat.push.evictions").counter().count());
+    }
+
+    @Test
+    void subscribe_BeyondMaxSubscriptions_ShouldBeRejected() {
+        // Arrange
+        ReflectionTestUtils.setField(pushService, "maxSubscriptions", 1);
+        pushService.subscribe(TEST_SESSION_ID, TEST_USER_ID, null);
+
+        // Act & Assert
+        assertThrows(ServiceUnavailableException.class, () -> pushService.subscribe(TEST_SESSION_ID, TEST_USER_ID, null));
+        assertEquals(1, pushService.getSubscriptionCount());
+    }
+
+    @Test
+    void subscribe_TenThousandIdleSubscriptionsShouldStayCheapPerConnection() {
+        // Arrange
+        int subscriptions = 10_000;
+        // Stub-only, so Mockito does not retain the 10k ownership checks
+        pushService = new MessagePushService(mock(ChatService.class, withSettings().stubOnly()), disabledGate(),
+                trackers(null), meterRegistry);
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long before = memory.getHeapMemoryUsage().getUsed();
+
+        // Act
+        for (int i = 0; i < subscriptions; i++) {
+            pushService.subscribe((long) (i % 1_000), TEST_USER_ID, null);
+        }
+        System.gc();
+        long retainedPerSubscription = (memory.getHeapMemoryUsage().getUsed() - before) / subscriptions;
+
+        // Assert: emitter, buffer and registry entry; the servlet connection itself comes on top
+        assertEquals(subscriptions, pushService.getSubscriptionCount());
+        assertTrue(retainedPerSubscription < 2_048,
+                "retained " + retainedPerSubscription + " bytes per idle subscription");
+    }
+
+    private double sent() {
+        return meterRegistry.get("chat.push.messages").tag("result", "sent").counter().count();
+    }
+
+    private static DbConcurrencyLimitFilter disabledGate() {
+        return new DbConcurrencyLimitFilter(false, 1, Duration.ofMillis(20), new SimpleMeterRegistry());
+    }
+
+    private static ObjectProvider<ReadYourWritesTracker> trackers(ReadYourWritesTracker tracker) {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        if (tracker != null) {
+            beanFactory.addBean("readYourWritesTracker", tracker);
+        }
+        return beanFactory.getBeanProvider(ReadYourWritesTracker.class);
+    }
+
+    private static MessageResponse message(long id) {
+        return new MessageResponse(id, id, "assistant", "message " + id, NOW.plusSeconds(id), false);
+    }
+
+    private static void waitUntil(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,239 @@
+package com.chat.chat_microservice;
+
+import com.chat.chat_microservice.dto.AddMessageRequest;
+import com.chat.chat_microservice.dto.MessageResponse;
+import com.chat.chat_microservice.entity.ChatMessage;
+import com.chat.chat_microservice.entity.ChatSession;
+import com.chat.chat_microservice.exception.ServiceUnavailableException;
+import com.chat.chat_microservice.repository.ChatMessageRepository;
+import com.chat.chat_microservice.repository.ChatSessionRepository;
+import com.chat.chat_microservice.service.MessageContextStore;
+import com.chat.chat_microservice.service.MessageWriteBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class MessageWriteBufferTest {
+
+    @Mock
+    private ChatSessionRepository sessionRepository;
+
+    @Mock
+    private ChatMessageRepository messageRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private MessageContextStore contextStore;
+
+    private MessageWriteBuffer buffer;
+    private final List<Integer> committedBatchSizes = new CopyOnWriteArrayList<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicLong seqs = new AtomicLong();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        buffer = new MessageWriteBuffer(sessionRepository, messageRepository, contextStore, transactionTemplate,
+                new SimpleMeterRegistry(), event -> { });
+        configure(true, 100, 50, 20);
+
+        when(sessionRepository.getReferenceById(anyLong())).thenAnswer(invocation -> {
+            ChatSession session = new ChatSession();
+            session.setId(invocation.getArgument(0));
+            return session;
+        });
+        when(sessionRepository.allocateMessageSeqs(anyLong(), anyInt(), any()))
+                .thenAnswer(invocation -> Optional.of(seqs.addAndGet(invocation.getArgument(1, Integer.class))));
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+        when(messageRepository.saveAllAndFlush(anyList())).thenAnswer(invocation -> {
+            List<ChatMessage> messages = invocation.getArgument(0);
+            committedBatchSizes.add(messages.size());
+            messages.forEach(message -> {
+                message.setId(ids.incrementAndGet());
+                message.setCreatedAt(LocalDateTime.now());
+            });
+            return messages;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        buffer.stop();
+    }
+
+    @Test
+    void submit_ShouldGroupConcurrentMessagesIntoFewerCommits() throws Exception {
+        // Arrange
+        buffer.start();
+        CountDownLatch gate = new CountDownLatch(1);
+        List<CompletableFuture<MessageResponse>> pending = new ArrayList<>();
+        // Hold the committer inside its first transaction so the next submits pile up behind it
+        doAnswer(invocation -> {
+            gate.await(5, TimeUnit.SECONDS);
+            return Optional.of(seqs.addAndGet(invocation.getArgument(1, Integer.class)));
+        }).when(sessionRepository).allocateMessageSeqs(eq(1L), anyInt(), any());
+
+        // Act
+        pending.add(buffer.submit(1L, "user123", new AddMessageRequest("user", "first", null)));
+        for (int i = 0; i < 20; i++) {
+            pending.add(buffer.submit(2L, "user123", new AddMessageRequest("user", "message " + i, null)));
+        }
+        gate.countDown();
+        List<MessageResponse> responses = new ArrayList<>();
+        for (CompletableFuture<MessageResponse> future : pending) {
+            responses.add(buffer.awaitDurable(future));
+        }
+
+        // Assert
+        assertEquals(21, responses.size());
+        assertTrue(committedBatchSizes.size() < 21, "messages should share group commits");
+        for (int i = 0; i < 20; i++) {
+            assertEquals("message " + i, responses.get(i + 1).getContent());
+            assertTrue(responses.get(i + 1).getId() > responses.get(i).getId(), "submission order must be kept");
+            if (i > 0) {
+                assertTrue(responses.get(i + 1).getSeq() > responses.get(i).getSeq(), "seqs must follow submission order");
+            }
+        }
+        verify(sessionRepository, atMost(committedBatchSizes.size())).allocateMessageSeqs(eq(2L), anyInt(), any());
+    }
+
+    @Test
+    void submit_WhenBufferIsFull_ShouldRejectWithServiceUnavailable() {
+        // Arrange
+        configure(true, 1, 1, 1);
+        CountDownLatch inFlight = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            inFlight.countDown();
+            gate.await(5, TimeUnit.SECONDS);
+            return Optional.of(seqs.addAndGet(invocation.getArgument(1, Integer.class)));
+        }).when(sessionRepository).allocateMessageSeqs(anyLong(), anyInt(), any());
+        buffer.start();
+
+        try {
+            // Act: one message occupies the committer, the next fills the only slot
+            buffer.submit(1L, "user123", new AddMessageRequest("user", "in flight", null));
+            waitUntil(() -> inFlight.getCount() == 0);
+            buffer.submit(1L, "user123", new AddMessageRequest("user", "queued", null));
+
+            // Assert
+            assertThrows(ServiceUnavailableException.class, () ->
+                    buffer.submit(1L, "user123", new AddMessageRequest("user", "overflow", null)));
+        } finally {
+            gate.countDown();
+        }
+    }
+
+    @Test
+    void stop_ShouldDrainQueuedMessagesBeforeReturning() {
+        // Arrange
+        buffer.start();
+        List<CompletableFuture<MessageResponse>> pending = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            pending.add(buffer.submit(1L, "user123", new AddMessageRequest("user", "message " + i, null)));
+        }
+
+        // Act
+        buffer.stop();
+
+        // Assert
+        assertTrue(pending.stream().allMatch(CompletableFuture::isDone));
+        assertEquals(50, committedBatchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertThrows(ServiceUnavailableException.class, () ->
+                buffer.submit(1L, "user123", new AddMessageRequest("user", "late", null)));
+    }
+
+    @Test
+    void commit_WhenGroupFails_ShouldOnlyFailTheOffendingMessage() {
+        // Arrange
+        doAnswer(invocation -> {
+            if ((Long) invocation.getArgument(0) == 99L) {
+                throw new IllegalStateException("session deleted");
+            }
+            return Optional.of(seqs.addAndGet(invocation.getArgument(1, Integer.class)));
+        }).when(sessionRepository).allocateMessageSeqs(anyLong(), anyInt(), any());
+        buffer.start();
+
+        // Act
+        CompletableFuture<MessageResponse> good = buffer.submit(1L, "user123", new AddMessageRequest("user", "ok", null));
+        CompletableFuture<MessageResponse> bad = buffer.submit(99L, "user123", new AddMessageRequest("user", "orphan", null));
+
+        // Assert
+        assertEquals("ok", buffer.awaitDurable(good).getContent());
+        assertThrows(IllegalStateException.class, () -> buffer.awaitDurable(bad));
+    }
+
+    @Test
+    void awaitDurable_WhenTimedOutBeforeCommit_ShouldDropTheMessage() {
+        // Arrange: the committer is stuck in a first group while a second message waits in the queue
+        ReflectionTestUtils.setField(buffer, "maxBatchSize", 1);
+        ReflectionTestUtils.setField(buffer, "durableTimeoutMs", 50L);
+        CountDownLatch inFlight = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            inFlight.countDown();
+            gate.await(5, TimeUnit.SECONDS);
+            return Optional.of(seqs.addAndGet(invocation.getArgument(1, Integer.class)));
+        }).when(sessionRepository).allocateMessageSeqs(eq(1L), anyInt(), any());
+        buffer.start();
+        CompletableFuture<MessageResponse> first = buffer.submit(1L, "user123", new AddMessageRequest("user", "first", null));
+        waitUntil(() -> inFlight.getCount() == 0);
+        CompletableFuture<MessageResponse> late = buffer.submit(2L, "user123", new AddMessageRequest("user", "late", null));
+
+        // Act
+        assertThrows(ServiceUnavailableException.class, () -> buffer.awaitDurable(late));
+        gate.countDown();
+        buffer.stop();
+
+        // Assert: only the first message was written, a retry of the late one cannot duplicate it
+        assertEquals("first", first.join().getContent());
+        assertTrue(late.isCancelled());
+        assertEquals(List.of(1), committedBatchSizes);
+    }
+
+    private void configure(boolean enabled, int capacity, int maxBatchSize, long maxDelayMs) {
+        ReflectionTestUtils.setField(buffer, "enabled", enabled);
+        ReflectionTestUtils.setField(buffer, "capacity", capacity);
+        ReflectionTestUtils.setField(buffer, "maxBatchSize", maxBatchSize);
+        ReflectionTestUtils.setField(buffer, "maxDelayMs", maxDelayMs);
+        ReflectionTestUtils.setField(buffer, "offerTimeoutMs", 10L);
+        ReflectionTestUtils.setField(buffer, "durableTimeoutMs", 5000L);
+    }
+
+    private static void waitUntil(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
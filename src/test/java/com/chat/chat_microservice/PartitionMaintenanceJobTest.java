@@ -0,0 +1,135 @@
+package com.chat.chat_microservice;
+
+import com.chat.chat_microservice.job.MessageCountReconciliationJob;
+import com.chat.chat_microservice.job.PartitionMaintenanceJob;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.time.YearMonth;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PartitionMaintenanceJobTest {
+
+    private static final YearMonth CURRENT = YearMonth.of(2026, 10);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private MessageCountReconciliationJob reconciliationJob;
+
+    private PartitionMaintenanceJob job;
+
+    @BeforeEach
+    void setUp() {
+        job = new PartitionMaintenanceJob(jdbcTemplate, reconciliationJob);
+        ReflectionTestUtils.setField(job, "monthsAhead", 2);
+    }
+
+    @Test
+    void maintain_WhenTableNotPartitioned_ShouldDoNothing() {
+        // Arrange
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class))).thenReturn(0);
+
+        // Act
+        job.maintain(CURRENT);
+
+        // Assert
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    @Test
+    void maintain_ShouldCreateMissingMonthsAheadButNotBeforeFirstMonthlyPartition() throws Exception {
+        // Arrange
+        partitions("chat_messages_legacy", "chat_messages_p2026_11");
+
+        // Act
+        job.maintain(CURRENT);
+
+        // Assert
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS chat_messages_p2026_11 PARTITION OF chat_messages " +
+                "FOR VALUES FROM ('2026-11-01') TO ('2026-12-01')");
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS chat_messages_p2026_12 PARTITION OF chat_messages " +
+                "FOR VALUES FROM ('2026-12-01') TO ('2027-01-01')");
+        verify(jdbcTemplate, never()).execute(startsWith("CREATE TABLE IF NOT EXISTS chat_messages_p2026_10"));
+        verify(jdbcTemplate, never()).execute(startsWith("ALTER TABLE"));
+        verifyNoInteractions(reconciliationJob);
+    }
+
+    @Test
+    void maintain_WithRetention_ShouldDetachAndDropExpiredMonthsOnly() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(job, "retainMonths", 6);
+        partitions("chat_messages_legacy", "chat_messages_p2026_03", "chat_messages_p2026_04",
+                "chat_messages_p2026_10");
+
+        // Act
+        job.maintain(CURRENT);
+
+        // Assert
+        InOrder inOrder = inOrder(jdbcTemplate, reconciliationJob);
+        inOrder.verify(jdbcTemplate).execute("ALTER TABLE chat_messages DETACH PARTITION chat_messages_p2026_03 CONCURRENTLY");
+        inOrder.verify(jdbcTemplate).execute(startsWith("WITH gone AS (DELETE FROM chat_messages_p2026_03 "));
+        inOrder.verify(jdbcTemplate).execute("DROP TABLE chat_messages_p2026_03");
+        inOrder.verify(reconciliationJob).reconcile();
+        verify(jdbcTemplate, never()).execute(contains("chat_messages_p2026_04 CONCURRENTLY"));
+        verify(jdbcTemplate, never()).execute(contains("chat_messages_legacy"));
+    }
+
+    @Test
+    void maintain_WithRetention_ShouldResumeDropOfExpiredPartitionsLeftDetached() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(job, "retainMonths", 6);
+        partitions("chat_messages_p2026_04", "chat_messages_p2026_10");
+        detached("chat_messages_p2026_02", "chat_messages_p2026_09_archive", "chat_messages_p2026_09");
+
+        // Act
+        job.maintain(CURRENT);
+
+        // Assert
+        InOrder inOrder = inOrder(jdbcTemplate, reconciliationJob);
+        inOrder.verify(jdbcTemplate).execute(startsWith("WITH gone AS (DELETE FROM chat_messages_p2026_02 "));
+        inOrder.verify(jdbcTemplate).execute("DROP TABLE chat_messages_p2026_02");
+        inOrder.verify(reconciliationJob).reconcile();
+        verify(jdbcTemplate, never()).execute(startsWith("ALTER TABLE"));
+        verify(jdbcTemplate, never()).execute(contains("chat_messages_p2026_09"));
+    }
+
+    private void partitions(String... names) throws Exception {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class))).thenReturn(1);
+        rows("pg_inherits", names);
+        lenient().doNothing().when(jdbcTemplate).query(contains("NOT c.relispartition"), any(RowCallbackHandler.class));
+    }
+
+    private void detached(String... names) throws Exception {
+        rows("NOT c.relispartition", names);
+    }
+
+    private void rows(String sqlPart, String... names) throws Exception {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (String name : names) {
+                ResultSet row = mock(ResultSet.class);
+                when(row.getString(1)).thenReturn(name);
+                lenient().when(row.getBoolean(2)).thenReturn(false);
+                handler.processRow(row);
+            }
+            return null;
+        }).when(jdbcTemplate).query(contains(sqlPart), any(RowCallbackHandler.class));
+    }
+}
@@ -0,0 +1,162 @@
+package com.chat.chat_microservice;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Compares a monthly range-partitioned copy of chat_messages with an unpartitioned one on scratch tables,
+// so the real schema is left alone. Runs only against a real Postgres (14+),
+// e.g. TEST_DB_URL=jdbc:postgresql://localhost:5432/chatdb
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "TEST_DB_URL", matches = ".+")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PartitioningPostgresTest {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitioningPostgresTest.class);
+
+    private static final String PLAIN = "bench_messages_plain";
+    private static final String PARTITIONED = "bench_messages_partitioned";
+    private static final int MONTHS = 24;
+    private static final int SESSIONS = 20_000;
+    private static final int MESSAGES_PER_SESSION = 50;
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("TEST_DB_URL"));
+        registry.add("spring.datasource.username", () -> System.getenv().getOrDefault("TEST_DB_USERNAME", "chatuser"));
+        registry.add("spring.datasource.password", () -> System.getenv().getOrDefault("TEST_DB_PASSWORD", "chatpass"));
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LocalDate firstMonth = LocalDate.now().withDayOfMonth(1).minusMonths(MONTHS - 1);
+
+    @BeforeAll
+    void seed() {
+        dropTables();
+        String columns = "(id BIGINT NOT NULL, session_id BIGINT NOT NULL, sender VARCHAR(255) NOT NULL, " +
+                "content TEXT NOT NULL, context_id BIGINT, created_at TIMESTAMP(6) NOT NULL";
+        jdbcTemplate.execute("CREATE TABLE " + PLAIN + " " + columns + ", PRIMARY KEY (id))");
+        jdbcTemplate.execute("CREATE TABLE " + PARTITIONED + " " + columns + ", PRIMARY KEY (id, created_at)) " +
+                "PARTITION BY RANGE (created_at)");
+        for (int i = 0; i <= MONTHS; i++) {
+            LocalDate month = firstMonth.plusMonths(i);
+            jdbcTemplate.execute("CREATE TABLE " + PARTITIONED + "_" + i + " PARTITION OF " + PARTITIONED +
+                    " FOR VALUES FROM ('" + month + "') TO ('" + month.plusMonths(1) + "')");
+        }
+        for (String table : List.of(PLAIN, PARTITIONED)) {
+            jdbcTemplate.execute("CREATE INDEX ON " + table + " (session_id, created_at, id)");
+            // Sessions are spread over the months; each one's messages follow its creation within a few hours
+            jdbcTemplate.update("INSERT INTO " + table + " (id, session_id, sender, content, created_at) " +
+                            "SELECT (s - 1) * ? + g, s, 'user', 'message ' || g, " +
+                            "?::timestamp + (s % ?) * INTERVAL '1 day' + g * INTERVAL '1 minute' " +
+                            "FROM generate_series(1, ?) s, generate_series(1, ?) g",
+                    MESSAGES_PER_SESSION, firstMonth.atStartOfDay(), MONTHS * 28, SESSIONS, MESSAGES_PER_SESSION);
+            jdbcTemplate.execute("ANALYZE " + table);
+        }
+    }
+
+    @AfterAll
+    void dropTables() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + PLAIN);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + PARTITIONED);
+    }
+
+    @Test
+    void sessionQueryWithLowerBound_ShouldOnlyScanPartitionsFromSessionStart() throws Exception {
+        LocalDateTime since = sessionStart(SESSIONS / 2).minusDays(1);
+        String json = jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) SELECT * FROM " + PARTITIONED +
+                " WHERE session_id = " + (SESSIONS / 2) + " AND created_at >= '" + since + "' ORDER BY created_at, id",
+                String.class);
+        List<String> relations = new ArrayList<>();
+        collectRelations(objectMapper.readTree(json).get(0).get("Plan"), relations);
+
+        // Partitions run from firstMonth (suffix 0) to the month after the current one (suffix MONTHS)
+        long sinceMonth = ChronoUnit.MONTHS.between(firstMonth, since.toLocalDate().withDayOfMonth(1));
+        assertFalse(relations.isEmpty(), () -> "No scan in plan: " + json);
+        assertTrue(relations.size() <= MONTHS + 1 - sinceMonth, () -> "Partitions were not pruned: " + relations);
+        assertFalse(relations.contains(PARTITIONED + "_" + (sinceMonth - 1)), () -> "Scanned an older partition: " + relations);
+    }
+
+    // Latency report rather than a pass/fail threshold, the numbers depend too much on the machine
+    @Test
+    void insertAndReadLatency_PartitionedVsUnpartitioned() {
+        long nextId = (long) SESSIONS * MESSAGES_PER_SESSION + 1;
+        for (String table : List.of(PLAIN, PARTITIONED)) {
+            long[] id = {nextId};
+            long insertNanos = medianNanos(() -> jdbcTemplate.batchUpdate(
+                    "INSERT INTO " + table + " (id, session_id, sender, content, created_at) VALUES (?, ?, 'user', 'hi', ?)",
+                    batch(id, 100)));
+            nextId = id[0];
+
+            int sessionId = SESSIONS / 2;
+            LocalDateTime since = sessionStart(sessionId).minusDays(1);
+            long readNanos = medianNanos(() -> jdbcTemplate.queryForList(
+                    "SELECT * FROM " + table + " WHERE session_id = ? AND created_at >= ? ORDER BY created_at, id LIMIT 50",
+                    sessionId, since));
+            long unboundedReadNanos = medianNanos(() -> jdbcTemplate.queryForList(
+                    "SELECT * FROM " + table + " WHERE session_id = ? ORDER BY created_at, id LIMIT 50", sessionId));
+
+            log.info("{}: insert batch of 100 {} us, read with lower bound {} us, read without bound {} us",
+                    table, insertNanos / 1_000, readNanos / 1_000, unboundedReadNanos / 1_000);
+        }
+    }
+
+    private List<Object[]> batch(long[] nextId, int size) {
+        List<Object[]> rows = new ArrayList<>(size);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < size; i++) {
+            rows.add(new Object[]{nextId[0]++, SESSIONS + 1, now});
+        }
+        return rows;
+    }
+
+    private LocalDateTime sessionStart(int sessionId) {
+        return firstMonth.atStartOfDay().plusDays(sessionId % (MONTHS * 28));
+    }
+
+    private static void collectRelations(JsonNode plan, List<String> relations) {
+        if (plan.has("Relation Name")) {
+            relations.add(plan.get("Relation Name").asText());
+        }
+        if (plan.has("Plans")) {
+            plan.get("Plans").forEach(child -> collectRelations(child, relations));
+        }
+    }
+
+    private static long medianNanos(Runnable action) {
+        for (int i = 0; i < 5; i++) {
+            action.run();
+        }
+        long[] samples = new long[25];
+        for (int i = 0; i < samples.length; i++) {
+            long start = System.nanoTime();
+            action.run();
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples[samples.length / 2];
+    }
+}
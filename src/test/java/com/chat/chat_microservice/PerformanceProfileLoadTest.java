@@ -0,0 +1,138 @@
+package com.chat.chat_microservice;
+
+import com.chat.chat_microservice.dto.AddMessageRequest;
+import com.chat.chat_microservice.dto.CreateSessionRequest;
+import com.chat.chat_microservice.service.ChatService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Same mixed workload against the default configuration and the 'performance' profile, each in its own
+// application context, reporting throughput and p50/p99 per run. Repeatable with
+// TEST_DB_URL=jdbc:postgresql://localhost:5432/chatdb RUN_BENCHMARKS=true mvn test -Dtest=PerformanceProfileLoadTest
+@EnabledIfEnvironmentVariable(named = "TEST_DB_URL", matches = ".+")
+@EnabledIfEnvironmentVariable(named = "RUN_BENCHMARKS", matches = "true")
+class PerformanceProfileLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(PerformanceProfileLoadTest.class);
+
+    private static final int CLIENTS = 16;
+    private static final int SESSIONS_PER_CLIENT = 4;
+    private static final long WARMUP_NANOS = 5_000_000_000L;
+    private static final long MEASURE_NANOS = 20_000_000_000L;
+
+    @Test
+    void mixedWorkload_DefaultVsPerformanceProfile() throws Exception {
+        Result baseline = run();
+        Result tuned = run("performance");
+
+        log.info("default:     {}", baseline);
+        log.info("performance: {}", tuned);
+        assertTrue(baseline.operations() > 0 && tuned.operations() > 0);
+    }
+
+    private Result run(String... profiles) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ChatMicroserviceApplication.class)
+                .profiles(profiles)
+                .properties(
+                        "spring.datasource.url=" + System.getenv("TEST_DB_URL"),
+                        "spring.datasource.username=" + System.getenv().getOrDefault("TEST_DB_USERNAME", "chatuser"),
+                        "spring.datasource.password=" + System.getenv().getOrDefault("TEST_DB_PASSWORD", "chatpass"),
+                        "server.port=0")
+                .run()) {
+            ChatService chatService = context.getBean(ChatService.class);
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            String userPrefix = "load-test-" + UUID.randomUUID() + "-";
+            try {
+                return drive(chatService, userPrefix);
+            } finally {
+                jdbcTemplate.update("WITH gone AS (DELETE FROM chat_messages WHERE session_id IN " +
+                        "(SELECT id FROM chat_sessions WHERE user_id LIKE ?) RETURNING context_id) " +
+                        "UPDATE chat_message_contexts c SET ref_count = c.ref_count - g.n " +
+                        "FROM (SELECT context_id, count(*) AS n FROM gone WHERE context_id IS NOT NULL " +
+                        "GROUP BY context_id) g WHERE c.id = g.context_id", userPrefix + "%");
+                jdbcTemplate.update("DELETE FROM chat_sessions WHERE user_id LIKE ?", userPrefix + "%");
+            }
+        }
+    }
+
+    // Per client: a batch append, a single append, a cursor page of the conversation and the session list
+    private Result drive(ChatService chatService, String userPrefix) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        CountDownLatch ready = new CountDownLatch(CLIENTS);
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int c = 0; c < CLIENTS; c++) {
+            String userId = userPrefix + c;
+            futures.add(executor.submit(() -> {
+                List<Long> sessions = new ArrayList<>();
+                for (int s = 0; s < SESSIONS_PER_CLIENT; s++) {
+                    sessions.add(chatService.createSession(new CreateSessionRequest(userId, "Load " + s)).getId());
+                }
+                ready.countDown();
+                ready.await();
+                long[] samples = new long[1 << 20];
+                int count = 0;
+                long start = System.nanoTime();
+                long measureStart = start + WARMUP_NANOS;
+                long end = measureStart + MEASURE_NANOS;
+                for (int op = 0; System.nanoTime() < end; op++) {
+                    Long sessionId = sessions.get(ThreadLocalRandom.current().nextInt(sessions.size()));
+                    long opStart = System.nanoTime();
+                    switch (op % 4) {
+                        case 0 -> chatService.addMessages(sessionId, userId, List.of(
+                                new AddMessageRequest("user", "question " + op, null),
+                                new AddMessageRequest("assistant", "answer " + op, "context " + op),
+                                new AddMessageRequest("user", "follow-up " + op, null)));
+                        case 1 -> chatService.addMessage(sessionId, userId, new AddMessageRequest("user", "hi " + op, null));
+                        case 2 -> chatService.getMessagesByCursor(sessionId, userId, null, null, 50, true);
+                        default -> chatService.getSessions(userId);
+                    }
+                    long opEnd = System.nanoTime();
+                    if (opStart >= measureStart && count < samples.length) {
+                        samples[count++] = opEnd - opStart;
+                    }
+                }
+                return Arrays.copyOf(samples, count);
+            }));
+        }
+        long[] all = new long[0];
+        for (Future<long[]> future : futures) {
+            long[] samples = future.get();
+            long[] merged = Arrays.copyOf(all, all.length + samples.length);
+            System.arraycopy(samples, 0, merged, all.length, samples.length);
+            all = merged;
+        }
+        executor.shutdown();
+        Arrays.sort(all);
+        return new Result(all.length, all.length / (MEASURE_NANOS / 1e9), percentile(all, 0.50), percentile(all, 0.99));
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted.length == 0 ? 0 : sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private record Result(long operations, double throughput, long p50Nanos, long p99Nanos) {
+
+        @Override
+        public String toString() {
+            return String.format("%d ops, %.0f ops/s, p50 %.2f ms, p99 %.2f ms",
+                    operations, throughput, p50Nanos / 1e6, p99Nanos / 1e6);
+        }
+    }
+}
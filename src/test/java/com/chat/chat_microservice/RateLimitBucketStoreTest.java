@@ -0,0 +1,160 @@
+package com.chat.chat_microservice;
+
+import com.chat.chat_microservice.config.RateLimitProperties;
+import com.chat.chat_microservice.filter.RateLimitBucketStore;
+import com.chat.chat_microservice.filter.RateLimitBucketStore.Scope;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitBucketStoreTest {
+
+    private static final Logger log = LoggerFactory.getLogger(RateLimitBucketStoreTest.class);
+    private static final String API_KEY = "configured-key";
+
+    @Test
+    void tryConsume_ShouldApplyTierOfTheKey() {
+        // Arrange
+        RateLimitProperties properties = properties(2, 10);
+        properties.getKeyTiers().put("premium-key", "premium");
+        RateLimitBucketStore store = new RateLimitBucketStore(properties, API_KEY, new SimpleMeterRegistry());
+
+        // Act
+        int standardGranted = consume(store, API_KEY, 5);
+        int premiumGranted = consume(store, "premium-key", 5);
+
+        // Assert
+        assertEquals(2, standardGranted);
+        assertEquals(5, premiumGranted);
+    }
+
+    @Test
+    void tryConsume_ShouldKeepSeparateReadAndWriteBudgetsPerUser() {
+        // Arrange
+        RateLimitProperties properties = properties(100, 10);
+        properties.getUser().getRead().setCapacity(3);
+        properties.getUser().getWrite().setCapacity(1);
+        RateLimitBucketStore store = new RateLimitBucketStore(properties, API_KEY, new SimpleMeterRegistry());
+
+        // Act
+        long firstWrite = store.tryConsume(Scope.USER_WRITE, "user-a");
+        long secondWrite = store.tryConsume(Scope.USER_WRITE, "user-a");
+        long read = store.tryConsume(Scope.USER_READ, "user-a");
+        long otherUserWrite = store.tryConsume(Scope.USER_WRITE, "user-b");
+
+        // Assert
+        assertEquals(0, firstWrite);
+        assertEquals(RateLimitBucketStore.REJECTED, secondWrite);
+        assertEquals(2, read);
+        assertEquals(0, otherUserWrite);
+        assertTrue(store.nanosUntilRefill(Scope.USER_WRITE, "user-a") > 0);
+    }
+
+    @Test
+    void tryConsume_WhenStoreIsFull_ShouldShareOverflowBucketInsteadOfGrowing() {
+        // Arrange
+        RateLimitProperties properties = properties(3, 10);
+        properties.setMaxBuckets(2);
+        RateLimitBucketStore store = new RateLimitBucketStore(properties, API_KEY, new SimpleMeterRegistry());
+        store.tryConsume(Scope.API_KEY, "scanner-1");
+        store.tryConsume(Scope.API_KEY, "scanner-2");
+
+        // Act: every further unknown key draws from the same overflow bucket
+        int granted = 0;
+        for (int i = 3; i < 100; i++) {
+            granted += consume(store, "scanner-" + i, 1);
+        }
+
+        // Assert
+        assertEquals(2, store.size(Scope.API_KEY));
+        assertEquals(3, granted);
+        assertEquals(3, consume(store, API_KEY, 5));
+    }
+
+    @Test
+    void evictIdle_ShouldDropIdleUnconfiguredKeysOnly() throws InterruptedException {
+        // Arrange
+        RateLimitProperties properties = properties(3, 10);
+        properties.setIdleTimeout(Duration.ofMillis(1));
+        RateLimitBucketStore store = new RateLimitBucketStore(properties, API_KEY, new SimpleMeterRegistry());
+        consume(store, API_KEY, 3);
+        store.tryConsume(Scope.API_KEY, "idle-key");
+        Thread.sleep(20);
+
+        // Act
+        store.evictIdle();
+
+        // Assert: the configured key keeps its (exhausted) bucket
+        assertEquals(0, store.size(Scope.API_KEY));
+        assertEquals(RateLimitBucketStore.REJECTED, store.tryConsume(Scope.API_KEY, API_KEY));
+    }
+
+    // Filter overhead under contention: RUN_BENCHMARKS=true mvn test -Dtest=RateLimitBucketStoreTest
+    @Test
+    @EnabledIfEnvironmentVariable(named = "RUN_BENCHMARKS", matches = "true")
+    void tryConsume_OverheadUnderContention() throws Exception {
+        RateLimitProperties properties = properties(1_000_000_000, 10);
+        RateLimitBucketStore store = new RateLimitBucketStore(properties, API_KEY, new SimpleMeterRegistry());
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int operations = 2_000_000;
+        consume(store, API_KEY, operations);
+
+        for (int threadCount : new int[]{1, 4, 16, 64}) {
+            ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Long>> allocated = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                allocated.add(executor.submit(() -> {
+                    start.await();
+                    long before = threads.getCurrentThreadAllocatedBytes();
+                    consume(store, API_KEY, operations / threadCount);
+                    return threads.getCurrentThreadAllocatedBytes() - before;
+                }));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            long allocatedBytes = 0;
+            for (Future<Long> future : allocated) {
+                allocatedBytes += future.get();
+            }
+            long elapsed = System.nanoTime() - begin;
+            executor.shutdown();
+            log.info("{} threads on one key: {} ns/op wall clock, {} bytes allocated/op",
+                    threadCount, elapsed / operations, (double) allocatedBytes / operations);
+        }
+    }
+
+    private static int consume(RateLimitBucketStore store, String apiKey, int attempts) {
+        int granted = 0;
+        for (int i = 0; i < attempts; i++) {
+            if (store.tryConsume(Scope.API_KEY, apiKey) != RateLimitBucketStore.REJECTED) {
+                granted++;
+            }
+        }
+        return granted;
+    }
+
+    private static RateLimitProperties properties(long standardCapacity, long premiumCapacity) {
+        RateLimitProperties.Tier standard = new RateLimitProperties.Tier();
+        standard.setCapacity(standardCapacity);
+        RateLimitProperties.Tier premium = new RateLimitProperties.Tier();
+        premium.setCapacity(premiumCapacity);
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.getTiers().putAll(Map.of("standard", standard, "premium", premium));
+        return properties;
+    }
+}
@@ -0,0 +1,85 @@
+package com.chat.chat_microservice;
+
+import com.chat.chat_microservice.datasource.ReadYourWritesTracker;
+import com.chat.chat_microservice.event.SessionsChangedEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Needs two Postgres servers, e.g. TEST_DB_URL=jdbc:postgresql://localhost:5432/chatdb and
+// TEST_REPLICA_DB_URL=jdbc:postgresql://localhost:5433/chatdb. The second one does not have to be a real
+// standby: a server that is not in recovery reports no lag and is used as the replica as-is.
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "TEST_DB_URL", matches = ".+")
+@EnabledIfEnvironmentVariable(named = "TEST_REPLICA_DB_URL", matches = ".+")
+class ReadReplicaRoutingPostgresTest {
+
+    private static final String SERVER_IDENTITY = "SELECT inet_server_port() || '/' || current_database()";
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("TEST_DB_URL"));
+        registry.add("spring.datasource.username", () -> System.getenv().getOrDefault("TEST_DB_USERNAME", "chatuser"));
+        registry.add("spring.datasource.password", () -> System.getenv().getOrDefault("TEST_DB_PASSWORD", "chatpass"));
+        registry.add("app.read-replicas.enabled", () -> "true");
+        registry.add("app.read-replicas.urls", () -> System.getenv("TEST_REPLICA_DB_URL"));
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Test
+    void readOnlyTransactions_ShouldGoToReplicaAndOthersToPrimary() {
+        String replica = new JdbcTemplate(new DriverManagerDataSource(System.getenv("TEST_REPLICA_DB_URL"),
+                System.getenv().getOrDefault("TEST_DB_USERNAME", "chatuser"),
+                System.getenv().getOrDefault("TEST_DB_PASSWORD", "chatpass")))
+                .queryForObject(SERVER_IDENTITY, String.class);
+
+        assertEquals(replica, serverIdentity(true));
+        assertNotEquals(replica, serverIdentity(false));
+    }
+
+    @Test
+    void readOnlyTransaction_RightAfterUsersWrite_ShouldGoToPrimary() {
+        String primary = serverIdentity(false);
+        eventPublisher.publishEvent(new SessionsChangedEvent("replica-test-writer"));
+
+        readYourWritesTracker.bind("replica-test-writer");
+        try {
+            assertEquals(primary, serverIdentity(true));
+        } finally {
+            readYourWritesTracker.clear();
+        }
+        readYourWritesTracker.bind("replica-test-reader");
+        try {
+            assertNotEquals(primary, serverIdentity(true));
+        } finally {
+            readYourWritesTracker.clear();
+        }
+    }
+
+    private String serverIdentity(boolean readOnly) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(readOnly);
+        return template.execute(status -> jdbcTemplate.queryForObject(SERVER_IDENTITY, String.class));
+    }
+}
@@ -0,0 +1,83 @@
+package com.chat.chat_microservice;
+
+import com.chat.chat_microservice.cache.RecentMessagesCache;
+import com.chat.chat_microservice.dto.MessageResponse;
+import com.chat.chat_microservice.event.MessagesAddedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecentMessagesCacheTest {
+
+    private static final Long SESSION_ID = 1L;
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 17, 12, 0);
+
+    @Test
+    void onMessagesAdded_ShouldAppendToCachedTailInOrderAndKeepTheLastOnes() {
+        // Arrange
+        RecentMessagesCache cache = newCache(3);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(SESSION_ID, () -> {
+            loads.incrementAndGet();
+            return RecentMessagesCache.Tail.of(List.of(message(1), message(2)), true, null, null);
+        });
+
+        // Act: a retried delivery of 2 and a batch committed out of order
+        cache.onMessagesAdded(new MessagesAddedEvent(SESSION_ID, List.of(message(4), message(2), message(3))));
+        RecentMessagesCache.Tail tail = cache.get(SESSION_ID, () -> {
+            loads.incrementAndGet();
+            return null;
+        });
+
+        // Assert
+        assertEquals(1, loads.get());
+        assertEquals(List.of(2L, 3L, 4L), tail.messages().stream().map(MessageResponse::getId).toList());
+        assertFalse(tail.complete());
+    }
+
+    @Test
+    void get_WhenMessagesAddedWhileLoading_ShouldNotCacheStaleTail() {
+        // Arrange
+        RecentMessagesCache cache = newCache(10);
+
+        // Act: a message commits while the first read is still loading the old tail
+        cache.get(SESSION_ID, () -> {
+            cache.onMessagesAdded(new MessagesAddedEvent(SESSION_ID, List.of(message(2))));
+            return RecentMessagesCache.Tail.of(List.of(message(1)), true, null, null);
+        });
+        RecentMessagesCache.Tail tail = cache.get(SESSION_ID,
+                () -> RecentMessagesCache.Tail.of(List.of(message(1), message(2)), true, null, null));
+
+        // Assert
+        assertEquals(2, tail.messages().size());
+    }
+
+    @Test
+    void invalidate_ShouldDropCachedTail() {
+        // Arrange
+        RecentMessagesCache cache = newCache(10);
+        cache.get(SESSION_ID, () -> RecentMessagesCache.Tail.of(List.of(message(1)), true, null, null));
+
+        // Act
+        cache.invalidate(SESSION_ID);
+        RecentMessagesCache.Tail tail = cache.get(SESSION_ID,
+                () -> RecentMessagesCache.Tail.of(List.of(message(1)), true, "So far", 1L));
+
+        // Assert
+        assertEquals("So far", tail.summary());
+    }
+
+    private static RecentMessagesCache newCache(int messagesPerSession) {
+        return new RecentMessagesCache(100, messagesPerSession, Duration.ofMinutes(1), new SimpleMeterRegistry());
+    }
+
+    private static MessageResponse message(long id) {
+        return new MessageResponse(id, id, "user", "message " + id, NOW.plusSeconds(id), false);
+    }
+}
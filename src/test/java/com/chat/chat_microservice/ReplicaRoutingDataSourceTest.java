@@ -0,0 +1,152 @@
+package com.chat.chat_microservice;
+
+import com.chat.chat_microservice.config.ReadReplicaProperties;
+import com.chat.chat_microservice.datasource.ReadYourWritesTracker;
+import com.chat.chat_microservice.datasource.ReplicaRoutingDataSource;
+import com.chat.chat_microservice.event.SessionsChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReplicaRoutingDataSourceTest {
+
+    @Mock
+    private DataSource primary;
+
+    @Mock
+    private DataSource replicaA;
+
+    @Mock
+    private DataSource replicaB;
+
+    @Mock
+    private Connection primaryConnection;
+
+    @Mock
+    private Connection replicaAConnection;
+
+    @Mock
+    private Connection replicaBConnection;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ReadYourWritesTracker tracker;
+    private ReplicaRoutingDataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        ReadReplicaProperties properties = new ReadReplicaProperties();
+        properties.setReadYourWritesWindow(Duration.ofMinutes(1));
+        tracker = new ReadYourWritesTracker(properties);
+        dataSource = new ReplicaRoutingDataSource(primary, List.of(replicaA, replicaB), tracker,
+                Duration.ofSeconds(5), meterRegistry);
+    }
+
+    @Test
+    void getConnection_ShouldRotateOverReplicas() throws SQLException {
+        // Arrange
+        when(replicaA.getConnection()).thenReturn(replicaAConnection);
+        when(replicaB.getConnection()).thenReturn(replicaBConnection);
+
+        // Act
+        Connection first = dataSource.getConnection();
+        Connection second = dataSource.getConnection();
+
+        // Assert
+        assertNotSame(first, second);
+        verifyNoInteractions(primary);
+        assertEquals(2.0, meterRegistry.get("chat.datasource.reads").tag("target", "replica").counter().count());
+    }
+
+    @Test
+    void getConnection_WhenReplicaFails_ShouldSkipItUntilNextHealthCheck() throws SQLException {
+        // Arrange
+        when(replicaA.getConnection()).thenThrow(new SQLException("connection refused"));
+        when(replicaB.getConnection()).thenReturn(replicaBConnection);
+
+        // Act
+        Connection first = dataSource.getConnection();
+        Connection second = dataSource.getConnection();
+
+        // Assert
+        assertSame(replicaBConnection, first);
+        assertSame(replicaBConnection, second);
+        verify(replicaA, times(1)).getConnection();
+    }
+
+    @Test
+    void getConnection_WhenReplicasLagTooFar_ShouldFallBackToPrimary() throws SQLException {
+        // Arrange
+        stubLag(replicaA, 60_000);
+        stubLag(replicaB, 30_000);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        dataSource.checkReplicas();
+        clearInvocations(replicaA, replicaB);
+
+        // Act
+        Connection connection = dataSource.getConnection();
+
+        // Assert
+        assertSame(primaryConnection, connection);
+        verifyNoInteractions(replicaA, replicaB);
+        assertEquals(60_000.0, meterRegistry.get("chat.datasource.replica.lag").tag("replica", "0").gauge().value());
+    }
+
+    @Test
+    void getConnection_AfterUserWrote_ShouldReadFromPrimary() throws SQLException {
+        // Arrange
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        tracker.onSessionsChanged(new SessionsChangedEvent("writer"));
+        tracker.bind("writer");
+
+        // Act
+        Connection connection;
+        try {
+            connection = dataSource.getConnection();
+        } finally {
+            tracker.clear();
+        }
+
+        // Assert
+        assertSame(primaryConnection, connection);
+        verifyNoInteractions(replicaA, replicaB);
+    }
+
+    @Test
+    void getConnection_WithExplicitCredentials_ShouldUseThePrimary() throws SQLException {
+        // Arrange
+        when(primary.getConnection("admin", "secret")).thenReturn(primaryConnection);
+
+        // Act
+        Connection connection = dataSource.getConnection("admin", "secret");
+
+        // Assert
+        assertSame(primaryConnection, connection);
+        verifyNoInteractions(replicaA, replicaB);
+    }
+
+    private void stubLag(DataSource replica, long lagMillis) throws SQLException {
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(replica.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(resultSet);
+        when(resultSet.getLong(1)).thenReturn(lagMillis);
+    }
+}
@@ -0,0 +1,136 @@
+package com.chat.chat_microservice;
+
+import com.chat.chat_microservice.cache.SessionOwnershipCache;
+import com.chat.chat_microservice.config.RetentionProperties;
+import com.chat.chat_microservice.event.SessionsChangedEvent;
+import com.chat.chat_microservice.job.RetentionJob;
+import com.chat.chat_microservice.job.SessionPurgeJob;
+import com.chat.chat_microservice.repository.ChatSessionRepository;
+import com.chat.chat_microservice.repository.ChatSessionRepository.SessionRef;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RetentionJobTest {
+
+    @Mock
+    private ChatSessionRepository sessionRepository;
+
+    @Mock
+    private SessionPurgeJob sessionPurgeJob;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private final RetentionProperties properties = new RetentionProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RetentionJob retentionJob;
+
+    @BeforeEach
+    void setUp() {
+        properties.setEnabled(true);
+        properties.setThrottle(Duration.ZERO);
+        retentionJob = new RetentionJob(properties, sessionRepository, sessionPurgeJob,
+                new SessionOwnershipCache(100, Duration.ofMinutes(1), meterRegistry),
+                eventPublisher, transactionTemplate, meterRegistry);
+    }
+
+    @Test
+    void purge_WhenDisabled_ShouldNotTouchTheDatabase() {
+        // Arrange
+        properties.setEnabled(false);
+        properties.setMaxAge(Duration.ofDays(30));
+
+        // Act
+        retentionJob.purge();
+
+        // Assert
+        verifyNoInteractions(sessionRepository, sessionPurgeJob);
+    }
+
+    @Test
+    void purge_WithMaxAge_ShouldSkipUsersWithOverrideAndRecordMetrics() throws Exception {
+        // Arrange
+        properties.setMaxAge(Duration.ofDays(30));
+        properties.getUserMaxAge().put("vip", Duration.ofDays(3650));
+        when(sessionRepository.findInactiveForUser(eq("vip"), any(), eq(true), anyInt())).thenReturn(List.of());
+        when(sessionRepository.findInactiveAfter(eq(0L), any(), eq(true), anyInt()))
+                .thenReturn(List.of(ref(1L, "alice"), ref(2L, "vip"), ref(3L, "bob")));
+        runTransactionsInline();
+        when(sessionPurgeJob.purge(anyLong(), any())).thenReturn(10L);
+
+        // Act
+        retentionJob.purge();
+
+        // Assert
+        verify(sessionRepository).markPendingDeletion(List.of(1L, 3L));
+        verify(sessionPurgeJob, never()).purge(eq(2L), any());
+        verify(eventPublisher).publishEvent(new SessionsChangedEvent("alice"));
+        verify(eventPublisher).publishEvent(new SessionsChangedEvent("bob"));
+        assertEquals(2.0, meterRegistry.get("chat.retention.sessions.purged").tag("rule", "max_age").counter().count());
+        assertEquals(20.0, meterRegistry.get("chat.retention.messages.purged").counter().count());
+    }
+
+    @Test
+    void purge_WithSessionLimit_ShouldPurgeOnlySessionsBeyondTheLimit() throws Exception {
+        // Arrange
+        properties.setMaxSessionsPerUser(2);
+        properties.setKeepFavorites(false);
+        when(sessionRepository.findUsersOverSessionLimit(2, false, 100))
+                .thenReturn(List.of("alice"))
+                .thenReturn(List.of());
+        when(sessionRepository.findSessionsBeyondLimit("alice", 2, false)).thenReturn(List.of(7L, 8L));
+        runTransactionsInline();
+
+        // Act
+        retentionJob.purge();
+
+        // Assert
+        verify(sessionRepository).markPendingDeletion(List.of(7L, 8L));
+        verify(sessionPurgeJob).purge(7L, Duration.ZERO);
+        verify(sessionPurgeJob).purge(8L, Duration.ZERO);
+        verify(sessionRepository, never()).findInactiveAfter(anyLong(), any(), anyBoolean(), anyInt());
+    }
+
+    private void runTransactionsInline() {
+        doAnswer(invocation -> {
+            invocation.<Consumer<Object>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    private static SessionRef ref(Long id, String userId) {
+        return new SessionRef() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getUserId() {
+                return userId;
+            }
+        };
+    }
+}
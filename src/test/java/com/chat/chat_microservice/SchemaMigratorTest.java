@@ -0,0 +1,76 @@
+package com.chat.chat_microservice;
+
+import com.chat.chat_microservice.config.SchemaMigrator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SchemaMigratorTest {
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Statement statement;
+
+    @Mock
+    private PreparedStatement insert;
+
+    @Mock
+    private ResultSet noRows;
+
+    @Mock
+    private ResultSet invalidIndexes;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(connection.createStatement()).thenReturn(statement);
+        when(connection.prepareStatement(anyString())).thenReturn(insert);
+        when(statement.executeQuery(startsWith("SELECT version"))).thenReturn(noRows);
+        when(statement.executeQuery(startsWith("SELECT c.relname"))).thenReturn(invalidIndexes);
+        // ScriptUtils reads results until there are none left
+        when(statement.getUpdateCount()).thenReturn(-1);
+    }
+
+    @Test
+    void migrate_NoTransactionScript_ShouldCommitStatementByStatementAndRepeatBatchesUntilNoRows() throws Exception {
+        // Arrange: an earlier run was interrupted while building the index
+        when(invalidIndexes.next()).thenReturn(true, false);
+        when(invalidIndexes.getString(1)).thenReturn("idx_items_backfill");
+        when(statement.executeUpdate(startsWith("UPDATE items"))).thenReturn(2, 2, 1, 0);
+
+        // Act
+        int applied = new SchemaMigrator(dataSource, "classpath:db/test-migration").migrate();
+
+        // Assert
+        assertEquals(1, applied);
+        InOrder inOrder = inOrder(statement, insert);
+        inOrder.verify(statement).execute("DROP INDEX CONCURRENTLY IF EXISTS idx_items_backfill");
+        inOrder.verify(statement).execute(startsWith("CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_items_backfill"));
+        inOrder.verify(statement, times(4)).executeUpdate(startsWith("UPDATE items SET done = true"));
+        inOrder.verify(statement).execute("DROP INDEX CONCURRENTLY IF EXISTS idx_items_backfill");
+        inOrder.verify(insert).executeUpdate();
+        verify(connection, never()).setAutoCommit(false);
+        verify(connection, never()).commit();
+    }
+}
@@ -0,0 +1,136 @@
+package com.chat.chat_microservice;
+
+import com.chat.chat_microservice.config.SchemaMigrator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Query-plan regression test: seeds realistic volumes and checks every hot repository query is an index
+// range scan on the index written for it, with no Seq Scan and no Sort. Runs only against a real Postgres,
+// e.g. TEST_DB_URL=jdbc:postgresql://localhost:5432/chatdb
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "TEST_DB_URL", matches = ".+")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class SchemaQueryPlanPostgresTest {
+
+    private static final String USER_PREFIX = "plan-test-";
+    private static final int USERS = 2_000;
+    private static final int SESSIONS_PER_USER = 20;
+    private static final int MESSAGES_PER_SESSION = 50;
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("TEST_DB_URL"));
+        registry.add("spring.datasource.username", () -> System.getenv().getOrDefault("TEST_DB_USERNAME", "chatuser"));
+        registry.add("spring.datasource.password", () -> System.getenv().getOrDefault("TEST_DB_PASSWORD", "chatpass"));
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SchemaMigrator schemaMigrator;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private long sampleSessionId;
+
+    @BeforeAll
+    void seed() {
+        cleanUp();
+        // 40k sessions, every fifth one a favorite, and 2M messages spread over them
+        jdbcTemplate.update("INSERT INTO chat_sessions (user_id, title, favorite, created_at, updated_at, message_count, " +
+                        "last_message_seq) " +
+                        "SELECT ? || u, 'Session ' || s, s % 5 = 0, now() - s * INTERVAL '1 hour', " +
+                        "now() - s * INTERVAL '1 minute', ?, ? " +
+                        "FROM generate_series(1, ?) u, generate_series(1, ?) s",
+                USER_PREFIX, MESSAGES_PER_SESSION, MESSAGES_PER_SESSION, USERS, SESSIONS_PER_USER);
+        jdbcTemplate.update("INSERT INTO chat_messages (id, session_id, seq, sender, content, created_at) " +
+                        "SELECT nextval('chat_messages_seq'), s.id, g, 'user', 'message ' || g, " +
+                        "s.created_at + g * INTERVAL '1 second' " +
+                        "FROM chat_sessions s, generate_series(1, ?) g WHERE s.user_id LIKE ?",
+                MESSAGES_PER_SESSION, USER_PREFIX + "%");
+        jdbcTemplate.execute("ANALYZE chat_sessions");
+        jdbcTemplate.execute("ANALYZE chat_messages");
+        sampleSessionId = jdbcTemplate.queryForObject(
+                "SELECT id FROM chat_sessions WHERE user_id = ? LIMIT 1", Long.class, USER_PREFIX + (USERS / 2));
+    }
+
+    @AfterAll
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM chat_messages WHERE session_id IN " +
+                "(SELECT id FROM chat_sessions WHERE user_id LIKE ?)", USER_PREFIX + "%");
+        jdbcTemplate.update("DELETE FROM chat_sessions WHERE user_id LIKE ?", USER_PREFIX + "%");
+    }
+
+    @Test
+    void migrations_ShouldBeRecordedAndNotReapplied() throws Exception {
+        assertEquals(0, schemaMigrator.migrate());
+        assertTrue(jdbcTemplate.queryForObject("SELECT MAX(version) FROM schema_version", Integer.class) >= 2);
+    }
+
+    @Test
+    void findResponsesByUserIdOrderByUpdatedAtDesc_ShouldUseUserUpdatedIndexWithoutSort() {
+        assertIndexOnlyPlan("SELECT * FROM chat_sessions WHERE pending_deletion = false AND user_id = '" + user() +
+                "' ORDER BY updated_at DESC", "idx_chat_sessions_user_updated");
+    }
+
+    @Test
+    void findFavoriteResponsesByUserIdOrderByUpdatedAtDesc_ShouldUsePartialFavoritesIndex() {
+        assertIndexOnlyPlan("SELECT * FROM chat_sessions WHERE pending_deletion = false AND user_id = '" + user() +
+                "' AND favorite = true ORDER BY updated_at DESC", "idx_chat_sessions_user_updated_favorite");
+    }
+
+    @Test
+    void findByIdAndUserId_ShouldUsePrimaryKey() {
+        assertIndexOnlyPlan("SELECT * FROM chat_sessions WHERE pending_deletion = false AND id = " + sampleSessionId +
+                " AND user_id = '" + user() + "'", "chat_sessions_pkey");
+    }
+
+    @Test
+    void findBySessionIdSince_ShouldUseSessionSeqIndexWithoutSort() {
+        assertIndexOnlyPlan("SELECT * FROM chat_messages WHERE session_id = " + sampleSessionId +
+                " AND created_at >= now() - INTERVAL '30 days' ORDER BY seq",
+                "idx_chat_messages_session_seq");
+    }
+
+    private void assertIndexOnlyPlan(String sql, String expectedIndex) {
+        String json = jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) " + sql, String.class);
+        List<JsonNode> nodes = new ArrayList<>();
+        try {
+            collect(objectMapper.readTree(json).get(0).get("Plan"), nodes);
+        } catch (Exception e) {
+            throw new AssertionError("Unreadable plan: " + json, e);
+        }
+        List<String> nodeTypes = nodes.stream().map(node -> node.get("Node Type").asText()).toList();
+        assertFalse(nodeTypes.contains("Seq Scan"), () -> "Sequential scan in plan: " + json);
+        assertFalse(nodeTypes.contains("Sort"), () -> "Sort in plan: " + json);
+        assertTrue(nodes.stream().anyMatch(node -> node.has("Index Name")
+                        && node.get("Index Name").asText().equals(expectedIndex)),
+                () -> "Expected " + expectedIndex + " in plan: " + json);
+    }
+
+    private static void collect(JsonNode plan, List<JsonNode> nodes) {
+        nodes.add(plan);
+        if (plan.has("Plans")) {
+            plan.get("Plans").forEach(child -> collect(child, nodes));
+        }
+    }
+
+    private static String user() {
+        return USER_PREFIX + (USERS / 2);
+    }
+}
@@ -0,0 +1,151 @@
+package com.chat.chat_microservice;
+
+import com.chat.chat_microservice.dto.AddMessageRequest;
+import com.chat.chat_microservice.dto.CreateSessionRequest;
+import com.chat.chat_microservice.dto.CursorSliceResponse;
+import com.chat.chat_microservice.dto.SearchHit;
+import com.chat.chat_microservice.dto.SessionResponse;
+import com.chat.chat_microservice.service.ChatService;
+import com.chat.chat_microservice.service.SearchService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs against a real Postgres only, e.g. TEST_DB_URL=jdbc:postgresql://localhost:5432/chatdb; the latency
+// benchmark additionally needs RUN_BENCHMARKS=true (SEARCH_BENCHMARK_MESSAGES overrides its 10M messages)
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "TEST_DB_URL", matches = ".+")
+class SearchPostgresTest {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchPostgresTest.class);
+
+    private static final int SESSIONS_PER_USER = 200;
+    private static final int MESSAGES_PER_SESSION = 100;
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("TEST_DB_URL"));
+        registry.add("spring.datasource.username", () -> System.getenv().getOrDefault("TEST_DB_USERNAME", "chatuser"));
+        registry.add("spring.datasource.password", () -> System.getenv().getOrDefault("TEST_DB_PASSWORD", "chatpass"));
+    }
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private SearchService searchService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String userPrefix;
+
+    @BeforeEach
+    void setUp() {
+        userPrefix = "search-test-" + UUID.randomUUID() + "-";
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("WITH gone AS (DELETE FROM chat_messages WHERE session_id IN " +
+                "(SELECT id FROM chat_sessions WHERE user_id LIKE ?) RETURNING context_id) " +
+                "UPDATE chat_message_contexts c SET ref_count = c.ref_count - g.n " +
+                "FROM (SELECT context_id, count(*) AS n FROM gone WHERE context_id IS NOT NULL " +
+                "GROUP BY context_id) g WHERE c.id = g.context_id", userPrefix + "%");
+        jdbcTemplate.update("DELETE FROM chat_sessions WHERE user_id LIKE ?", userPrefix + "%");
+    }
+
+    @Test
+    void search_ShouldFindTitlesAndMessagesOfTheUserOnlyAndPageThroughThemOnce() {
+        String userId = userPrefix + "alice";
+        SessionResponse tuning = chatService.createSession(new CreateSessionRequest(userId, "Postgres tuning"));
+        SessionResponse other = chatService.createSession(new CreateSessionRequest(userId, "Holiday plans"));
+        List<AddMessageRequest> messages = new ArrayList<>();
+        for (int i = 0; i < 24; i++) {
+            messages.add(new AddMessageRequest("user", "How do I vacuum a postgres table, attempt " + i, null));
+        }
+        chatService.addMessages(tuning.getId(), userId, messages);
+        chatService.addMessage(other.getId(), userId, new AddMessageRequest("assistant", "Pack for the beach", null));
+        SessionResponse stranger = chatService.createSession(new CreateSessionRequest(userPrefix + "bob", "Postgres"));
+        chatService.addMessage(stranger.getId(), userPrefix + "bob", new AddMessageRequest("user", "postgres", null));
+
+        // Stemming: "vacuuming" matches "vacuum"
+        CursorSliceResponse<SearchHit> first = searchService.search(userId, "vacuuming postgres", null, 10);
+        assertEquals(10, first.getSize());
+        assertTrue(first.isHasNext());
+        assertTrue(first.getContent().get(0).getSnippet().contains("**vacuum**"));
+
+        Set<Long> seen = new HashSet<>();
+        String after = null;
+        do {
+            CursorSliceResponse<SearchHit> slice = searchService.search(userId, "postgres", after, 10);
+            for (SearchHit hit : slice.getContent()) {
+                assertTrue(seen.add(hit.getMessageId() != null ? hit.getMessageId() : -hit.getSessionId()),
+                        "hit returned twice: " + hit);
+                assertEquals(tuning.getId(), hit.getSessionId());
+            }
+            after = slice.getNextCursor();
+        } while (after != null);
+        // 24 messages plus the session title
+        assertEquals(25, seen.size());
+
+        assertEquals(0, searchService.search(userId, "kubernetes", null, 10).getSize());
+    }
+
+    @Test
+    @EnabledIfEnvironmentVariable(named = "RUN_BENCHMARKS", matches = "true")
+    void search_P99ShouldStayUnderFiftyMillisecondsOnTenMillionMessages() {
+        int messages = Integer.parseInt(System.getenv().getOrDefault("SEARCH_BENCHMARK_MESSAGES", "10000000"));
+        int users = Math.max(1, messages / (SESSIONS_PER_USER * MESSAGES_PER_SESSION));
+        // Terms of varying frequency: each wN is in about 1 of 5,000 messages, 'common' in every one
+        jdbcTemplate.update("INSERT INTO chat_sessions (user_id, title, favorite, created_at, updated_at, message_count, " +
+                        "last_message_seq) " +
+                        "SELECT ? || u, 'Session w' || (s * 31 % 5000), false, now() - INTERVAL '30 days', now(), ?, ? " +
+                        "FROM generate_series(1, ?) u, generate_series(1, ?) s",
+                userPrefix, MESSAGES_PER_SESSION, MESSAGES_PER_SESSION, users, SESSIONS_PER_USER);
+        jdbcTemplate.update("INSERT INTO chat_messages (id, session_id, seq, sender, content, created_at) " +
+                        "SELECT nextval('chat_messages_seq'), s.id, g, 'user', " +
+                        "'common w' || ((s.id * 100 + g) % 5000) || ' w' || ((s.id * 100 + g) * 7 % 4999) || " +
+                        "' w' || ((s.id * 100 + g) * 13 % 4987) || ' question ' || g, " +
+                        "s.created_at + g * INTERVAL '1 second' " +
+                        "FROM chat_sessions s, generate_series(1, ?) g WHERE s.user_id LIKE ?",
+                MESSAGES_PER_SESSION, userPrefix + "%");
+        jdbcTemplate.execute("ANALYZE chat_sessions");
+        jdbcTemplate.execute("ANALYZE chat_messages");
+
+        for (String query : new String[]{"w1234", "w42 w4242", "\"common w77\"", "common"}) {
+            long[] samples = new long[200];
+            for (int i = -20; i < samples.length; i++) {
+                String userId = userPrefix + ThreadLocalRandom.current().nextInt(1, users + 1);
+                long start = System.nanoTime();
+                searchService.search(userId, query, null, 20);
+                if (i >= 0) {
+                    samples[i] = System.nanoTime() - start;
+                }
+            }
+            Arrays.sort(samples);
+            long p50 = samples[samples.length / 2] / 1_000_000;
+            long p99 = samples[samples.length * 99 / 100] / 1_000_000;
+            log.info("search '{}' over {} messages: p50 {} ms, p99 {} ms", query, messages, p50, p99);
+            assertTrue(p99 < 50, "p99 of '" + query + "' was " + p99 + " ms");
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.chat.chat_microservice;
+
+import com.chat.chat_microservice.dto.CursorSliceResponse;
+import com.chat.chat_microservice.dto.SearchCursor;
+import com.chat.chat_microservice.dto.SearchHit;
+import com.chat.chat_microservice.exception.BadRequestException;
+import com.chat.chat_microservice.service.SearchService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SearchServiceTest {
+
+    private static final String TEST_USER_ID = "user123";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private SearchService searchService;
+
+    @BeforeEach
+    void setUp() {
+        searchService = new SearchService(jdbcTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void search_WhenMoreHitsThanSize_ShouldTrimAndReturnCursorOfLastHit() {
+        // Arrange
+        SearchHit session = new SearchHit(1L, "Postgres tuning", null, null, "**Postgres** tuning", 0.5f, LocalDateTime.now());
+        SearchHit message = new SearchHit(1L, "Postgres tuning", 42L, "user", "**postgres** vacuum", 0.3f, LocalDateTime.now());
+        SearchHit extra = new SearchHit(2L, "Other", 43L, "assistant", "**postgres**", 0.1f, LocalDateTime.now());
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(List.of(session, message, extra));
+
+        // Act
+        CursorSliceResponse<SearchHit> result = searchService.search(TEST_USER_ID, "postgres", null, 2);
+
+        // Assert
+        assertEquals(List.of(session, message), result.getContent());
+        assertTrue(result.isHasNext());
+        SearchCursor cursor = SearchCursor.decode(result.getNextCursor());
+        assertEquals(0.3f, cursor.getRank());
+        assertEquals(42L, cursor.getHitId());
+        verify(jdbcTemplate).query(argThat((String sql) -> !sql.contains("hit_id < ?")), any(RowMapper.class),
+                eq("postgres"), eq(TEST_USER_ID), eq(TEST_USER_ID), eq(3));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void search_WithCursor_ShouldContinueBelowItsRankAndHitId() {
+        // Arrange
+        String after = new SearchCursor(0.3f, -7L).encode();
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class))).thenReturn(List.of());
+
+        // Act
+        CursorSliceResponse<SearchHit> result = searchService.search(TEST_USER_ID, "postgres", after, 20);
+
+        // Assert
+        assertTrue(result.getContent().isEmpty());
+        assertFalse(result.isHasNext());
+        assertNull(result.getNextCursor());
+        verify(jdbcTemplate).query(contains("hit_id < ?"), any(RowMapper.class),
+                eq("postgres"), eq(TEST_USER_ID), eq(TEST_USER_ID), eq(0.3f), eq(0.3f), eq(-7L), eq(21));
+    }
+
+    @Test
+    void search_WithInvalidArguments_ShouldThrowBadRequest() {
+        assertThrows(BadRequestException.class, () -> searchService.search(TEST_USER_ID, " ", null, 20));
+        assertThrows(BadRequestException.class, () -> searchService.search(TEST_USER_ID, "x".repeat(201), null, 20));
+        assertThrows(BadRequestException.class, () -> searchService.search(TEST_USER_ID, "postgres", null, 51));
+        assertThrows(BadRequestException.class, () -> searchService.search(TEST_USER_ID, "postgres", "not-a-cursor", 20));
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
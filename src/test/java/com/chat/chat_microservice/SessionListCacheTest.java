@@ -0,0 +1,86 @@
+package com.chat.chat_microservice;
+
+import com.chat.chat_microservice.cache.InMemorySessionListCacheTier;
+import com.chat.chat_microservice.cache.SessionListCache;
+import com.chat.chat_microservice.cache.SessionListCacheTier;
+import com.chat.chat_microservice.dto.SessionResponse;
+import com.chat.chat_microservice.event.SessionsChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionListCacheTest {
+
+    private static final String USER_ID = "user123";
+
+    @Test
+    void get_AfterSessionsChanged_ShouldReload() {
+        // Arrange
+        SessionListCache cache = newCache(null);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(USER_ID, false, () -> List.of(session(loads.incrementAndGet())));
+        cache.get(USER_ID, false, () -> List.of(session(loads.incrementAndGet())));
+
+        // Act
+        cache.onSessionsChanged(new SessionsChangedEvent(USER_ID));
+        List<SessionResponse> sessions = cache.get(USER_ID, false, () -> List.of(session(loads.incrementAndGet())));
+
+        // Assert
+        assertEquals(2, loads.get());
+        assertEquals(2L, sessions.get(0).getId());
+    }
+
+    @Test
+    void get_WhenEvictedWhileLoading_ShouldNotCacheStaleList() {
+        // Arrange
+        SessionListCache cache = newCache(null);
+
+        // Act: a write commits while the first read is still loading the old list
+        cache.get(USER_ID, false, () -> {
+            cache.evict(USER_ID);
+            return List.of(session(1));
+        });
+        List<SessionResponse> sessions = cache.get(USER_ID, false, () -> List.of(session(2)));
+
+        // Assert
+        assertEquals(2L, sessions.get(0).getId());
+    }
+
+    @Test
+    void get_WhenOnlySecondTierHasEntry_ShouldNotCallLoader() {
+        // Arrange
+        InMemorySessionListCacheTier secondTier =
+                new InMemorySessionListCacheTier(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        newCache(secondTier).get(USER_ID, true, () -> List.of(session(1)));
+
+        // Act: a fresh instance shares the second tier but starts with an empty first tier
+        List<SessionResponse> sessions = newCache(secondTier).get(USER_ID, true, () -> {
+            throw new AssertionError("loader should not be called");
+        });
+
+        // Assert
+        assertEquals(1L, sessions.get(0).getId());
+    }
+
+    private static SessionListCache newCache(SessionListCacheTier secondTier) {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        if (secondTier != null) {
+            beanFactory.addBean("secondTier", secondTier);
+        }
+        return new SessionListCache(100, Duration.ofMinutes(1),
+                beanFactory.getBeanProvider(SessionListCacheTier.class), new SimpleMeterRegistry());
+    }
+
+    private static SessionResponse session(long id) {
+        SessionResponse response = new SessionResponse();
+        response.setId(id);
+        response.setUserId(USER_ID);
+        return response;
+    }
+}
@@ -0,0 +1,92 @@
+package com.chat.chat_microservice;
+
+import com.chat.chat_microservice.job.SessionPurgeJob;
+import com.chat.chat_microservice.repository.ChatMessageRepository;
+import com.chat.chat_microservice.repository.ChatSessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SessionPurgeJobTest {
+
+    @Mock
+    private ChatSessionRepository sessionRepository;
+
+    @Mock
+    private ChatMessageRepository messageRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private SessionPurgeJob job;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        job = new SessionPurgeJob(sessionRepository, messageRepository, transactionTemplate);
+        ReflectionTestUtils.setField(job, "chunkSize", 2);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+        doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    void purge_WithThrottle_ShouldPauseBetweenMessageChunks() throws Exception {
+        // Arrange: two full chunks and a last partial one
+        when(messageRepository.deleteChunkBySessionId(1L, 2)).thenReturn(2, 2, 1);
+
+        // Act
+        long start = System.nanoTime();
+        long deleted = job.purge(1L, Duration.ofMillis(50));
+        long elapsed = System.nanoTime() - start;
+
+        // Assert: a pause after each full chunk, none after the last
+        assertEquals(5, deleted);
+        assertTrue(elapsed >= Duration.ofMillis(100).toNanos(), "expected two pauses, took " + elapsed + " ns");
+        verify(sessionRepository).deletePendingById(1L);
+    }
+
+    @Test
+    void purge_WhileSameSessionIsBeingPurged_ShouldLeaveItToTheFirstPurge() throws Exception {
+        // Arrange: the first purge blocks in its first chunk
+        CountDownLatch inChunk = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(messageRepository.deleteChunkBySessionId(1L, 2)).thenAnswer(invocation -> {
+            inChunk.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return 1;
+        });
+        CompletableFuture<Long> first = CompletableFuture.supplyAsync(() -> job.purge(1L));
+        assertTrue(inChunk.await(5, TimeUnit.SECONDS));
+
+        // Act
+        long second = job.purge(1L);
+        release.countDown();
+
+        // Assert
+        assertEquals(0, second);
+        assertEquals(1, first.get(5, TimeUnit.SECONDS));
+        verify(messageRepository, times(1)).deleteChunkBySessionId(1L, 2);
+        verify(sessionRepository, times(1)).deletePendingById(1L);
+    }
+}
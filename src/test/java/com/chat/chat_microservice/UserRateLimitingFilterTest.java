@@ -0,0 +1,111 @@
+package com.chat.chat_microservice;
+
+import com.chat.chat_microservice.config.RateLimitProperties;
+import com.chat.chat_microservice.exception.RateLimitExceededException;
+import com.chat.chat_microservice.filter.RateLimitBucketStore;
+import com.chat.chat_microservice.filter.UserRateLimitingFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserRateLimitingFilterTest {
+
+    private static final Logger log = LoggerFactory.getLogger(UserRateLimitingFilterTest.class);
+
+    private RateLimitProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RateLimitProperties();
+        properties.getUser().getRead().setCapacity(100);
+        properties.getUser().getWrite().setCapacity(2);
+        properties.getUser().setMaxConcurrentRequests(1);
+    }
+
+    @Test
+    void doFilter_WhenWriteBudgetExhausted_ShouldRejectWithRetryAfter() throws Exception {
+        // Arrange
+        UserRateLimitingFilter filter = newFilter();
+        filter.doFilter(request("POST", "user-a"), new MockHttpServletResponse(), new MockFilterChain());
+        filter.doFilter(request("POST", "user-a"), new MockHttpServletResponse(), new MockFilterChain());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        RateLimitExceededException ex = assertThrows(RateLimitExceededException.class, () ->
+                filter.doFilter(request("POST", "user-a"), response, new MockFilterChain()));
+
+        // Assert: reads and other users are unaffected
+        assertTrue(ex.getRetryAfterSeconds() >= 1);
+        assertEquals("0", response.getHeader("X-RateLimit-Remaining"));
+        filter.doFilter(request("GET", "user-a"), new MockHttpServletResponse(), new MockFilterChain());
+        filter.doFilter(request("POST", "user-b"), new MockHttpServletResponse(), new MockFilterChain());
+    }
+
+    @Test
+    void doFilter_ShouldReportTighterOfKeyAndUserBudget() throws Exception {
+        // Arrange
+        UserRateLimitingFilter filter = newFilter();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setHeader("X-RateLimit-Remaining", "50");
+
+        // Act
+        filter.doFilter(request("POST", "user-a"), response, new MockFilterChain());
+
+        // Assert
+        assertEquals("1", response.getHeader("X-RateLimit-Remaining"));
+    }
+
+    @Test
+    void doFilter_WhenUserAlreadyHasRequestInFlight_ShouldReject() throws Exception {
+        // Arrange
+        UserRateLimitingFilter filter = newFilter();
+
+        // Act: a second request of the same user arrives while the first is still being handled
+        filter.doFilter(request("GET", "user-a"), new MockHttpServletResponse(), (req, res) -> {
+            assertThrows(RateLimitExceededException.class, () ->
+                    filter.doFilter(request("GET", "user-a"), new MockHttpServletResponse(), new MockFilterChain()));
+            filter.doFilter(request("GET", "user-b"), new MockHttpServletResponse(), new MockFilterChain());
+        });
+
+        // Assert: the slot is released once the first request completes
+        filter.doFilter(request("GET", "user-a"), new MockHttpServletResponse(), new MockFilterChain());
+    }
+
+    // Per-request overhead: RUN_BENCHMARKS=true mvn test -Dtest=UserRateLimitingFilterTest
+    @Test
+    @EnabledIfEnvironmentVariable(named = "RUN_BENCHMARKS", matches = "true")
+    void doFilter_PerRequestOverhead() throws Exception {
+        properties.getUser().getRead().setCapacity(1_000_000_000);
+        UserRateLimitingFilter filter = newFilter();
+        MockFilterChain chain = new MockFilterChain();
+        int iterations = 500_000;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                chain.reset();
+                filter.doFilter(request("GET", "user-" + (i & 1023)), new MockHttpServletResponse(), chain);
+            }
+            log.info("Round {}: {} ns per request including mock request/response setup",
+                    round, (System.nanoTime() - start) / iterations);
+        }
+    }
+
+    private UserRateLimitingFilter newFilter() {
+        RateLimitBucketStore store = new RateLimitBucketStore(properties, "api-key", new SimpleMeterRegistry());
+        return new UserRateLimitingFilter(store, properties);
+    }
+
+    private static MockHttpServletRequest request(String method, String userId) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/api/v1/chat/sessions/1/messages");
+        request.setParameter("userId", userId);
+        return request;
+    }
+}
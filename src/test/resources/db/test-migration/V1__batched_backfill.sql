@@ -0,0 +1,8 @@
+-- no-transaction
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_items_backfill ON items (id) WHERE done IS NULL;
+
+-- repeat until no rows
+UPDATE items SET done = true
+WHERE id IN (SELECT id FROM items WHERE done IS NULL LIMIT 2);
+
+DROP INDEX CONCURRENTLY IF EXISTS idx_items_backfill;